@@ -0,0 +1,99 @@
+/*
+ * This file is part of Fluidity and is licensed to the project under
+ * terms that are compatible with the GNU Lesser General Public License.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership and licensing.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package grondag.fluidity.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
+
+import grondag.fluidity.api.article.Article;
+
+/**
+ * Article lookups for untagged and tagged items. All lookups are cache hits
+ * after the first iteration, so this measures the steady-state hit path.
+ * The concurrent variants run on eight threads to expose contention in the cache.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ArticleCacheBenchmark {
+	private ItemStack taggedStack;
+	private CompoundTag tag;
+
+	@Setup
+	public void setup() {
+		BenchmarkHelper.bootstrap();
+		tag = new CompoundTag();
+		tag.putString("name", "benchmark");
+		tag.putInt("level", 5);
+		taggedStack = new ItemStack(Items.DIAMOND_SWORD);
+		taggedStack.setTag(tag.copy());
+	}
+
+	@Benchmark
+	public Article untaggedItem() {
+		return Article.of(Items.STONE);
+	}
+
+	@Benchmark
+	public Article untaggedStack() {
+		return Article.of(new ItemStack(Items.STONE));
+	}
+
+	@Benchmark
+	public Article taggedItem() {
+		return Article.of(Items.DIAMOND_SWORD, tag);
+	}
+
+	@Benchmark
+	public Article taggedStack() {
+		return Article.of(taggedStack);
+	}
+
+	@Benchmark
+	@Threads(8)
+	public Article untaggedStackConcurrent() {
+		return Article.of(new ItemStack(Items.STONE));
+	}
+
+	@Benchmark
+	@Threads(8)
+	public Article taggedStackConcurrent() {
+		return Article.of(taggedStack);
+	}
+}
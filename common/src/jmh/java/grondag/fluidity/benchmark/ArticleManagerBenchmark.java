@@ -0,0 +1,82 @@
+/*
+ * This file is part of Fluidity and is licensed to the project under
+ * terms that are compatible with the GNU Lesser General Public License.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership and licensing.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package grondag.fluidity.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.world.item.Items;
+
+import grondag.fluidity.api.article.Article;
+import grondag.fluidity.base.article.StoredDiscreteArticle;
+import grondag.fluidity.base.storage.helper.FlexibleArticleManager;
+
+/**
+ * Lookups of distinct tagged articles in a large article manager, as in a big aggregate store.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ArticleManagerBenchmark {
+	@Param({"100", "10000"})
+	public int articleCount;
+
+	private Article[] articles;
+	private FlexibleArticleManager<StoredDiscreteArticle> manager;
+	private int next;
+
+	@Setup
+	public void setup() {
+		BenchmarkHelper.bootstrap();
+		articles = new Article[articleCount];
+		manager = new FlexibleArticleManager<>(16, StoredDiscreteArticle::new);
+
+		for (int i = 0; i < articleCount; ++i) {
+			final CompoundTag tag = new CompoundTag();
+			tag.putInt("serial", i);
+			tag.putString("owner", "benchmark");
+			articles[i] = Article.of(Items.DIAMOND_SWORD, tag);
+			manager.findOrCreateArticle(articles[i]);
+		}
+	}
+
+	@Benchmark
+	public StoredDiscreteArticle get() {
+		final int i = next;
+		next = i + 1 == articleCount ? 0 : i + 1;
+		return manager.get(articles[i]);
+	}
+}
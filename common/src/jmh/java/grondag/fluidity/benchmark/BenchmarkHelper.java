@@ -0,0 +1,54 @@
+/*
+ * This file is part of Fluidity and is licensed to the project under
+ * terms that are compatible with the GNU Lesser General Public License.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership and licensing.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package grondag.fluidity.benchmark;
+
+import net.minecraft.SharedConstants;
+import net.minecraft.server.Bootstrap;
+
+import grondag.fluidity.impl.TransactionImpl;
+import grondag.fluidity.impl.article.ArticleTypeImpl;
+
+/**
+ * Minimal game bootstrap so benchmarks can use registries and articles
+ * outside of a running game instance.
+ */
+final class BenchmarkHelper {
+	private BenchmarkHelper() { }
+
+	private static boolean isBootstrapped = false;
+
+	static synchronized void bootstrap() {
+		if (!isBootstrapped) {
+			SharedConstants.tryDetectVersion();
+			Bootstrap.bootStrap();
+			ArticleTypeImpl.init();
+			isBootstrapped = true;
+		}
+	}
+
+	/**
+	 * Benchmarks run on JMH worker threads. Treat the calling worker as the server thread
+	 * so single-threaded results are not distorted by non-server locking.
+	 */
+	static void claimServerThread() {
+		TransactionImpl.setServerThread(Thread.currentThread());
+	}
+}
@@ -0,0 +1,65 @@
+/*
+ * This file is part of Fluidity and is licensed to the project under
+ * terms that are compatible with the GNU Lesser General Public License.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership and licensing.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package grondag.fluidity.benchmark;
+
+import java.util.function.Consumer;
+
+import grondag.fluidity.api.transact.Transaction;
+import grondag.fluidity.api.transact.TransactionContext;
+import grondag.fluidity.api.transact.TransactionParticipant;
+import grondag.fluidity.api.transact.TransactionParticipant.TransactionDelegate;
+
+/** Self-enlisting participant with a single long value, similar to the one used in unit tests. */
+class BenchmarkParticipant implements TransactionParticipant, TransactionDelegate {
+	private long value;
+	private final Consumer<TransactionContext> closeHandler = this::handleClose;
+
+	void value(long val) {
+		Transaction.selfEnlistIfOpen(this);
+		value = val;
+	}
+
+	long value() {
+		return value;
+	}
+
+	@Override
+	public boolean isSelfEnlisting() {
+		return true;
+	}
+
+	@Override
+	public TransactionDelegate getTransactionDelegate() {
+		return this;
+	}
+
+	@Override
+	public Consumer<TransactionContext> prepareRollback(TransactionContext context) {
+		context.setState(value);
+		return closeHandler;
+	}
+
+	private void handleClose(TransactionContext context) {
+		if (!context.isCommited()) {
+			value = context.<Long>getState();
+		}
+	}
+}
@@ -0,0 +1,235 @@
+/*
+ * This file is part of Fluidity and is licensed to the project under
+ * terms that are compatible with the GNU Lesser General Public License.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership and licensing.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package grondag.fluidity.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jetbrains.annotations.Nullable;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.minecraft.core.Direction;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.item.Items;
+
+import grondag.fluidity.api.article.Article;
+import grondag.fluidity.api.article.ArticleType;
+import grondag.fluidity.api.device.Authorization;
+import grondag.fluidity.api.device.DeviceComponentAccess;
+import grondag.fluidity.api.device.DeviceComponentType;
+import grondag.fluidity.api.fraction.Fraction;
+import grondag.fluidity.api.storage.ArticleFunction;
+import grondag.fluidity.api.storage.Store;
+import grondag.fluidity.base.storage.discrete.SingleArticleStore;
+import grondag.fluidity.wip.api.transport.CarrierSession;
+import grondag.fluidity.wip.api.transport.CarrierType;
+import grondag.fluidity.wip.base.transport.BasicCarrier;
+import grondag.fluidity.wip.base.transport.BroadcastDistribution;
+import grondag.fluidity.wip.base.transport.CarrierCostFunction;
+
+/**
+ * Simulates one source broadcasting to many small consumers that are each drained in turn,
+ * like a pipe network feeding machines.  Most consumers are full in steady state, so the
+ * distribution strategy determines how many nodes are visited to place each unit.
+ *
+ * <p>Compare {@code visits} to {@code accepted} in the secondary results for nodes visited per accepted unit.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BroadcastBenchmark {
+	private static final long BROADCAST_COUNT = 16;
+	private static final long CONSUMER_CAPACITY = 64;
+	/** Prime stride so drained consumers are spread over the carrier. */
+	private static final int DRAIN_STRIDE = 7919;
+
+	@Param({"1000"})
+	public int consumerCount;
+
+	@Param({"IN_ORDER", "ROUND_ROBIN", "PROPORTIONAL", "PRIORITY"})
+	public String distribution;
+
+	private Carrier carrier;
+	private CarrierSession source;
+	private Store[] stores;
+	private Article stone;
+	private int drainIndex = 0;
+
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Counters {
+		public long visits;
+		public long accepted;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			visits = 0;
+			accepted = 0;
+		}
+	}
+
+	@Setup
+	public void setup() {
+		BenchmarkHelper.bootstrap();
+		BenchmarkHelper.claimServerThread();
+		stone = Article.of(Items.STONE);
+		carrier = new Carrier();
+
+		switch (distribution) {
+			case "IN_ORDER":
+				carrier.setBroadcastDistribution(BroadcastDistribution.inOrder());
+				break;
+			case "PROPORTIONAL":
+				carrier.setBroadcastDistribution(BroadcastDistribution.proportional());
+				break;
+			case "PRIORITY":
+				carrier.setBroadcastDistribution(BroadcastDistribution.priority(n -> (int) (n.nodeAddress() & 3)));
+				break;
+			default:
+				carrier.setBroadcastDistribution(BroadcastDistribution.roundRobin());
+				break;
+		}
+
+		source = carrier.attach(t -> t.getAbsentAccess());
+		stores = new Store[consumerCount];
+
+		for (int i = 0; i < consumerCount; ++i) {
+			final Store store = new SingleArticleStore(CONSUMER_CAPACITY);
+			stores[i] = store;
+			final CountingConsumer consumer = new CountingConsumer(store.getConsumer());
+
+			carrier.attach(t -> {
+				if (t == ArticleFunction.CONSUMER_COMPONENT) {
+					return new Access<>(ArticleFunction.CONSUMER_COMPONENT, consumer);
+				} else if (t == Store.STORAGE_COMPONENT) {
+					return new Access<>(Store.STORAGE_COMPONENT, store);
+				} else {
+					return t.getAbsentAccess();
+				}
+			});
+		}
+
+		// start in steady state with every consumer full
+		for (final Store store : stores) {
+			store.getConsumer().apply(stone, CONSUMER_CAPACITY, false);
+		}
+	}
+
+	@Benchmark
+	public long broadcast(Counters counters) {
+		stores[drainIndex].getSupplier().apply(stone, BROADCAST_COUNT, false);
+		drainIndex = (drainIndex + DRAIN_STRIDE) % consumerCount;
+
+		visitCounter = 0;
+		final long result = source.broadcastConsumer().apply(stone, BROADCAST_COUNT, false);
+		counters.visits += visitCounter;
+		counters.accepted += result;
+		return result;
+	}
+
+	private long visitCounter;
+
+	private class CountingConsumer implements ArticleFunction {
+		private final ArticleFunction wrapped;
+
+		CountingConsumer(ArticleFunction wrapped) {
+			this.wrapped = wrapped;
+		}
+
+		@Override
+		public TransactionDelegate getTransactionDelegate() {
+			return wrapped.getTransactionDelegate();
+		}
+
+		@Override
+		public boolean isSelfEnlisting() {
+			return wrapped.isSelfEnlisting();
+		}
+
+		@Override
+		public long apply(Article article, long count, boolean simulate) {
+			++visitCounter;
+			return wrapped.apply(article, count, simulate);
+		}
+
+		@Override
+		public Fraction apply(Article article, Fraction volume, boolean simulate) {
+			++visitCounter;
+			return wrapped.apply(article, volume, simulate);
+		}
+
+		@Override
+		public long apply(Article article, long numerator, long divisor, boolean simulate) {
+			++visitCounter;
+			return wrapped.apply(article, numerator, divisor, simulate);
+		}
+
+		@Override
+		public Article suggestArticle(@Nullable ArticleType<?> type) {
+			return wrapped.suggestArticle(type);
+		}
+	}
+
+	private static class Access<T> implements DeviceComponentAccess<T> {
+		private final DeviceComponentType<T> componentType;
+		private final T component;
+
+		Access(DeviceComponentType<T> componentType, T component) {
+			this.componentType = componentType;
+			this.component = component;
+		}
+
+		@Override
+		public DeviceComponentType<T> componentType() {
+			return componentType;
+		}
+
+		@Override
+		public T get(Authorization auth, @Nullable Direction side, @Nullable ResourceLocation id) {
+			return component;
+		}
+	}
+
+	private static class Carrier extends BasicCarrier<CarrierCostFunction> {
+		Carrier() {
+			super(CarrierType.EMPTY);
+		}
+
+		@Override
+		public CarrierCostFunction costFunction() {
+			return CarrierCostFunction.FREE;
+		}
+	}
+}
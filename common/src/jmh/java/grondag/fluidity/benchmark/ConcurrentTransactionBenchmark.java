@@ -0,0 +1,109 @@
+/*
+ * This file is part of Fluidity and is licensed to the project under
+ * terms that are compatible with the GNU Lesser General Public License.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership and licensing.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package grondag.fluidity.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import grondag.fluidity.api.transact.Transaction;
+import grondag.fluidity.api.transact.TransactionConflictException;
+import grondag.fluidity.impl.TransactionImpl;
+
+/**
+ * Transactions on several threads, each touching its own participants.
+ * Compare serialized and per-thread modes; run with {@code -t} to vary thread count.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class ConcurrentTransactionBenchmark {
+	@State(Scope.Benchmark)
+	public static class TransactionMode {
+		@Param({"false", "true"})
+		public boolean perThread;
+
+		@Setup(Level.Trial)
+		public void setup() {
+			TransactionImpl.setServerThread(null);
+			TransactionImpl.setPerThread(perThread);
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() {
+			TransactionImpl.setPerThread(false);
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Participants {
+		final BenchmarkParticipant[] participants = new BenchmarkParticipant[4];
+
+		/** Count of conflicts from shared lock stripes. Should be rare. */
+		long conflicts;
+
+		@Setup(Level.Trial)
+		public void setup() {
+			for (int i = 0; i < participants.length; ++i) {
+				participants[i] = new BenchmarkParticipant();
+			}
+		}
+	}
+
+	@Benchmark
+	public long commit(TransactionMode mode, Participants state) {
+		final BenchmarkParticipant[] participants = state.participants;
+
+		while (true) {
+			try (Transaction tx = Transaction.open()) {
+				for (int i = 0; i < participants.length; ++i) {
+					participants[i].value(i);
+				}
+
+				try (Transaction nested = Transaction.open()) {
+					participants[0].value(1);
+					nested.commit();
+				}
+
+				tx.commit();
+				return participants[0].value();
+			} catch (final TransactionConflictException e) {
+				++state.conflicts;
+			}
+		}
+	}
+}
@@ -0,0 +1,148 @@
+/*
+ * This file is part of Fluidity and is licensed to the project under
+ * terms that are compatible with the GNU Lesser General Public License.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership and licensing.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package grondag.fluidity.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.Items;
+
+import grondag.fluidity.api.article.Article;
+import grondag.fluidity.api.storage.ArticleBatch;
+import grondag.fluidity.api.storage.ArticleFunction;
+import grondag.fluidity.base.storage.discrete.AggregateDiscreteStore;
+import grondag.fluidity.base.storage.discrete.DividedDiscreteStore;
+
+/**
+ * Discrete accept/supply against a single divided store and against an aggregate
+ * of divided stores, similar to a drawer multiblock.
+ *
+ * <p>Member stores are pre-filled so that accepted articles land in the last member,
+ * which is the worst case for scans over member stores.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DiscreteStoreBenchmark {
+	private static final Item[] FILLERS = {Items.COBBLESTONE, Items.DIRT, Items.SAND, Items.GRAVEL};
+	private static final Item[] BATCH_ITEMS = {Items.DIAMOND, Items.EMERALD, Items.GOLD_INGOT, Items.IRON_INGOT, Items.COAL, Items.REDSTONE, Items.LAPIS_LAZULI, Items.QUARTZ};
+
+	@Param({"10", "100", "1000", "5000"})
+	public int memberCount;
+
+	private DividedDiscreteStore single;
+	private AggregateDiscreteStore aggregate;
+	private ArticleFunction singleConsumer;
+	private ArticleFunction singleSupplier;
+	private ArticleFunction aggregateConsumer;
+	private ArticleFunction aggregateSupplier;
+	private Article stone;
+	private final ArticleBatch batch = new ArticleBatch();
+
+	@Setup
+	public void setup() {
+		BenchmarkHelper.bootstrap();
+		BenchmarkHelper.claimServerThread();
+		stone = Article.of(Items.STONE);
+
+		single = new DividedDiscreteStore(4, 1024);
+		singleConsumer = single.getConsumer();
+		singleSupplier = single.getSupplier();
+		singleConsumer.apply(stone, 512, false);
+
+		aggregate = new AggregateDiscreteStore();
+
+		for (int i = 0; i < memberCount; ++i) {
+			final DividedDiscreteStore member = new DividedDiscreteStore(FILLERS.length, 1024);
+
+			if (i < memberCount - 1) {
+				// fill all but the last member so accepts must search
+				for (final Item filler : FILLERS) {
+					member.getConsumer().apply(Article.of(filler), 1024, false);
+				}
+			}
+
+			aggregate.addStore(member);
+		}
+
+		aggregateConsumer = aggregate.getConsumer();
+		aggregateSupplier = aggregate.getSupplier();
+		aggregateConsumer.apply(stone, 512, false);
+
+		for (final Item item : BATCH_ITEMS) {
+			batch.add(Article.of(item), 16);
+		}
+	}
+
+	@Benchmark
+	public long dividedAcceptSupply() {
+		final long n = singleConsumer.apply(stone, 16, false);
+		return n + singleSupplier.apply(stone, 16, false);
+	}
+
+	@Benchmark
+	public long aggregateAcceptSupply() {
+		final long n = aggregateConsumer.apply(stone, 16, false);
+		return n + aggregateSupplier.apply(stone, 16, false);
+	}
+
+	@Benchmark
+	public long aggregateSimulateAccept() {
+		return aggregateConsumer.apply(stone, 16, true);
+	}
+
+	@Benchmark
+	public long aggregateSimulateNewArticle() {
+		return aggregateConsumer.apply(Items.DIAMOND, 16, true);
+	}
+
+	@Benchmark
+	public long aggregateSimulateNewArticlesPerItem() {
+		final int limit = batch.size();
+		long result = 0;
+
+		for (int i = 0; i < limit; ++i) {
+			result += aggregateConsumer.apply(batch.article(i), batch.count(i), true);
+		}
+
+		return result;
+	}
+
+	@Benchmark
+	public long aggregateSimulateNewArticlesBatch() {
+		return aggregateConsumer.applyAll(batch, true);
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * This file is part of Fluidity and is licensed to the project under
+ * terms that are compatible with the GNU Lesser General Public License.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership and licensing.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package grondag.fluidity.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import grondag.fluidity.api.fraction.Fraction;
+import grondag.fluidity.api.fraction.MutableFraction;
+
+/**
+ * Mutable fraction arithmetic with the denominators most common in practice:
+ * whole buckets, thirds, 1/81 (bottle nuggets), 1/1000 (millibuckets) and 1/1620.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FractionBenchmark {
+	private static final long[] DIVISORS = {1, 3, 81, 1000, 1620};
+
+	private final MutableFraction acc = new MutableFraction();
+	private final MutableFraction scratch = new MutableFraction();
+	private int index;
+
+	@Setup
+	public void setup() {
+		acc.set(1000);
+	}
+
+	private long nextDivisor() {
+		index = (index + 1) % DIVISORS.length;
+		return DIVISORS[index];
+	}
+
+	@Benchmark
+	public Fraction addSameDivisor() {
+		acc.add(1, 1000);
+		acc.subtract(1, 1000);
+		return acc;
+	}
+
+	@Benchmark
+	public Fraction addMixedDivisor() {
+		final long d = nextDivisor();
+		acc.add(1, d);
+		acc.subtract(1, d);
+		return acc;
+	}
+
+	@Benchmark
+	public Fraction addFraction() {
+		scratch.set(0, 1, nextDivisor());
+		acc.add(scratch);
+		acc.subtract(scratch);
+		return acc;
+	}
+
+	@Benchmark
+	public Fraction normalize() {
+		// setting an unreduced value and adding zero forces a full normalize pass
+		return scratch.set(0, 162, 1620).add(0);
+	}
+
+	@Benchmark
+	public int compare() {
+		scratch.set(0, 1, nextDivisor());
+		return acc.compareTo(scratch);
+	}
+}
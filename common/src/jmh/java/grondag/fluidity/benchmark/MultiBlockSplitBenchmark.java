@@ -0,0 +1,151 @@
+/*
+ * This file is part of Fluidity and is licensed to the project under
+ * terms that are compatible with the GNU Lesser General Public License.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership and licensing.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package grondag.fluidity.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.Level;
+
+import grondag.fluidity.api.multiblock.MultiBlockManager;
+import grondag.fluidity.api.multiblock.MultiBlockMember;
+import grondag.fluidity.base.multiblock.AbstractMultiBlock;
+import grondag.fluidity.impl.MultiBlockManagerImpl;
+
+/**
+ * Disconnects a random member of a large multiblock and connects it again.
+ * Removal from a cube rarely splits the multiblock, while removal from a line
+ * almost always splits it in two.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MultiBlockSplitBenchmark {
+	@Param({"cube", "line"})
+	public String shape;
+
+	@Param({"1000", "50000"})
+	public int memberCount;
+
+	private MultiBlockManager<Member, Device, Object> manager;
+	private final ObjectArrayList<Member> members = new ObjectArrayList<>();
+	private final Random random = new Random(42);
+
+	@Setup
+	public void setup() {
+		manager = MultiBlockManagerImpl.create(Device::new, (a, b) -> true);
+		members.clear();
+
+		if (shape.equals("line")) {
+			for (int x = 0; x < memberCount; ++x) {
+				members.add(new Member(BlockPos.asLong(x, 0, 0)));
+			}
+		} else {
+			final int edge = (int) Math.ceil(Math.cbrt(memberCount));
+
+			for (int x = 0; x < edge; ++x) {
+				for (int y = 0; y < edge; ++y) {
+					for (int z = 0; z < edge; ++z) {
+						members.add(new Member(BlockPos.asLong(x, y, z)));
+					}
+				}
+			}
+		}
+
+		for (final Member m : members) {
+			manager.connect(m);
+		}
+
+		// ticks are budgeted, so large backlogs take several
+		do {
+			MultiBlockManagerImpl.tick(null);
+		} while (MultiBlockManagerImpl.hasPendingRequests());
+	}
+
+	@Benchmark
+	public Device removeAndRestore() {
+		final Member member = members.get(random.nextInt(members.size()));
+		manager.disconnect(member);
+		MultiBlockManagerImpl.tick(null);
+		manager.connect(member);
+		MultiBlockManagerImpl.tick(null);
+		return member.getMultiblock();
+	}
+
+	static class Member implements MultiBlockMember<Member, Device, Object> {
+		private final long pos;
+		private Device owner;
+
+		Member(long pos) {
+			this.pos = pos;
+		}
+
+		@Override
+		public Device getMultiblock() {
+			return owner;
+		}
+
+		@Override
+		public void setMultiblock(Device owner) {
+			this.owner = owner;
+		}
+
+		@Override
+		public Object getMemberComponent() {
+			return this;
+		}
+
+		@Override
+		public long getPackedPos() {
+			return pos;
+		}
+
+		@Override
+		public Level getWorld() {
+			return null;
+		}
+	}
+
+	static class Device extends AbstractMultiBlock<Member, Device, Object> {
+		@Override
+		protected void afterMemberAddition(Member member) { }
+
+		@Override
+		protected void beforeMemberRemoval(Member member) { }
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * This file is part of Fluidity and is licensed to the project under
+ * terms that are compatible with the GNU Lesser General Public License.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership and licensing.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package grondag.fluidity.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.minecraft.world.level.material.Fluids;
+
+import grondag.fluidity.api.article.Article;
+import grondag.fluidity.api.fraction.Fraction;
+import grondag.fluidity.api.storage.ArticleFunction;
+import grondag.fluidity.api.transact.Transaction;
+import grondag.fluidity.base.storage.bulk.SimpleTank;
+
+/**
+ * Bulk accept/supply round trips against a single tank, both outside
+ * of any transaction and inside a committed root transaction.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SimpleTankBenchmark {
+	private static final Fraction THIRD = Fraction.of(1, 3);
+
+	private SimpleTank tank;
+	private ArticleFunction consumer;
+	private ArticleFunction supplier;
+	private Article water;
+
+	@Setup
+	public void setup() {
+		BenchmarkHelper.bootstrap();
+		BenchmarkHelper.claimServerThread();
+		water = Article.of(Fluids.WATER);
+		tank = new SimpleTank(Fraction.of(64));
+		consumer = tank.getConsumer();
+		supplier = tank.getSupplier();
+		consumer.apply(water, 32, 1, false);
+	}
+
+	@Benchmark
+	public long acceptSupplyLong() {
+		final long n = consumer.apply(water, 250, 1000, false);
+		return n + supplier.apply(water, 250, 1000, false);
+	}
+
+	@Benchmark
+	public Fraction acceptSupplyFraction() {
+		consumer.apply(water, THIRD, false);
+		return supplier.apply(water, THIRD, false);
+	}
+
+	@Benchmark
+	public long acceptSupplyTransaction() {
+		try (Transaction tx = Transaction.open()) {
+			final long n = consumer.apply(water, 1, 81, false);
+			tx.commit();
+			return n + supplier.apply(water, 1, 81, false);
+		}
+	}
+
+	@Benchmark
+	public long simulateAccept() {
+		return consumer.apply(water, 250, 1000, true);
+	}
+}
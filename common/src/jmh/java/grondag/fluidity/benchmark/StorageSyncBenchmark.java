@@ -0,0 +1,143 @@
+/*
+ * This file is part of Fluidity and is licensed to the project under
+ * terms that are compatible with the GNU Lesser General Public License.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership and licensing.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package grondag.fluidity.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.minecraft.core.Registry;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.world.item.Item;
+
+import grondag.fluidity.api.article.Article;
+import grondag.fluidity.api.storage.Store;
+import grondag.fluidity.base.article.StoredDiscreteArticle;
+import grondag.fluidity.base.storage.discrete.FlexibleDiscreteStore;
+import grondag.fluidity.base.synch.DiscreteStorageServerDelegate;
+import grondag.fluidity.base.synch.DiscreteStorageUpdateS2C;
+import grondag.fluidity.base.synch.StorageUpdateEncoder;
+
+/**
+ * Encodes one server tick of storage updates the way {@link DiscreteStorageServerDelegate#sendUpdates()}
+ * does, without a player connection. Compares a new growable heap buffer per packet with
+ * the reusable encoder. Run with the GC profiler to compare {@code gc.alloc.rate.norm}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StorageSyncBenchmark {
+	@Param({"10", "100", "1000"})
+	public int updateCount;
+
+	private Encoder delegate;
+	private Article[] articles;
+	private long tick = 0;
+
+	@Setup
+	public void setup() {
+		BenchmarkHelper.bootstrap();
+		articles = new Article[updateCount];
+		int i = 0;
+
+		for (final Item item : Registry.ITEM) {
+			if (i == updateCount) {
+				break;
+			}
+
+			articles[i++] = Article.of(item);
+		}
+
+		delegate = new Encoder(new FlexibleDiscreteStore(Long.MAX_VALUE));
+
+		// first tick defines every handle so later ticks only send count deltas
+		delegate.stage(articles, 1);
+		delegate.encodeFullRefresh(StorageUpdateEncoder.get());
+		delegate.clear();
+	}
+
+	@Benchmark
+	public FriendlyByteBuf legacyDelta() {
+		delegate.stage(articles, ++tick);
+		final FriendlyByteBuf result = DiscreteStorageUpdateS2C.finishDelta(delegate.encodeLegacy(), -1);
+		delegate.clear();
+		return result;
+	}
+
+	@Benchmark
+	public FriendlyByteBuf encoderDelta() {
+		delegate.stage(articles, ++tick);
+		final StorageUpdateEncoder encoder = StorageUpdateEncoder.get();
+		DiscreteStorageUpdateS2C.finishDelta(delegate.encodeDelta(encoder), -1);
+		delegate.clear();
+		return encoder.finish();
+	}
+
+	private static class Encoder extends DiscreteStorageServerDelegate {
+		Encoder(Store storage) {
+			super(null, storage);
+			isFirstUpdate = false;
+		}
+
+		void stage(Article[] articles, long count) {
+			for (int i = 0; i < articles.length; ++i) {
+				onAccept(storage, i, articles[i], 1, count + i);
+			}
+		}
+
+		FriendlyByteBuf encodeLegacy() {
+			final FriendlyByteBuf buf = DiscreteStorageUpdateS2C.beginDelta(updates.size());
+
+			for (final StoredDiscreteArticle a : updates.values()) {
+				appendDelta(buf, a.article(), a.count(), a.handle());
+			}
+
+			return buf;
+		}
+
+		@Override
+		protected FriendlyByteBuf encodeFullRefresh(StorageUpdateEncoder encoder) {
+			return super.encodeFullRefresh(encoder);
+		}
+
+		@Override
+		protected FriendlyByteBuf encodeDelta(StorageUpdateEncoder encoder) {
+			return super.encodeDelta(encoder);
+		}
+
+		void clear() {
+			updates.clear();
+		}
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * This file is part of Fluidity and is licensed to the project under
+ * terms that are compatible with the GNU Lesser General Public License.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership and licensing.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package grondag.fluidity.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import grondag.fluidity.api.transact.Transaction;
+
+/**
+ * Enlists many participants in a root and nested transaction and commits both.
+ * Steady state should report {@code gc.alloc.rate.norm} of 0 B/op with the GC profiler.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransactionAllocationBenchmark {
+	@Param({"1", "8", "32"})
+	public int participantCount;
+
+	private BenchmarkParticipant[] participants;
+
+	@Setup
+	public void setup() {
+		BenchmarkHelper.claimServerThread();
+		participants = new BenchmarkParticipant[participantCount];
+
+		for (int i = 0; i < participantCount; ++i) {
+			participants[i] = new BenchmarkParticipant();
+		}
+	}
+
+	@Benchmark
+	public long nestedCommit() {
+		final BenchmarkParticipant[] participants = this.participants;
+		final int half = participants.length >> 1;
+
+		try (Transaction tx = Transaction.open()) {
+			for (int i = 0; i < half; ++i) {
+				participants[i].value(i);
+			}
+
+			try (Transaction nested = Transaction.open()) {
+				// all of these are elevated to the enclosing transaction on commit
+				for (int i = 0; i < participants.length; ++i) {
+					participants[i].value(i + 1);
+				}
+
+				nested.commit();
+			}
+
+			tx.commit();
+		}
+
+		return participants[0].value();
+	}
+
+	@Benchmark
+	public long nestedRollback() {
+		final BenchmarkParticipant[] participants = this.participants;
+
+		try (Transaction tx = Transaction.open()) {
+			try (Transaction nested = Transaction.open()) {
+				for (int i = 0; i < participants.length; ++i) {
+					participants[i].value(i);
+				}
+
+				nested.rollback();
+			}
+
+			tx.commit();
+		}
+
+		return participants[0].value();
+	}
+}
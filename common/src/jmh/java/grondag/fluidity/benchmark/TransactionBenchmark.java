@@ -0,0 +1,102 @@
+/*
+ * This file is part of Fluidity and is licensed to the project under
+ * terms that are compatible with the GNU Lesser General Public License.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership and licensing.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package grondag.fluidity.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import grondag.fluidity.api.transact.Transaction;
+
+/**
+ * Open, enlist and close transactions nested to the given depth.
+ * Each level changes one participant so every close has work to do.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransactionBenchmark {
+	@Param({"1", "2", "4", "8"})
+	public int depth;
+
+	private BenchmarkParticipant[] participants;
+
+	@Setup
+	public void setup() {
+		BenchmarkHelper.claimServerThread();
+		participants = new BenchmarkParticipant[depth];
+
+		for (int i = 0; i < depth; ++i) {
+			participants[i] = new BenchmarkParticipant();
+		}
+	}
+
+	@Benchmark
+	public long commit() {
+		nest(0, true);
+		return participants[0].value();
+	}
+
+	@Benchmark
+	public long rollback() {
+		nest(0, false);
+		return participants[0].value();
+	}
+
+	@Benchmark
+	public long openClose() {
+		try (Transaction tx = Transaction.open()) {
+			tx.commit();
+		}
+
+		return depth;
+	}
+
+	private void nest(int level, boolean commit) {
+		try (Transaction tx = Transaction.open()) {
+			// small values so boxed rollback state comes from the Long cache
+			participants[level].value(level);
+
+			if (level + 1 < depth) {
+				nest(level + 1, commit);
+			}
+
+			if (commit) {
+				tx.commit();
+			} else {
+				tx.rollback();
+			}
+		}
+	}
+}
@@ -56,6 +56,20 @@ public interface Article {
 	 */
 	@Nullable <T> T resource();
 
+	/**
+	 * Dense, non-negative identifier assigned when this article instance is created.
+	 * Suitable as a key for primitive collections and arrays but only valid for
+	 * the current session - never persist or send it over the network.
+	 *
+	 * <p>Articles are interned, but tagged articles may occasionally be evicted and
+	 * re-created, so two equal articles can have different ids. Id-keyed collections
+	 * should treat an id match as authoritative and fall back to {@link #equals(Object)}
+	 * when an id is not found.
+	 *
+	 * @return session-unique identifier for this article instance
+	 */
+	int id();
+
 	/**
 	 * For convenience and to promote discoverability of {@link #NOTHING}.
 	 *
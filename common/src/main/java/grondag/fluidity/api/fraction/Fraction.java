@@ -20,6 +20,8 @@
 
 package grondag.fluidity.api.fraction;
 
+import java.math.BigInteger;
+
 import it.unimi.dsi.fastutil.HashCommon;
 import org.jetbrains.annotations.ApiStatus.Experimental;
 
@@ -202,7 +204,17 @@ public class Fraction implements Comparable<Fraction> {
 	protected final void normalize() {
 		if (Math.abs(numerator) >= divisor) {
 			final long w = numerator / divisor;
-			whole += w;
+			final long sum = whole + w;
+
+			// carry overflows the whole part - saturate
+			if (((whole ^ sum) & (w ^ sum)) < 0) {
+				whole = w > 0 ? Long.MAX_VALUE : Long.MIN_VALUE;
+				numerator = 0;
+				divisor = 1;
+				return;
+			}
+
+			whole = sum;
 			numerator -= w * divisor;
 		}
 
@@ -232,6 +244,26 @@ public class Fraction implements Comparable<Fraction> {
 			divisor >>= twos;
 		}
 
+		if (divisor == 1) {
+			return;
+		}
+
+		// Divisors of the fixed unit have no prime factors other than 2, 3 and 5 and
+		// twos are already removed, so can avoid the general gcd.
+		if (FIXED_UNIT % divisor == 0) {
+			while (divisor % 3 == 0 && numerator % 3 == 0) {
+				numerator /= 3;
+				divisor /= 3;
+			}
+
+			while (divisor % 5 == 0 && numerator % 5 == 0) {
+				numerator /= 5;
+				divisor /= 5;
+			}
+
+			return;
+		}
+
 		// use conventional gcd for rest
 		final long gcd = gcd(Math.abs(numerator), divisor);
 
@@ -277,6 +309,7 @@ public class Fraction implements Comparable<Fraction> {
 	/**
 	 * Returns the number of units that is less than or equal to the given unit.
 	 * Make be larger than this if value is not evenly divisible .
+	 * Saturates at {@link Long#MAX_VALUE} or {@link Long#MIN_VALUE} if the result would overflow.
 	 *
 	 * @param units Fraction of one bucket that counts as 1 in the result. Must be >= 1.
 	 * @return Number of units within current volume.
@@ -286,15 +319,52 @@ public class Fraction implements Comparable<Fraction> {
 			throw new IllegalArgumentException("RationalNumber divisor must be >= 1");
 		}
 
-		final long base = whole() * divisor;
+		final long base = saturatedMultiply(whole(), divisor);
 
 		if (numerator() == 0) {
 			return base;
 		} else if (divisor() == divisor) {
-			return base + numerator();
+			return saturatedAdd(base, numerator());
 		} else {
-			return base + numerator() * divisor / divisor();
+			return saturatedAdd(base, multiplyDivide(numerator(), divisor, divisor()));
+		}
+	}
+
+	/**
+	 * Computes a * b / c, rounded toward zero, without overflow of the intermediate product.
+	 * The result itself must fit in a {@code long}, which is always true when |a| < c.
+	 */
+	protected static long multiplyDivide(long a, long b, long c) {
+		final long high = Math.multiplyHigh(a, b);
+		final long low = a * b;
+
+		if (high == (low >> 63)) {
+			return low / c;
+		}
+
+		return BigInteger.valueOf(a).multiply(BigInteger.valueOf(b)).divide(BigInteger.valueOf(c)).longValueExact();
+	}
+
+	protected static long saturatedMultiply(long a, long b) {
+		final long high = Math.multiplyHigh(a, b);
+		final long low = a * b;
+
+		if (high == (low >> 63)) {
+			return low;
+		}
+
+		return (a < 0) == (b < 0) ? Long.MAX_VALUE : Long.MIN_VALUE;
+	}
+
+	protected static long saturatedAdd(long a, long b) {
+		final long result = a + b;
+
+		// overflow only if both inputs have same sign and result sign differs
+		if (((a ^ result) & (b ^ result)) < 0) {
+			return a < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
 		}
+
+		return result;
 	}
 
 	/**
@@ -318,7 +388,45 @@ public class Fraction implements Comparable<Fraction> {
 	@Override
 	public final int compareTo(Fraction o) {
 		final int result = Long.compare(whole(), o.whole());
-		return result == 0 ? Long.compare(numerator() * o.divisor(), o.numerator() * divisor()) : result;
+
+		if (result != 0) {
+			return result;
+		}
+
+		if (divisor() == o.divisor()) {
+			return Long.compare(numerator(), o.numerator());
+		}
+
+		return compareProducts(numerator(), o.divisor(), o.numerator(), divisor());
+	}
+
+	/**
+	 * Compares a * b with c * d using the full 128-bit products so the result is correct even if
+	 * the products would overflow a {@code long}.
+	 */
+	protected static int compareProducts(long a, long b, long c, long d) {
+		final int high = Long.compare(Math.multiplyHigh(a, b), Math.multiplyHigh(c, d));
+		return high == 0 ? Long.compareUnsigned(a * b, c * d) : high;
+	}
+
+	/**
+	 * True if this fraction can be exactly expressed as a whole number of
+	 * {@link #FIXED_UNIT} sub-units via {@link #toFixedUnits()}.
+	 *
+	 * @return {@code true} if the divisor is a factor of {@link #FIXED_UNIT} and the value is within range
+	 */
+	public final boolean isFixed() {
+		return whole <= MAX_FIXED_WHOLE && whole >= -MAX_FIXED_WHOLE && isFixedDivisor(divisor);
+	}
+
+	/**
+	 * This fraction expressed as a count of 1 / {@link #FIXED_UNIT} sub-units.
+	 * Result is only valid if {@link #isFixed()} is {@code true}.
+	 *
+	 * @return this fraction scaled by {@link #FIXED_UNIT}
+	 */
+	public final long toFixedUnits() {
+		return whole * FIXED_UNIT + numerator * (FIXED_UNIT / divisor);
 	}
 
 	public final boolean isGreaterThan(Fraction other) {
@@ -413,6 +521,23 @@ public class Fraction implements Comparable<Fraction> {
 		return f.toImmutable();
 	}
 
+	/**
+	 * Least common multiple of the divisors most often used for bulk articles: 1, 3, 81, 1000 and 1620.
+	 * Arithmetic on fractions with a divisor that is a factor of this value avoids cross-multiplication
+	 * and the general greatest-common-divisor search.
+	 */
+	public static final long FIXED_UNIT = 81000;
+
+	private static final long MAX_FIXED_WHOLE = Long.MAX_VALUE / FIXED_UNIT - 1;
+
+	/**
+	 * @param divisor fraction divisor to test
+	 * @return {@code true} if the divisor is a factor of {@link #FIXED_UNIT}
+	 */
+	public static boolean isFixedDivisor(long divisor) {
+		return divisor >= 1 && FIXED_UNIT % divisor == 0;
+	}
+
 	public static final Fraction ZERO = Fraction.of(0, 0, 1);
 	public static final Fraction ONE = Fraction.of(1, 0, 1);
 	public static final Fraction MAX_VALUE = Fraction.of(Long.MAX_VALUE, 0, 1);
@@ -20,6 +20,8 @@
 
 package grondag.fluidity.api.fraction;
 
+import java.math.BigInteger;
+
 import org.jetbrains.annotations.ApiStatus.Experimental;
 
 import net.minecraft.nbt.CompoundTag;
@@ -109,36 +111,99 @@ public final class MutableFraction extends Fraction {
 
 	public MutableFraction add(long whole, long numerator, long divisor) {
 		validate(whole, numerator, divisor);
-		this.whole += whole;
 
 		if (Math.abs(numerator) >= divisor) {
 			final long w = numerator / divisor;
-			this.whole += w;
 			numerator -= w * divisor;
+
+			try {
+				whole = Math.addExact(whole, w);
+			} catch (final ArithmeticException e) {
+				addWide(BigInteger.valueOf(whole).add(BigInteger.valueOf(w)), numerator, divisor);
+				return this;
+			}
 		}
 
-		final long n = this.numerator * divisor + numerator * this.divisor;
+		try {
+			this.whole = Math.addExact(this.whole, whole);
+		} catch (final ArithmeticException e) {
+			addWide(BigInteger.valueOf(whole), numerator, divisor);
+			return this;
+		}
+
+		final long n;
+		final long d;
+
+		if (divisor == this.divisor) {
+			// no cross-multiplication needed
+			n = this.numerator + numerator;
+			d = divisor;
+		} else if (isFixedDivisor(divisor) && isFixedDivisor(this.divisor)) {
+			// fixed unit is a common multiple and keeps normalization on the fast path
+			n = this.numerator * (FIXED_UNIT / this.divisor) + numerator * (FIXED_UNIT / divisor);
+			d = FIXED_UNIT;
+		} else {
+			final long a = this.numerator * divisor;
+			final long b = numerator * this.divisor;
+			d = divisor * this.divisor;
+			n = a + b;
+
+			if (Math.multiplyHigh(this.numerator, divisor) != (a >> 63)
+					|| Math.multiplyHigh(numerator, this.divisor) != (b >> 63)
+					|| Math.multiplyHigh(divisor, this.divisor) != 0 || d < 0
+					|| ((a ^ n) & (b ^ n)) < 0) {
+				final BigInteger bigDivisor = BigInteger.valueOf(divisor);
+				final BigInteger bigThisDivisor = BigInteger.valueOf(this.divisor);
+
+				setWide(BigInteger.valueOf(this.whole),
+						BigInteger.valueOf(this.numerator).multiply(bigDivisor).add(BigInteger.valueOf(numerator).multiply(bigThisDivisor)),
+						bigDivisor.multiply(bigThisDivisor),
+						Math.max(divisor, this.divisor));
+
+				return this;
+			}
+		}
 
 		if (n == 0) {
 			this.numerator = 0;
 			this.divisor = 1;
 		} else {
 			this.numerator = n;
-			this.divisor = divisor * this.divisor;
+			this.divisor = d;
 			normalize();
 		}
 
 		return this;
 	}
 
+	/** Adds a value whose whole part overflowed or would overflow when added to this instance. */
+	private void addWide(BigInteger whole, long numerator, long divisor) {
+		final BigInteger bigDivisor = BigInteger.valueOf(divisor);
+		final BigInteger bigThisDivisor = BigInteger.valueOf(this.divisor);
+
+		setWide(BigInteger.valueOf(this.whole).add(whole),
+				BigInteger.valueOf(this.numerator).multiply(bigDivisor).add(BigInteger.valueOf(numerator).multiply(bigThisDivisor)),
+				bigDivisor.multiply(bigThisDivisor),
+				Math.max(divisor, this.divisor));
+	}
+
 	public MutableFraction multiply(Fraction val) {
 		return multiply(val.whole(), val.numerator(), val.divisor());
 	}
 
 	public MutableFraction multiply(long whole) {
-		numerator *= whole;
-		this.whole *= whole;
-		normalize();
+		final long n = numerator * whole;
+		final long w = this.whole * whole;
+
+		if (Math.multiplyHigh(numerator, whole) != (n >> 63) || Math.multiplyHigh(this.whole, whole) != (w >> 63)) {
+			final BigInteger bigWhole = BigInteger.valueOf(whole);
+			setWide(BigInteger.valueOf(this.whole).multiply(bigWhole), BigInteger.valueOf(numerator).multiply(bigWhole), BigInteger.valueOf(divisor), divisor);
+		} else {
+			numerator = n;
+			this.whole = w;
+			normalize();
+		}
+
 		return this;
 	}
 
@@ -160,15 +225,27 @@ public final class MutableFraction extends Fraction {
 			numerator -= w * divisor;
 		}
 
-		// avoids a division later to factor out common divisor from the two steps that follow this
-		final long numeratorProduct = numerator * this.numerator;
-		this.numerator *= divisor;
-		numerator *= this.divisor;
+		try {
+			// avoids a division later to factor out common divisor from the two steps that follow this
+			final long numeratorProduct = Math.multiplyExact(numerator, this.numerator);
+			final long scaledThisNumerator = Math.multiplyExact(this.numerator, divisor);
+			final long scaledNumerator = Math.multiplyExact(numerator, this.divisor);
+			final long d = Math.multiplyExact(this.divisor, divisor);
+			final long n = Math.addExact(Math.addExact(Math.multiplyExact(scaledThisNumerator, whole), Math.multiplyExact(scaledNumerator, this.whole)), numeratorProduct);
+			final long w = Math.multiplyExact(this.whole, whole);
 
-		this.divisor *= divisor;
-		this.numerator = this.numerator * whole + numerator * this.whole + numeratorProduct;
-		this.whole *= whole;
-		normalize();
+			this.divisor = d;
+			this.numerator = n;
+			this.whole = w;
+			normalize();
+		} catch (final ArithmeticException e) {
+			// (w1 * d1 + n1) * (w2 * d2 + n2) / (d1 * d2)
+			final BigInteger bigDivisor = BigInteger.valueOf(divisor);
+			final BigInteger bigThisDivisor = BigInteger.valueOf(this.divisor);
+			final BigInteger left = BigInteger.valueOf(this.whole).multiply(bigThisDivisor).add(BigInteger.valueOf(this.numerator));
+			final BigInteger right = BigInteger.valueOf(whole).multiply(bigDivisor).add(BigInteger.valueOf(numerator));
+			setWide(BigInteger.ZERO, left.multiply(right), bigThisDivisor.multiply(bigDivisor), Math.max(divisor, this.divisor));
+		}
 
 		return this;
 	}
@@ -198,8 +275,56 @@ public final class MutableFraction extends Fraction {
 	 */
 	public void roundDown(long divisor) {
 		if (this.divisor != divisor) {
-			this.set(whole, numerator * divisor / this.divisor, divisor);
+			this.set(whole, multiplyDivide(numerator, divisor, this.divisor), divisor);
+		}
+	}
+
+	/**
+	 * Sets this instance to the exact result of an operation that overflowed
+	 * 64-bit intermediate values, demoting back to {@code long} components.
+	 *
+	 * <p>If the reduced divisor still does not fit, the fractional part is rounded toward
+	 * zero to a multiple of {@code fallbackDivisor}. If the whole part does not fit, the
+	 * result saturates at {@link Long#MAX_VALUE} or {@link Long#MIN_VALUE}.
+	 */
+	private void setWide(BigInteger whole, BigInteger numerator, BigInteger divisor, long fallbackDivisor) {
+		final BigInteger gcd = numerator.gcd(divisor);
+
+		if (gcd.signum() != 0 && !gcd.equals(BigInteger.ONE)) {
+			numerator = numerator.divide(gcd);
+			divisor = divisor.divide(gcd);
+		}
+
+		final BigInteger[] parts = numerator.divideAndRemainder(divisor);
+		whole = whole.add(parts[0]);
+		numerator = parts[1];
+
+		// keep signs consistent before checking range of whole part
+		if (whole.signum() > 0 && numerator.signum() < 0) {
+			whole = whole.subtract(BigInteger.ONE);
+			numerator = numerator.add(divisor);
+		} else if (whole.signum() < 0 && numerator.signum() > 0) {
+			whole = whole.add(BigInteger.ONE);
+			numerator = numerator.subtract(divisor);
+		}
+
+		if (divisor.bitLength() > 63) {
+			final BigInteger fallback = BigInteger.valueOf(fallbackDivisor);
+			numerator = numerator.multiply(fallback).divide(divisor);
+			divisor = fallback;
 		}
+
+		if (whole.bitLength() > 63) {
+			this.whole = whole.signum() > 0 ? Long.MAX_VALUE : Long.MIN_VALUE;
+			this.numerator = 0;
+			this.divisor = 1;
+			return;
+		}
+
+		this.whole = whole.longValue();
+		this.numerator = numerator.longValue();
+		this.divisor = divisor.longValue();
+		normalize();
 	}
 
 	public void readBuffer(FriendlyByteBuf buffer) {
@@ -70,10 +70,37 @@ public interface MultiBlock<T extends MultiBlockMember<T, U, V>, U extends Multi
 	 * Applies the close action to all members, removes them from
 	 * this instance and executes {@link #close()}.
 	 *
-	 * <p>Called when this instance is merged into another and this instance
-	 * does not survive. May be called in other circumstances also.
+	 * <p>Called by the default implementation of {@link #mergeInto(MultiBlock)}.
+	 * May be called in other circumstances also.
 	 *
 	 * @param closeAction action to be applied to all members before removal
 	 */
 	void removalAllAndClose(Consumer<T> closeAction);
+
+	/**
+	 * Moves all members of this instance to the survivor and closes this instance.
+	 * Called when this instance is merged into another and this instance does not survive.
+	 *
+	 * <p>The default implementation uses {@link #removalAllAndClose(Consumer)} to move
+	 * members one at a time. Implementations can override to transfer shared state
+	 * in bulk before members are moved.
+	 *
+	 * @param survivor the instance that will receive all members of this instance
+	 */
+	default void mergeInto(U survivor) {
+		removalAllAndClose(m -> {
+			m.setMultiblock(survivor);
+			survivor.add(m);
+		});
+	}
+
+	/**
+	 * Called when the multiblock starts or finishes assembling, for example while a large
+	 * structure is connected over several ticks after world load. Members are still added and
+	 * removed normally while assembling, but expensive work that depends on the final set of
+	 * members can be deferred until assembly is complete.
+	 *
+	 * @param isAssembling true when assembly starts, false when it is complete
+	 */
+	default void setAssembling(boolean isAssembling) { }
 }
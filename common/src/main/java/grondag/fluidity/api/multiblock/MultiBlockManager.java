@@ -65,7 +65,8 @@ public interface MultiBlockManager<T extends MultiBlockMember<T, U, V>, U extend
 	 * @param <U> multi block type
 	 * @param <V> member component type (arbitrary)
 	 * @param multiBlockFactory supplier for new multiblock instances
-	 * @param connectionTest function to determine when two adjacent members in the same world should connect to form a multiblock
+	 * @param connectionTest function to determine when two adjacent members in the same world should connect to form a multiblock.
+	 * May be called from a worker thread when parallel multiblock processing is enabled in configuration.
 	 * @return a new multiblock manager instance
 	 */
 	static <T extends MultiBlockMember<T, U, V>, U extends MultiBlock<T, U, V>, V> MultiBlockManager<T, U, V> create(Supplier<U> multiBlockFactory, BiPredicate<T, T> connectionTest) {
@@ -0,0 +1,140 @@
+/*
+ * This file is part of Fluidity and is licensed to the project under
+ * terms that are compatible with the GNU Lesser General Public License.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership and licensing.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package grondag.fluidity.api.storage;
+
+import java.util.Arrays;
+
+import com.google.common.base.Preconditions;
+import org.jetbrains.annotations.ApiStatus.Experimental;
+
+import grondag.fluidity.api.article.Article;
+
+/**
+ * A reusable list of articles and counts for {@link ArticleFunction#applyAll(ArticleBatch, boolean)}
+ * with a result for each entry. Articles and counts are held in parallel arrays, so a batch
+ * can be cleared and refilled without allocation once it has grown to a working size.
+ *
+ * <p>The same article may appear more than once. Counts of bulk articles are whole units.
+ */
+@Experimental
+public class ArticleBatch {
+	protected Article[] articles;
+	protected long[] counts;
+	protected long[] results;
+	protected int size = 0;
+
+	public ArticleBatch() {
+		this(16);
+	}
+
+	public ArticleBatch(int initialCapacity) {
+		Preconditions.checkArgument(initialCapacity > 0, "Batch capacity must be positive. (%s)", initialCapacity);
+		articles = new Article[initialCapacity];
+		counts = new long[initialCapacity];
+		results = new long[initialCapacity];
+	}
+
+	/**
+	 * Adds an entry to the end of this batch.
+	 *
+	 * @param article Article to be added or removed
+	 * @param count How many to add or remove. Must be >= 0.
+	 * @return index of the new entry
+	 */
+	public int add(Article article, long count) {
+		Preconditions.checkNotNull(article, "Batch article must be non-null");
+		Preconditions.checkArgument(count >= 0, "Batch count must be non-negative. (%s)", count);
+
+		final int index = size;
+
+		if (index == articles.length) {
+			final int newLength = index * 2;
+			articles = Arrays.copyOf(articles, newLength);
+			counts = Arrays.copyOf(counts, newLength);
+			results = Arrays.copyOf(results, newLength);
+		}
+
+		articles[index] = article;
+		counts[index] = count;
+		results[index] = 0;
+		size = index + 1;
+		return index;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public Article article(int index) {
+		return articles[index];
+	}
+
+	public long count(int index) {
+		return counts[index];
+	}
+
+	/**
+	 * @param index entry index
+	 * @return count added or removed for the entry by the most recent batch operation
+	 */
+	public long result(int index) {
+		return results[index];
+	}
+
+	public void setResult(int index, long result) {
+		results[index] = result;
+	}
+
+	public void addToResult(int index, long delta) {
+		results[index] += delta;
+	}
+
+	/**
+	 * @param index entry index
+	 * @return count requested for the entry that has not been added or removed
+	 */
+	public long remaining(int index) {
+		return counts[index] - results[index];
+	}
+
+	public long totalResult() {
+		long result = 0;
+
+		for (int i = 0; i < size; ++i) {
+			result += results[i];
+		}
+
+		return result;
+	}
+
+	public void clearResults() {
+		Arrays.fill(results, 0, size, 0);
+	}
+
+	public void clear() {
+		Arrays.fill(articles, 0, size, null);
+		size = 0;
+	}
+}
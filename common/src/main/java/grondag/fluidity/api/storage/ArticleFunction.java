@@ -33,6 +33,7 @@ import grondag.fluidity.api.article.ArticleType;
 import grondag.fluidity.api.device.DeviceComponentRegistry;
 import grondag.fluidity.api.device.DeviceComponentType;
 import grondag.fluidity.api.fraction.Fraction;
+import grondag.fluidity.api.transact.Transaction;
 import grondag.fluidity.api.transact.TransactionParticipant;
 import grondag.fluidity.impl.Fluidity;
 import grondag.fluidity.impl.storage.AlwaysReturnRequestedImpl;
@@ -55,6 +56,47 @@ public interface ArticleFunction extends TransactionParticipant {
 	 */
 	long apply(Article article, long count, boolean simulate);
 
+	/**
+	 * Adds or removes every article in the batch, depending on context, and records the count added
+	 * or removed for each entry as its batch result.  Equivalent to calling {@link #apply(Article, long, boolean)}
+	 * for each entry in order, but lets implementations share lookups, member scans and transaction
+	 * overhead across the entire batch.
+	 *
+	 * <p>Changes are made within a single transaction. When {@code simulate} is true, results are forecast
+	 * for each entry in order but implementations are not required to account for capacity claimed by
+	 * earlier entries unless noted otherwise.
+	 *
+	 * @param batch Articles and counts to add or remove. Prior results are cleared.
+	 * @param simulate If true, will forecast results without making changes.
+	 * @return Total count added or removed, or that would be added or removed if {@code simulate} = true.
+	 */
+	default long applyAll(ArticleBatch batch, boolean simulate) {
+		batch.clearResults();
+		final int limit = batch.size();
+
+		if (limit == 0) {
+			return 0;
+		}
+
+		if (simulate) {
+			for (int i = 0; i < limit; ++i) {
+				batch.setResult(i, apply(batch.article(i), batch.count(i), true));
+			}
+		} else {
+			try (Transaction tx = Transaction.open()) {
+				tx.enlist(this);
+
+				for (int i = 0; i < limit; ++i) {
+					batch.setResult(i, apply(batch.article(i), batch.count(i), false));
+				}
+
+				tx.commit();
+			}
+		}
+
+		return batch.totalResult();
+	}
+
 	/**
 	 * Distinct from {@link #isFull()} - can be false even when store is not full.
 	 * Meant for modeling machine output buffers that should never take input, but
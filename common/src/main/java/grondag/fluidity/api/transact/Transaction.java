@@ -106,6 +106,10 @@ public interface Transaction extends AutoCloseable {
 	 * until all current transactions on the other thread are closed, and then return a new,
 	 * root-level transaction.
 	 *
+	 * <p>If Fluidity is configured for per-thread transactions, each thread instead has its own
+	 * transaction stack and this method never blocks. Enlisting a participant that is already enlisted
+	 * by another thread will then either wait for that thread or throw a {@link TransactionConflictException}.
+	 *
 	 * @return a new transaction
 	 */
 	static Transaction open() {
@@ -0,0 +1,42 @@
+/*
+ * This file is part of Fluidity and is licensed to the project under
+ * terms that are compatible with the GNU Lesser General Public License.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership and licensing.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package grondag.fluidity.api.transact;
+
+import java.util.ConcurrentModificationException;
+
+import org.jetbrains.annotations.ApiStatus.Experimental;
+
+/**
+ * Thrown when a participant is enlisted in a transaction while it is already enlisted
+ * in an older transaction on another thread. Only possible when transactions are configured
+ * to run concurrently on separate threads.
+ *
+ * <p>When thrown, the current transaction should be closed (and thus rolled back) and the
+ * operation retried with a new transaction.
+ */
+@Experimental
+public class TransactionConflictException extends ConcurrentModificationException {
+	private static final long serialVersionUID = 1L;
+
+	public TransactionConflictException(String message) {
+		super(message);
+	}
+}
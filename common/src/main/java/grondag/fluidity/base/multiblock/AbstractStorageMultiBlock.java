@@ -20,6 +20,7 @@
 
 package grondag.fluidity.base.multiblock;
 
+import it.unimi.dsi.fastutil.objects.ObjectLinkedOpenHashSet;
 import org.jetbrains.annotations.ApiStatus.Experimental;
 
 import grondag.fluidity.api.multiblock.MultiBlockMember;
@@ -31,26 +32,101 @@ public abstract class AbstractStorageMultiBlock<T extends MultiBlockMember<T, U,
 	@SuppressWarnings("rawtypes")
 	protected final AbstractAggregateStore storage;
 
+	/**
+	 * Member stores not yet added to {@link #storage} because the multiblock is assembling.
+	 * Avoids repeatedly moving stores between aggregates as a large structure is merged together.
+	 */
+	protected final ObjectLinkedOpenHashSet<Store> pendingStores = new ObjectLinkedOpenHashSet<>();
+	protected boolean isAssembling = false;
+
+	/** True while members are moved by {@link #mergeInto(AbstractStorageMultiBlock)} and stores have already been moved. */
+	protected boolean isMerging = false;
+
 	@SuppressWarnings("rawtypes")
 	public AbstractStorageMultiBlock(AbstractAggregateStore storage) {
 		this.storage = storage;
 	}
 
+	@Override
+	public void setAssembling(boolean isAssembling) {
+		if (this.isAssembling == isAssembling) {
+			return;
+		}
+
+		this.isAssembling = isAssembling;
+
+		if (!isAssembling) {
+			for (final Store s : pendingStores) {
+				storage.addStore(s);
+			}
+
+			pendingStores.clear();
+		}
+	}
+
+	/**
+	 * Moves member stores of this instance to the survivor as a whole, so that listeners of the
+	 * survivor see one change per article instead of every article of every member store being
+	 * removed from this instance and added again to the survivor. Members are then moved without
+	 * further changes to either aggregate store.
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public void mergeInto(U survivor) {
+		if (survivor.storage.getClass() != storage.getClass()) {
+			super.mergeInto(survivor);
+			return;
+		}
+
+		survivor.storage.mergeFrom(storage);
+
+		for (final Store s : pendingStores) {
+			if (survivor.isAssembling) {
+				survivor.pendingStores.add(s);
+			} else {
+				survivor.storage.addStore(s);
+			}
+		}
+
+		pendingStores.clear();
+		isMerging = true;
+		survivor.isMerging = true;
+
+		try {
+			super.mergeInto(survivor);
+		} finally {
+			isMerging = false;
+			survivor.isMerging = false;
+		}
+	}
+
 	@Override
 	protected void beforeMemberRemoval(T member) {
+		if (isMerging) {
+			return;
+		}
+
 		final Store s = member.getMemberComponent();
 
-		if (s != null && s != Store.EMPTY) {
+		if (s != null && s != Store.EMPTY && !pendingStores.remove(s)) {
 			storage.removeStore(s);
 		}
 	}
 
 	@Override
 	protected void afterMemberAddition(T member) {
+		if (isMerging) {
+			return;
+		}
+
 		final Store s = member.getMemberComponent();
 
 		if (s != null && s != Store.EMPTY) {
-			storage.addStore(s);
+			if (isAssembling) {
+				pendingStores.add(s);
+			} else {
+				storage.addStore(s);
+			}
 		}
 	}
 }
@@ -22,11 +22,15 @@ package grondag.fluidity.base.storage;
 
 import java.util.function.Consumer;
 
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
 import org.apache.commons.lang3.ObjectUtils;
 import org.jetbrains.annotations.ApiStatus.Experimental;
 
+import grondag.fluidity.api.article.Article;
 import grondag.fluidity.api.article.StoredArticleView;
+import grondag.fluidity.api.storage.ArticleBatch;
 import grondag.fluidity.api.storage.StorageListener;
 import grondag.fluidity.api.storage.Store;
 import grondag.fluidity.api.transact.TransactionContext;
@@ -34,11 +38,16 @@ import grondag.fluidity.api.transact.TransactionParticipant.TransactionDelegate;
 import grondag.fluidity.base.article.AggregateStoredArticle;
 import grondag.fluidity.base.storage.helper.FlexibleArticleManager;
 import grondag.fluidity.impl.Fluidity;
+import grondag.fluidity.impl.TransactionImpl;
 
 /**
  *  Transaction support: expects all member stores to be self-enlisting and relies on member store
- *  notifications for transaction handling.  Reports as self-enlisting but never enlists because is has no
- *  internal state that would participate in transactions that isn't redundant of members.
+ *  notifications for transaction handling.  Reports as self-enlisting and has no internal state that
+ *  would participate in transactions that isn't redundant of members.
+ *
+ *  <p>When notifications are coalesced, article notifications accumulated during a transaction are sent
+ *  to listeners when the outermost transaction closes, after all member rollbacks have been applied, or
+ *  discarded if it was rolled back.
  *
  * @param <V>
  * @param <T>
@@ -48,6 +57,10 @@ public abstract class AbstractAggregateStore<V extends AggregateStoredArticle, T
 	protected final Consumer<TransactionContext> rollbackHandler = this::handleRollback;
 	protected final FlexibleArticleManager<V> articles;
 	protected final ObjectOpenHashSet<Store> stores = new ObjectOpenHashSet<>();
+	protected boolean coalesceNotifications = false;
+	protected final TransactionImpl.RootCloseListener rootCloseHandler = this::handleRootClose;
+	/** True when accumulated notifications will be sent or discarded by {@link #handleRootClose(boolean)}. */
+	protected boolean isAwaitingRootClose = false;
 
 	public AbstractAggregateStore(int startingHandleCount) {
 		articles = new FlexibleArticleManager<>(startingHandleCount, this::newArticle);
@@ -76,11 +89,254 @@ public abstract class AbstractAggregateStore<V extends AggregateStoredArticle, T
 		this(32);
 	}
 
+	/**
+	 * Moves all member stores of another aggregate store into this one without replaying their content.
+	 * Listeners of this store receive one accept notification per article with the combined amount moved,
+	 * and listeners of the other store receive one supply notification per article.  Capacity is moved
+	 * the same way. Member stores already in both aggregates are removed from the other store, and
+	 * listeners of the other store see that removal as part of the same supply notification.
+	 *
+	 * <p>Not transactional. Should not be called while a transaction is open.
+	 *
+	 * @param other aggregate store that will be empty, with no members, on return
+	 */
+	public void mergeFrom(T other) {
+		if (other == this || other.stores.isEmpty()) {
+			return;
+		}
+
+		flushNotifications();
+		other.flushNotifications();
+		other.isMergingAway = true;
+
+		try {
+			for (final Store store : other.stores.toArray(new Store[other.stores.size()])) {
+				if (stores.contains(store)) {
+					other.removeStore(store);
+				}
+			}
+
+			final StorageListener otherListener = other.listener();
+			final StorageListener listener = listener();
+
+			for (final Store store : other.stores) {
+				store.eventStream().stopListening(otherListener, false);
+				stores.add(store);
+				store.eventStream().startListening(listener, false);
+			}
+
+			mergeArticles(other);
+		} finally {
+			other.isMergingAway = false;
+		}
+
+		other.flushNotifications();
+		other.stores.clear();
+		other.articles.clear();
+	}
+
+	/**
+	 * True while this store is being merged into another. Article notifications are accumulated
+	 * so that listeners see removal of shared members and the move as one change per article.
+	 */
+	protected boolean isMergingAway = false;
+
+	/**
+	 * Moves article amounts, per-article store tracking and capacity of the other store into this one
+	 * and notifies listeners of both stores.  Member stores have already been moved when called.
+	 *
+	 * @param other aggregate store being merged into this one
+	 */
+	protected abstract void mergeArticles(T other);
+
+	protected final ArticleBatch memberBatch = new ArticleBatch();
+	protected final IntArrayList memberBatchIndex = new IntArrayList();
+	protected final ObjectArrayList<V> batchArticles = new ObjectArrayList<>();
+
+	/**
+	 * Accepts articles in the batch into member stores.  Each entry is first offered to members that
+	 * already hold the article. Remaining entries are then offered together to each of the given
+	 * candidates as a single member batch, so that members are visited only once for the entire batch.
+	 *
+	 * @param batch articles to accept, with results cleared
+	 * @param candidates members to be offered remaining entries, in order of preference
+	 * @param simulate if true, will forecast results without making changes
+	 * @return total count accepted
+	 */
+	protected long acceptAllInner(ArticleBatch batch, Iterable<Store> candidates, boolean simulate) {
+		final ObjectArrayList<V> batchArticles = this.batchArticles;
+		final int limit = batch.size();
+		long total = 0;
+		int pending = 0;
+
+		for (int i = 0; i < limit; ++i) {
+			final Article item = batch.article(i);
+			final long count = batch.count(i);
+
+			if (item.isNothing() || count == 0) {
+				batchArticles.add(null);
+				continue;
+			}
+
+			final V article = articles.findOrCreateArticle(item);
+			batchArticles.add(article);
+			long result = 0;
+
+			for (final Store store : article.stores()) {
+				if (store.hasConsumer() && !store.isFull()) {
+					result += store.getConsumer().apply(item, count - result, simulate);
+
+					if (result == count) {
+						break;
+					}
+				}
+			}
+
+			batch.setResult(i, result);
+			total += result;
+
+			if (result < count) {
+				++pending;
+			}
+		}
+
+		if (pending > 0) {
+			final ArticleBatch memberBatch = this.memberBatch;
+			final IntArrayList memberBatchIndex = this.memberBatchIndex;
+
+			for (final Store store : candidates) {
+				if (!store.hasConsumer() || store.isFull()) {
+					continue;
+				}
+
+				memberBatch.clear();
+				memberBatchIndex.clear();
+
+				for (int i = 0; i < limit; ++i) {
+					final V article = batchArticles.get(i);
+
+					if (article != null && batch.remaining(i) > 0 && !article.stores().contains(store)) {
+						memberBatch.add(batch.article(i), batch.remaining(i));
+						memberBatchIndex.add(i);
+					}
+				}
+
+				if (memberBatch.isEmpty()) {
+					continue;
+				}
+
+				total += store.getConsumer().applyAll(memberBatch, simulate);
+				final int memberLimit = memberBatch.size();
+
+				for (int j = 0; j < memberLimit; ++j) {
+					final long n = memberBatch.result(j);
+
+					if (n != 0) {
+						final int i = memberBatchIndex.getInt(j);
+						batch.addToResult(i, n);
+
+						// add new stores to per-article tracking
+						if (!simulate) {
+							batchArticles.get(i).stores().add(store);
+						}
+
+						if (batch.remaining(i) == 0) {
+							--pending;
+						}
+					}
+				}
+
+				if (pending == 0) {
+					break;
+				}
+			}
+
+			memberBatch.clear();
+		}
+
+		batchArticles.clear();
+		return total;
+	}
+
 	@Override
 	public int handleCount() {
 		return articles.handleCount();
 	}
 
+	/**
+	 * Enables or disables coalesced notifications to listeners of this store. Disabled by default.
+	 *
+	 * <p>When enabled, article changes reported by members while a transaction is open are accumulated
+	 * and sent to listeners as one net change per article when the outermost transaction commits.
+	 * Changes that cancel out are never sent, and nothing is sent when the outermost transaction is
+	 * rolled back.  Nested transactions do not send notifications when they close. Content and capacity of this
+	 * store are always updated immediately, and capacity changes are always sent immediately.
+	 *
+	 * <p>Accumulation is driven by actual member notifications, so members that do not behave in a
+	 * conventional manner (creative or void storage, for example) are reported correctly.
+	 *
+	 * @param coalesce true to accumulate article notifications during transactions
+	 */
+	public void coalesceNotifications(boolean coalesce) {
+		coalesceNotifications = coalesce;
+
+		if (!coalesce) {
+			flushNotifications();
+		}
+	}
+
+	public boolean isCoalescingNotifications() {
+		return coalesceNotifications;
+	}
+
+	/**
+	 * Call before each article notification to listeners.  Sends any accumulated notifications
+	 * first if the new notification will not also be accumulated, so that listeners always see
+	 * changes in order.
+	 *
+	 * @return true if the next article notification should be accumulated
+	 */
+	protected boolean deferNotification() {
+		if (isMergingAway) {
+			return true;
+		}
+
+		if (coalesceNotifications && !listeners.isEmpty() && TransactionImpl.current() != null) {
+			if (!isAwaitingRootClose) {
+				isAwaitingRootClose = TransactionImpl.notifyOnRootClose(rootCloseHandler);
+			}
+
+			if (isAwaitingRootClose) {
+				return true;
+			}
+		}
+
+		flushNotifications();
+		return false;
+	}
+
+	/** Sends accumulated article notifications to listeners. */
+	protected abstract void flushNotifications();
+
+	/** Drops accumulated article notifications without sending them. */
+	protected abstract void discardNotifications();
+
+	/**
+	 * Called when the outermost transaction closes, after member rollbacks have been applied.
+	 * Accumulated changes from a rolled-back transaction are reversed by members and so are dropped.
+	 *
+	 * @param isCommited true if the outermost transaction was committed
+	 */
+	protected void handleRootClose(boolean isCommited) {
+		isAwaitingRootClose = false;
+
+		if (isCommited) {
+			flushNotifications();
+		} else {
+			discardNotifications();
+		}
+	}
+
 	/** Relies on members - see header. */
 	protected void handleRollback(TransactionContext context) {
 		// NOOP
@@ -29,6 +29,7 @@ import net.minecraft.world.item.ItemStack;
 import grondag.fluidity.api.article.Article;
 import grondag.fluidity.api.article.ArticleType;
 import grondag.fluidity.api.fraction.Fraction;
+import grondag.fluidity.api.storage.ArticleBatch;
 import grondag.fluidity.api.storage.ArticleFunction;
 
 @Experimental
@@ -67,6 +68,11 @@ public class ForwardingArticleFunction<T extends ArticleFunction> implements Art
 		return wrapped.apply(item, numerator, divisor, simulate);
 	}
 
+	@Override
+	public long applyAll(ArticleBatch batch, boolean simulate) {
+		return wrapped.applyAll(batch, simulate);
+	}
+
 	@Override
 	public boolean canApply() {
 		return wrapped.canApply();
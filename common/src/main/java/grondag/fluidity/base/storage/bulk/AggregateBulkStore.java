@@ -34,6 +34,7 @@ import grondag.fluidity.api.article.ArticleType;
 import grondag.fluidity.api.article.StoredArticleView;
 import grondag.fluidity.api.fraction.Fraction;
 import grondag.fluidity.api.fraction.MutableFraction;
+import grondag.fluidity.api.storage.ArticleBatch;
 import grondag.fluidity.api.storage.ArticleFunction;
 import grondag.fluidity.api.storage.StorageListener;
 import grondag.fluidity.api.storage.Store;
@@ -46,8 +47,8 @@ import grondag.fluidity.impl.Fluidity;
 // NB: Previous versions attempted to consolidate member notifications
 // but this can lead to de-sync and other problems with creative bins
 // or other members that don't behave in a conventional manner.
-// A future version may consolidate notifications for downstream listeners
-// (for performance) but will have to do so based on actual member notifications.
+// Notifications for downstream listeners can be consolidated (for performance)
+// with coalesceNotifications() but this is based on actual member notifications.
 
 @Experimental
 public class AggregateBulkStore extends AbstractAggregateStore<AggregateBulkStoredArticle, AggregateBulkStore> implements BulkStore, BulkStorageListener {
@@ -96,6 +97,29 @@ public class AggregateBulkStore extends AbstractAggregateStore<AggregateBulkStor
 			return AggregateBulkStore.this;
 		}
 
+		/**
+		 * Applies the entire batch within a single transaction, visiting each member at most once.
+		 * Counts are whole units. See {@link #acceptAllInner(ArticleBatch, Iterable, boolean)}.
+		 */
+		@Override
+		public long applyAll(ArticleBatch batch, boolean simulate) {
+			batch.clearResults();
+
+			if (batch.isEmpty() || stores.isEmpty()) {
+				return 0;
+			}
+
+			if (simulate) {
+				return acceptAllInner(batch, stores, true);
+			} else {
+				try (Transaction tx = Transaction.open()) {
+					final long result = acceptAllInner(batch, stores, false);
+					tx.commit();
+					return result;
+				}
+			}
+		}
+
 		@Override
 		public Fraction apply(Article item, Fraction volume, boolean simulate) {
 			if (item.isNothing() || stores.isEmpty()) {
@@ -148,6 +172,26 @@ public class AggregateBulkStore extends AbstractAggregateStore<AggregateBulkStor
 			return AggregateBulkStore.this;
 		}
 
+		/** Applies the entire batch within a single transaction. Counts are whole units. */
+		@Override
+		public long applyAll(ArticleBatch batch, boolean simulate) {
+			batch.clearResults();
+
+			if (batch.isEmpty() || isEmpty()) {
+				return 0;
+			}
+
+			if (simulate) {
+				return supplyAll(batch, true);
+			} else {
+				try (Transaction tx = Transaction.open()) {
+					final long result = supplyAll(batch, false);
+					tx.commit();
+					return result;
+				}
+			}
+		}
+
 		@Override
 		public Fraction apply(Article item, Fraction volume, boolean simulate) {
 			Preconditions.checkNotNull(item, "Request to accept null article");
@@ -194,6 +238,24 @@ public class AggregateBulkStore extends AbstractAggregateStore<AggregateBulkStor
 		}
 	}
 
+	protected long supplyAll(ArticleBatch batch, boolean simulate) {
+		final int limit = batch.size();
+		long total = 0;
+
+		for (int i = 0; i < limit; ++i) {
+			final Article item = batch.article(i);
+			final long count = batch.count(i);
+
+			if (!item.isNothing() && count > 0) {
+				final long n = supplyInner(item, count, 1, simulate);
+				batch.setResult(i, n);
+				total += n;
+			}
+		}
+
+		return total;
+	}
+
 	protected Fraction acceptInner(Article item, Fraction volume, boolean simulate) {
 		result.set(0);
 
@@ -396,6 +458,34 @@ public class AggregateBulkStore extends AbstractAggregateStore<AggregateBulkStor
 		return result;
 	}
 
+	@Override
+	protected void mergeArticles(AggregateBulkStore other) {
+		final int limit = other.articles.handleCount();
+
+		for (int i = 0; i < limit; ++i) {
+			final AggregateBulkStoredArticle from = other.articles.get(i);
+
+			if (from == null || from.isEmpty()) {
+				continue;
+			}
+
+			final Fraction amount = from.amount().toImmutable();
+			from.subtract(amount);
+			other.notifier.setDeferring(other.deferNotification());
+			other.notifier.notifySupply(from.article(), from.handle(), amount, from.amount());
+
+			final AggregateBulkStoredArticle to = articles.findOrCreateArticle(from.article());
+			to.add(amount);
+			to.stores().addAll(from.stores());
+			from.stores().clear();
+			notifier.notifyAccept(to.article(), to.handle(), amount, to.amount());
+		}
+
+		final Fraction volume = other.notifier.volume().toImmutable();
+		other.notifier.addToCapacity(volume.toNegated());
+		notifier.addToCapacity(volume);
+	}
+
 	@Override
 	protected AggregateBulkStoredArticle newArticle() {
 		return new AggregateBulkStoredArticle();
@@ -436,6 +526,7 @@ public class AggregateBulkStore extends AbstractAggregateStore<AggregateBulkStor
 		final AggregateBulkStoredArticle article = articles.findOrCreateArticle(item);
 		article.add(delta);
 		article.stores().add(storage);
+		notifier.setDeferring(deferNotification());
 		notifier.notifyAccept(article.article(), article.handle(), delta, article.amount());
 	}
 
@@ -471,6 +562,7 @@ public class AggregateBulkStore extends AbstractAggregateStore<AggregateBulkStor
 		}
 
 		article.subtract(delta);
+		notifier.setDeferring(deferNotification());
 		notifier.notifySupply(article.article(), article.handle(), delta, article.amount());
 	}
 
@@ -493,14 +585,29 @@ public class AggregateBulkStore extends AbstractAggregateStore<AggregateBulkStor
 
 	@Override
 	protected void sendFirstListenerUpdate(StorageListener listener) {
+		// listener will see current content, so existing listeners must catch up first
+		flushNotifications();
 		notifier.sendFirstListenerUpdate(listener);
 	}
 
 	@Override
 	protected void sendLastListenerUpdate(StorageListener listener) {
+		flushNotifications();
 		notifier.sendLastListenerUpdate(listener);
 	}
 
+	@Override
+	protected void flushNotifications() {
+		notifier.setDeferring(false);
+		notifier.flush();
+	}
+
+	@Override
+	protected void discardNotifications() {
+		notifier.setDeferring(false);
+		notifier.discard();
+	}
+
 	@Override
 	public CompoundTag writeTag() {
 		throw new UnsupportedOperationException("Aggregate storage view do not support saving");
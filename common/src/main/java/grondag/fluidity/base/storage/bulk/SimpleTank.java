@@ -90,6 +90,21 @@ public class SimpleTank extends AbstractLazyRollbackStore<StoredBulkArticle, Sim
 		return handle == 0 ? view : StoredArticleView.EMPTY;
 	}
 
+	/**
+	 * Whole number of 1/divisor units in the difference of the given values, rounded down.
+	 * Avoids fraction arithmetic when all divisors are factors of {@link Fraction#FIXED_UNIT}.
+	 */
+	protected long availableUnits(Fraction from, Fraction less, long divisor) {
+		if (from.isFixed() && less.isFixed() && Fraction.isFixedDivisor(divisor)) {
+			return (from.toFixedUnits() - less.toFixedUnits()) / (Fraction.FIXED_UNIT / divisor);
+		}
+
+		calc.set(from);
+		calc.subtract(less);
+		calc.roundDown(divisor);
+		return calc.toLong(divisor);
+	}
+
 	protected final Supplier supplier = new Supplier();
 
 	protected class Supplier implements BulkArticleFunction {
@@ -126,10 +141,7 @@ public class SimpleTank extends AbstractLazyRollbackStore<StoredBulkArticle, Sim
 				return 0;
 			}
 
-			calc.set(quantity);
-			calc.roundDown(divisor);
-
-			long result = calc.toLong(divisor);
+			long result = availableUnits(quantity, Fraction.ZERO, divisor);
 
 			if (result == 0) {
 				return 0;
@@ -220,14 +232,10 @@ public class SimpleTank extends AbstractLazyRollbackStore<StoredBulkArticle, Sim
 				article = item;
 			}
 
-			// compute available space
-			calc.set(capacity);
-			calc.subtract(quantity);
-
-			long result = calc.toLong(divisor);
+			long result = availableUnits(capacity, quantity, divisor);
 
 			// can't accept if full
-			if (result == 0) {
+			if (result <= 0) {
 				return 0;
 			}
 
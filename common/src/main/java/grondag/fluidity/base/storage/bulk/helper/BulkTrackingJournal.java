@@ -22,7 +22,7 @@ package grondag.fluidity.base.storage.bulk.helper;
 
 import java.util.concurrent.ArrayBlockingQueue;
 
-import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import org.jetbrains.annotations.ApiStatus.Experimental;
 
 import net.minecraft.core.BlockPos;
@@ -37,11 +37,15 @@ public class BulkTrackingJournal {
 	private static final ArrayBlockingQueue<BulkTrackingJournal> POOL = new ArrayBlockingQueue<>(4096);
 
 	public final MutableFraction capacityDelta = new MutableFraction();
-	public final Object2ObjectOpenHashMap<Article, MutableFraction> changes = new Object2ObjectOpenHashMap<>();
+	/** Net change in amount, keyed by {@link Article#id()}. */
+	public final Int2ObjectOpenHashMap<MutableFraction> changes = new Int2ObjectOpenHashMap<>();
+	/** Article instances for keys in {@link #changes}. */
+	public final Int2ObjectOpenHashMap<Article> articles = new Int2ObjectOpenHashMap<>();
 
 	public void clear() {
 		capacityDelta.set(0);
 		changes.clear();
+		articles.clear();
 	}
 
 	BlockPos pos;
@@ -20,6 +20,8 @@
 
 package grondag.fluidity.base.storage.bulk.helper;
 
+import it.unimi.dsi.fastutil.ints.Int2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import org.jetbrains.annotations.ApiStatus.Experimental;
 
 import grondag.fluidity.api.article.Article;
@@ -35,6 +37,12 @@ public class BulkTrackingNotifier extends BulkNotifier {
 	protected final MutableFraction amount = new MutableFraction();
 	protected BulkTrackingJournal journal = null;
 
+	/** When true, listener notifications are accumulated per article until {@link #flush()}. */
+	protected boolean isDeferring = false;
+	protected final Int2ObjectLinkedOpenHashMap<DeferredChange> deferred = new Int2ObjectLinkedOpenHashMap<>();
+	protected final ObjectArrayList<DeferredChange> deferredPool = new ObjectArrayList<>();
+	protected final ObjectArrayList<DeferredChange> flushing = new ObjectArrayList<>();
+
 	public BulkTrackingNotifier(Fraction capacity, AbstractStore<? extends StoredBulkArticle, ?> owner) {
 		super(owner);
 		this.capacity.set(capacity);
@@ -47,7 +55,12 @@ public class BulkTrackingNotifier extends BulkNotifier {
 		if (!delta.isZero()) {
 			journal(item, delta, true);
 			amount.subtract(delta);
-			super.notifySupply(item, handle, delta, newCount);
+
+			if (isDeferring) {
+				defer(item, handle, delta, newCount, true);
+			} else {
+				super.notifySupply(item, handle, delta, newCount);
+			}
 		}
 	}
 
@@ -58,8 +71,98 @@ public class BulkTrackingNotifier extends BulkNotifier {
 		if (!delta.isZero()) {
 			journal(item, delta, false);
 			amount.add(delta);
-			super.notifyAccept(item, handle, delta, newCount);
+
+			if (isDeferring) {
+				defer(item, handle, delta, newCount, false);
+			} else {
+				super.notifyAccept(item, handle, delta, newCount);
+			}
+		}
+	}
+
+	protected void defer(Article item, int handle, Fraction delta, Fraction newCount, boolean subtract) {
+		final int id = item.id();
+		DeferredChange change = deferred.get(id);
+
+		if (change == null) {
+			change = deferredPool.isEmpty() ? new DeferredChange() : deferredPool.pop();
+			change.article = item;
+			change.handle = handle;
+			change.delta.set(0);
+			deferred.put(id, change);
+		}
+
+		if (subtract) {
+			change.delta.subtract(delta);
+		} else {
+			change.delta.add(delta);
+		}
+
+		change.newCount.set(newCount);
+	}
+
+	/**
+	 * Controls whether article notifications to listeners are sent immediately or
+	 * accumulated as one net change per article until {@link #flush()} is called.
+	 * Amounts and journals are updated immediately in either case.
+	 *
+	 * @param isDeferring true to accumulate article notifications
+	 */
+	public void setDeferring(boolean isDeferring) {
+		this.isDeferring = isDeferring;
+	}
+
+	public boolean hasDeferred() {
+		return !deferred.isEmpty();
+	}
+
+	/**
+	 * Sends one notification for each article with a non-zero net change since the last flush.
+	 * Articles that were added and removed again are not reported.
+	 */
+	public void flush() {
+		// changes caused by listeners during flush are left for the next flush
+		if (deferred.isEmpty() || !flushing.isEmpty()) {
+			return;
+		}
+
+		final ObjectArrayList<DeferredChange> flushing = this.flushing;
+		flushing.addAll(deferred.values());
+		deferred.clear();
+		final int limit = flushing.size();
+
+		for (int i = 0; i < limit; ++i) {
+			final DeferredChange change = flushing.get(i);
+			final MutableFraction delta = change.delta;
+
+			if (delta.isNegative()) {
+				delta.negate();
+				super.notifySupply(change.article, change.handle, delta, change.newCount);
+			} else if (!delta.isZero()) {
+				super.notifyAccept(change.article, change.handle, delta, change.newCount);
+			}
+
+			change.article = null;
+			deferredPool.add(change);
 		}
+
+		flushing.clear();
+	}
+
+	/**
+	 * Drops accumulated notifications without sending them. Counts and journals are not affected.
+	 */
+	public void discard() {
+		if (!flushing.isEmpty()) {
+			return;
+		}
+
+		for (final DeferredChange change : deferred.values()) {
+			change.article = null;
+			deferredPool.add(change);
+		}
+
+		deferred.clear();
 	}
 
 	public void setCapacity(Fraction newCapacity) {
@@ -106,7 +209,8 @@ public class BulkTrackingNotifier extends BulkNotifier {
 
 	protected void journal(Article article, Fraction delta, boolean subtract) {
 		if (journal != null) {
-			final MutableFraction current = journal.changes.get(article);
+			final int id = article.id();
+			final MutableFraction current = journal.changes.get(id);
 
 			if (current == null) {
 				final MutableFraction f = new MutableFraction(delta);
@@ -115,7 +219,8 @@ public class BulkTrackingNotifier extends BulkNotifier {
 					f.negate();
 				}
 
-				journal.changes.put(article, f);
+				journal.changes.put(id, f);
+				journal.articles.put(id, article);
 			} else {
 				if (subtract) {
 					current.subtract(delta);
@@ -145,4 +250,11 @@ public class BulkTrackingNotifier extends BulkNotifier {
 	public BulkTrackingJournal journal() {
 		return journal;
 	}
+
+	protected static class DeferredChange {
+		protected Article article;
+		protected int handle;
+		protected final MutableFraction delta = new MutableFraction();
+		protected final MutableFraction newCount = new MutableFraction();
+	}
 }
@@ -21,7 +21,8 @@
 package grondag.fluidity.base.storage.discrete;
 
 import com.google.common.base.Preconditions;
-import it.unimi.dsi.fastutil.objects.Object2LongMap.Entry;
+import it.unimi.dsi.fastutil.ints.Int2LongMap;
+import it.unimi.dsi.fastutil.ints.Int2LongMaps;
 import org.apache.commons.lang3.ObjectUtils;
 import org.jetbrains.annotations.ApiStatus.Experimental;
 
@@ -31,6 +32,7 @@ import net.minecraft.nbt.ListTag;
 import grondag.fluidity.api.article.Article;
 import grondag.fluidity.api.article.ArticleType;
 import grondag.fluidity.api.article.StoredArticleView;
+import grondag.fluidity.api.storage.ArticleBatch;
 import grondag.fluidity.api.storage.ArticleFunction;
 import grondag.fluidity.api.storage.StorageListener;
 import grondag.fluidity.base.article.StoredDiscreteArticle;
@@ -186,6 +188,25 @@ public abstract class AbstractDiscreteStore<T extends AbstractDiscreteStore<T>>
 			return result;
 		}
 
+		/**
+		 * Store enlists lazily and prepares rollback state only once, so no transaction is opened here.
+		 * Stops early once the store is full.
+		 */
+		@Override
+		public long applyAll(ArticleBatch batch, boolean simulate) {
+			batch.clearResults();
+			final int limit = batch.size();
+			long total = 0;
+
+			for (int i = 0; i < limit && !isFull(); ++i) {
+				final long n = apply(batch.article(i), batch.count(i), simulate);
+				batch.setResult(i, n);
+				total += n;
+			}
+
+			return total;
+		}
+
 		@Override
 		public TransactionDelegate getTransactionDelegate() {
 			return AbstractDiscreteStore.this;
@@ -237,6 +258,25 @@ public abstract class AbstractDiscreteStore<T extends AbstractDiscreteStore<T>>
 			return result;
 		}
 
+		/**
+		 * Store enlists lazily and prepares rollback state only once, so no transaction is opened here.
+		 * Stops early once the store is empty.
+		 */
+		@Override
+		public long applyAll(ArticleBatch batch, boolean simulate) {
+			batch.clearResults();
+			final int limit = batch.size();
+			long total = 0;
+
+			for (int i = 0; i < limit && !isEmpty(); ++i) {
+				final long n = apply(batch.article(i), batch.count(i), simulate);
+				batch.setResult(i, n);
+				total += n;
+			}
+
+			return total;
+		}
+
 		@Override
 		public TransactionDelegate getTransactionDelegate() {
 			return AbstractDiscreteStore.this;
@@ -292,19 +332,19 @@ public abstract class AbstractDiscreteStore<T extends AbstractDiscreteStore<T>>
 				notifier.addToCapacity(-journal.capacityDelta);
 			}
 
-			for (final Entry<Article> e : journal.changes.object2LongEntrySet()) {
+			for (final Int2LongMap.Entry e : Int2LongMaps.fastIterable(journal.changes)) {
 				final long q = e.getLongValue();
 
 				if (q > 0) {
-					supplier.apply(e.getKey(), q, false);
+					supplier.apply(journal.articles.get(e.getIntKey()), q, false);
 				}
 			}
 
-			for (final Entry<Article> e : journal.changes.object2LongEntrySet()) {
+			for (final Int2LongMap.Entry e : Int2LongMaps.fastIterable(journal.changes)) {
 				final long q = e.getLongValue();
 
 				if (q < 0) {
-					consumer.apply(e.getKey(), -q, false);
+					consumer.apply(journal.articles.get(e.getIntKey()), -q, false);
 				}
 			}
 
@@ -24,6 +24,7 @@ import java.util.Set;
 
 import com.google.common.base.Preconditions;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectLinkedOpenHashSet;
 import org.apache.commons.lang3.ObjectUtils;
 import org.jetbrains.annotations.ApiStatus.Experimental;
 import org.jetbrains.annotations.Nullable;
@@ -34,6 +35,7 @@ import net.minecraft.world.item.Item;
 import grondag.fluidity.api.article.Article;
 import grondag.fluidity.api.article.ArticleType;
 import grondag.fluidity.api.article.StoredArticleView;
+import grondag.fluidity.api.storage.ArticleBatch;
 import grondag.fluidity.api.storage.ArticleFunction;
 import grondag.fluidity.api.storage.StorageListener;
 import grondag.fluidity.api.storage.Store;
@@ -47,8 +49,8 @@ import grondag.fluidity.impl.Fluidity;
 // NB: Previous versions attempted to consolidate member notifications
 // but this can lead to de-sync and other problems with creative bins
 // or other members that don't behave in a conventional manner.
-// A future version may consolidate notifications for downstream listeners
-// (for performance) but will have to do so based on actual member notifications.
+// Notifications for downstream listeners can be consolidated (for performance)
+// with coalesceNotifications() but this is based on actual member notifications.
 
 @Experimental
 public class AggregateDiscreteStore extends AbstractAggregateStore<AggregateDiscreteStoredArticle, AggregateDiscreteStore> implements DiscreteStore, DiscreteStorageListener {
@@ -88,7 +90,10 @@ public class AggregateDiscreteStore extends AbstractAggregateStore<AggregateDisc
 		return articles.get(Article.of(item, tag));
 	}
 
-	protected final ObjectArrayList<Store> searchList = new ObjectArrayList<>();
+	/** Members that have a consumer and are not full. */
+	protected final ObjectLinkedOpenHashSet<Store> openStores = new ObjectLinkedOpenHashSet<>();
+	protected final ObjectArrayList<Store> deferredOpenStores = new ObjectArrayList<>();
+	protected boolean deferOpenStoreUpdates = false;
 
 	protected final Consumer consumer = new Consumer();
 
@@ -113,6 +118,29 @@ public class AggregateDiscreteStore extends AbstractAggregateStore<AggregateDisc
 			}
 		}
 
+		/**
+		 * Applies the entire batch within a single transaction, visiting each member with
+		 * free capacity at most once. See {@link #acceptAllInner(ArticleBatch, Iterable, boolean)}.
+		 */
+		@Override
+		public long applyAll(ArticleBatch batch, boolean simulate) {
+			batch.clearResults();
+
+			if (batch.isEmpty() || stores.isEmpty()) {
+				return 0;
+			}
+
+			if (simulate) {
+				return acceptAll(batch, true);
+			} else {
+				try (Transaction tx = Transaction.open()) {
+					final long result = acceptAll(batch, false);
+					tx.commit();
+					return result;
+				}
+			}
+		}
+
 		@Override
 		public TransactionDelegate getTransactionDelegate() {
 			return AggregateDiscreteStore.this;
@@ -147,6 +175,26 @@ public class AggregateDiscreteStore extends AbstractAggregateStore<AggregateDisc
 			}
 		}
 
+		/** Applies the entire batch within a single transaction. */
+		@Override
+		public long applyAll(ArticleBatch batch, boolean simulate) {
+			batch.clearResults();
+
+			if (batch.isEmpty() || isEmpty()) {
+				return 0;
+			}
+
+			if (simulate) {
+				return supplyAll(batch, true);
+			} else {
+				try (Transaction tx = Transaction.open()) {
+					final long result = supplyAll(batch, false);
+					tx.commit();
+					return result;
+				}
+			}
+		}
+
 		@Override
 		public TransactionDelegate getTransactionDelegate() {
 			return AggregateDiscreteStore.this;
@@ -162,30 +210,27 @@ public class AggregateDiscreteStore extends AbstractAggregateStore<AggregateDisc
 		long result = 0;
 
 		final AggregateDiscreteStoredArticle article = articles.findOrCreateArticle(item);
-
-		// Try stores that already have article first
 		final Set<Store> existing = article.stores();
 
-		if (!existing.isEmpty()) {
-			// save non-existing stores here in case existing have insufficient capacity
-			searchList.clear();
+		// member notifications would otherwise modify the open store index while we iterate it
+		final boolean wasDeferred = deferOpenStoreUpdates;
+		deferOpenStoreUpdates = true;
 
-			for (final Store store : stores) {
+		try {
+			// Try stores that already have article first
+			for (final Store store : existing) {
 				if (store.hasConsumer() && !store.isFull()) {
-					if (existing.contains(store)) {
-						result += store.getConsumer().apply(item, count - result, simulate);
+					result += store.getConsumer().apply(item, count - result, simulate);
 
-						if (result == count) {
-							break;
-						}
-					} else {
-						searchList.add(store);
+					if (result == count) {
+						return result;
 					}
 				}
 			}
 
-			if (result < count) {
-				for (final Store store : searchList) {
+			// then other stores with free capacity
+			for (final Store store : openStores) {
+				if (!existing.contains(store)) {
 					final long delta = store.getConsumer().apply(item, count - result, simulate);
 
 					if (delta != 0) {
@@ -202,28 +247,111 @@ public class AggregateDiscreteStore extends AbstractAggregateStore<AggregateDisc
 					}
 				}
 			}
-		} else {
-			for (final Store store : stores) {
-				if (store.hasConsumer() && !store.isFull()) {
-					final long delta = store.getConsumer().apply(item, count - result, simulate);
+		} finally {
+			if (!wasDeferred) {
+				applyDeferredOpenStoreUpdates();
+			}
+		}
 
-					if (delta != 0) {
-						result += delta;
+		return result;
+	}
 
-						// add new stores to per-article tracking
-						if (!simulate) {
-							existing.add(store);
-						}
+	protected long acceptAll(ArticleBatch batch, boolean simulate) {
+		// member notifications would otherwise modify the open store index while we iterate it
+		final boolean wasDeferred = deferOpenStoreUpdates;
+		deferOpenStoreUpdates = true;
 
-						if (result == count) {
-							break;
-						}
-					}
-				}
+		try {
+			return acceptAllInner(batch, openStores, simulate);
+		} finally {
+			if (!wasDeferred) {
+				applyDeferredOpenStoreUpdates();
 			}
 		}
+	}
 
-		return result;
+	protected long supplyAll(ArticleBatch batch, boolean simulate) {
+		final int limit = batch.size();
+		long total = 0;
+
+		for (int i = 0; i < limit; ++i) {
+			final long n = supplyInner(batch.article(i), batch.count(i), simulate);
+			batch.setResult(i, n);
+			total += n;
+		}
+
+		return total;
+	}
+
+	@Override
+	public void addStore(Store store) {
+		super.addStore(store);
+		updateOpenStore(store);
+	}
+
+	@Override
+	public void removeStore(Store store) {
+		super.removeStore(store);
+		openStores.remove(store);
+	}
+
+	@Override
+	protected void mergeArticles(AggregateDiscreteStore other) {
+		final int limit = other.articles.handleCount();
+
+		for (int i = 0; i < limit; ++i) {
+			final AggregateDiscreteStoredArticle from = other.articles.get(i);
+
+			if (from == null || from.isEmpty()) {
+				continue;
+			}
+
+			final long count = from.count();
+			other.notifier.setDeferring(other.deferNotification());
+			other.notifier.notifySupply(from, count);
+			from.addToCount(-count);
+
+			final AggregateDiscreteStoredArticle to = articles.findOrCreateArticle(from.article());
+			to.addToCount(count);
+			to.stores().addAll(from.stores());
+			from.stores().clear();
+			notifier.notifyAccept(to, count);
+		}
+
+		final long capacity = other.notifier.capacity();
+		other.notifier.addToCapacity(-capacity);
+		notifier.addToCapacity(capacity);
+
+		for (final Store store : other.openStores) {
+			updateOpenStore(store);
+		}
+
+		other.openStores.clear();
+	}
+
+	/**
+	 * Adds or removes the store from the index of members that can accept more articles.
+	 * Called for every member notification so that accept only visits members with free capacity.
+	 */
+	protected void updateOpenStore(Store store) {
+		if (deferOpenStoreUpdates) {
+			deferredOpenStores.add(store);
+		} else if (store.hasConsumer() && !store.isFull() && stores.contains(store)) {
+			openStores.add(store);
+		} else {
+			openStores.remove(store);
+		}
+	}
+
+	protected void applyDeferredOpenStoreUpdates() {
+		deferOpenStoreUpdates = false;
+		final int limit = deferredOpenStores.size();
+
+		for (int i = 0; i < limit; ++i) {
+			updateOpenStore(deferredOpenStores.get(i));
+		}
+
+		deferredOpenStores.clear();
 	}
 
 	public long supplyInner(Article item, long count, boolean simulate) {
@@ -306,6 +434,8 @@ public class AggregateDiscreteStore extends AbstractAggregateStore<AggregateDisc
 		final AggregateDiscreteStoredArticle article = articles.findOrCreateArticle(item);
 		article.addToCount(delta);
 		article.stores().add(storage);
+		updateOpenStore(storage);
+		notifier.setDeferring(deferNotification());
 		notifier.notifyAccept(article, delta);
 	}
 
@@ -314,6 +444,7 @@ public class AggregateDiscreteStore extends AbstractAggregateStore<AggregateDisc
 
 	@Override
 	public void onSupply(Store storage, int slot, Article item, long delta, long newCount) {
+		updateOpenStore(storage);
 		final AggregateDiscreteStoredArticle article = articles.get(item);
 
 		if (article == null) {
@@ -340,12 +471,14 @@ public class AggregateDiscreteStore extends AbstractAggregateStore<AggregateDisc
 			article.stores().remove(storage);
 		}
 
+		notifier.setDeferring(deferNotification());
 		notifier.notifySupply(article, delta);
 		article.addToCount(-delta);
 	}
 
 	@Override
 	public void onCapacityChange(Store storage, long capacityDelta) {
+		updateOpenStore(storage);
 		notifier.addToCapacity(capacityDelta);
 	}
 
@@ -363,14 +496,29 @@ public class AggregateDiscreteStore extends AbstractAggregateStore<AggregateDisc
 
 	@Override
 	protected void sendFirstListenerUpdate(StorageListener listener) {
+		// listener will see current content, so existing listeners must catch up first
+		flushNotifications();
 		notifier.sendFirstListenerUpdate(listener);
 	}
 
 	@Override
 	protected void sendLastListenerUpdate(StorageListener listener) {
+		flushNotifications();
 		notifier.sendLastListenerUpdate(listener);
 	}
 
+	@Override
+	protected void flushNotifications() {
+		notifier.setDeferring(false);
+		notifier.flush();
+	}
+
+	@Override
+	protected void discardNotifications() {
+		notifier.setDeferring(false);
+		notifier.discard();
+	}
+
 	@Override
 	public CompoundTag writeTag() {
 		throw new UnsupportedOperationException("Aggregate storage view do not support saving");
@@ -23,12 +23,15 @@ package grondag.fluidity.base.storage.discrete;
 import java.util.Arrays;
 
 import com.google.common.base.Preconditions;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
 import org.jetbrains.annotations.ApiStatus.Experimental;
 
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.world.item.ItemStack;
 
 import grondag.fluidity.api.article.Article;
+import grondag.fluidity.api.storage.ArticleBatch;
 import grondag.fluidity.api.storage.InventoryStore;
 import grondag.fluidity.base.article.StoredDiscreteArticle;
 import grondag.fluidity.base.storage.discrete.FixedDiscreteStore.FixedDiscreteArticleFunction;
@@ -248,6 +251,87 @@ public class SlottedInventoryStore extends AbstractDiscreteStore<SlottedInventor
 
 			return result;
 		}
+
+		/**
+		 * Tops up existing stacks in one pass over all slots and then fills empty slots in a second pass.
+		 * Simulated results account for capacity claimed by earlier entries.
+		 */
+		@Override
+		public long applyAll(ArticleBatch batch, boolean simulate) {
+			batch.clearResults();
+
+			if (batch.isEmpty() || !indexBatch(batch, true)) {
+				return 0;
+			}
+
+			long total = 0;
+			boolean needsRollback = !simulate;
+
+			for (int slot = 0; slot < slotCount; slot++) {
+				final ItemStack stack = stacks[slot];
+
+				if (stack.isEmpty() || stack.getCount() >= stack.getMaxStackSize()) {
+					continue;
+				}
+
+				final int i = findBatchIndex(batch, stack);
+
+				if (i == -1) {
+					continue;
+				}
+
+				final int n = (int) Math.min(batch.remaining(i), stack.getMaxStackSize() - stack.getCount());
+
+				if (!simulate) {
+					if (needsRollback) {
+						rollbackHandler.prepareIfNeeded();
+						needsRollback = false;
+					}
+
+					stack.grow(n);
+					synchCleanStack(slot);
+					notifyAccept(stack, n);
+					dirtyNotifier.run();
+				}
+
+				batch.addToResult(i, n);
+				total += n;
+			}
+
+			final int limit = batch.size();
+			int i = nextBatchIndex(batch, 0);
+
+			for (int slot = 0; slot < slotCount && i < limit; slot++) {
+				if (!stacks[slot].isEmpty()) {
+					continue;
+				}
+
+				final Article article = batch.article(i);
+				final int n = (int) Math.min(batch.remaining(i), article.toItem().getMaxStackSize());
+
+				if (!simulate) {
+					if (needsRollback) {
+						rollbackHandler.prepareIfNeeded();
+						needsRollback = false;
+					}
+
+					final ItemStack newStack = article.toStack(n);
+					notifyAccept(newStack, n);
+					stacks[slot] = newStack;
+					synchCleanStack(slot);
+					dirtyNotifier.run();
+				}
+
+				batch.addToResult(i, n);
+				total += n;
+
+				if (batch.remaining(i) == 0) {
+					i = nextBatchIndex(batch, i + 1);
+				}
+			}
+
+			return total;
+		}
 	}
 
 	@Override
@@ -298,6 +382,110 @@ public class SlottedInventoryStore extends AbstractDiscreteStore<SlottedInventor
 
 			return result;
 		}
+
+		/** Visits each slot once for the entire batch. */
+		@Override
+		public long applyAll(ArticleBatch batch, boolean simulate) {
+			batch.clearResults();
+
+			if (batch.isEmpty() || isEmpty() || !indexBatch(batch, false)) {
+				return 0;
+			}
+
+			long total = 0;
+			boolean needsRollback = !simulate;
+
+			for (int slot = 0; slot < slotCount; slot++) {
+				final ItemStack stack = stacks[slot];
+
+				if (stack.isEmpty()) {
+					continue;
+				}
+
+				final int i = findBatchIndex(batch, stack);
+
+				if (i == -1) {
+					continue;
+				}
+
+				final int n = (int) Math.min(batch.remaining(i), stack.getCount());
+
+				if (!simulate) {
+					if (needsRollback) {
+						rollbackHandler.prepareIfNeeded();
+						needsRollback = false;
+					}
+
+					notifySupply(stack, n);
+					stack.shrink(n);
+
+					if (stack.isEmpty()) {
+						stacks[slot] = ItemStack.EMPTY;
+					}
+
+					synchCleanStack(slot);
+					dirtyNotifier.run();
+				}
+
+				batch.addToResult(i, n);
+				total += n;
+			}
+
+			return total;
+		}
+	}
+
+	/** First batch entry for each article, with later entries for the same article chained in {@link #batchNext}. */
+	protected final Object2IntOpenHashMap<Article> batchIndex = new Object2IntOpenHashMap<>();
+	protected final IntArrayList batchNext = new IntArrayList();
+
+	/**
+	 * Indexes batch entries that can be applied to this store.
+	 *
+	 * @return true if any entry can be applied
+	 */
+	protected boolean indexBatch(ArticleBatch batch, boolean isAccept) {
+		batchIndex.clear();
+		batchIndex.defaultReturnValue(-1);
+		batchNext.clear();
+		final int limit = batch.size();
+		batchNext.size(limit);
+
+		// reverse order so that each chain starts with the earliest entry
+		for (int i = limit - 1; i >= 0; --i) {
+			final Article article = batch.article(i);
+
+			if (article.isNothing() || batch.count(i) == 0 || (isAccept && !filter.test(article))) {
+				batchNext.set(i, -2);
+			} else {
+				batchNext.set(i, batchIndex.put(article, i));
+			}
+		}
+
+		return !batchIndex.isEmpty();
+	}
+
+	/** Earliest indexed batch entry with a remaining count that matches the stack, or -1 if none. */
+	protected int findBatchIndex(ArticleBatch batch, ItemStack stack) {
+		int i = batchIndex.getInt(ArticleImpl.of(stack));
+
+		while (i >= 0 && batch.remaining(i) == 0) {
+			i = batchNext.getInt(i);
+		}
+
+		return i;
+	}
+
+	/** First indexed batch entry at or after the given index with a remaining count, or batch size if none. */
+	protected int nextBatchIndex(ArticleBatch batch, int start) {
+		final int limit = batch.size();
+		int i = start;
+
+		while (i < limit && (batchNext.getInt(i) == -2 || batch.remaining(i) == 0)) {
+			++i;
+		}
+
+		return i;
 	}
 
 	protected void notifySupply(ItemStack stack, int count) {
@@ -22,7 +22,8 @@ package grondag.fluidity.base.storage.discrete.helper;
 
 import java.util.concurrent.ArrayBlockingQueue;
 
-import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2LongOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import org.jetbrains.annotations.ApiStatus.Experimental;
 
 import net.minecraft.core.BlockPos;
@@ -36,11 +37,21 @@ public class DiscreteTrackingJournal {
 	private static final ArrayBlockingQueue<DiscreteTrackingJournal> POOL = new ArrayBlockingQueue<>(4096);
 
 	public long capacityDelta;
-	public final Object2LongOpenHashMap<Article> changes = new Object2LongOpenHashMap<>();
+	/** Net change in count, keyed by {@link Article#id()}. */
+	public final Int2LongOpenHashMap changes = new Int2LongOpenHashMap();
+	/** Article instances for keys in {@link #changes}. */
+	public final Int2ObjectOpenHashMap<Article> articles = new Int2ObjectOpenHashMap<>();
+
+	public void addChange(Article article, long delta) {
+		final int id = article.id();
+		changes.addTo(id, delta);
+		articles.putIfAbsent(id, article);
+	}
 
 	public void clear() {
 		capacityDelta = 0;
 		changes.clear();
+		articles.clear();
 	}
 
 	BlockPos pos;
@@ -20,6 +20,8 @@
 
 package grondag.fluidity.base.storage.discrete.helper;
 
+import it.unimi.dsi.fastutil.ints.Int2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import org.jetbrains.annotations.ApiStatus.Experimental;
 
 import grondag.fluidity.api.article.Article;
@@ -34,6 +36,12 @@ public class DiscreteTrackingNotifier extends DiscreteNotifier {
 	protected int articleCount = 0;
 	protected DiscreteTrackingJournal journal = null;
 
+	/** When true, listener notifications are accumulated per article until {@link #flush()}. */
+	protected boolean isDeferring = false;
+	protected final Int2ObjectLinkedOpenHashMap<DeferredChange> deferred = new Int2ObjectLinkedOpenHashMap<>();
+	protected final ObjectArrayList<DeferredChange> deferredPool = new ObjectArrayList<>();
+	protected final ObjectArrayList<DeferredChange> flushing = new ObjectArrayList<>();
+
 	public DiscreteTrackingNotifier(long capacity, AbstractStore<? extends StoredDiscreteArticle, ?> owner) {
 		super(owner);
 		this.capacity = capacity;
@@ -44,7 +52,12 @@ public class DiscreteTrackingNotifier extends DiscreteNotifier {
 		if (delta > 0) {
 			journal(item, -delta);
 			count -= delta;
-			super.notifySupply(item, handle, delta, newCount);
+
+			if (isDeferring) {
+				defer(item, handle, -delta, newCount);
+			} else {
+				super.notifySupply(item, handle, delta, newCount);
+			}
 
 			if (newCount == 0) {
 				--articleCount;
@@ -57,7 +70,12 @@ public class DiscreteTrackingNotifier extends DiscreteNotifier {
 		if (delta > 0) {
 			journal(item, delta);
 			count += delta;
-			super.notifyAccept(item, handle, delta, newCount);
+
+			if (isDeferring) {
+				defer(item, handle, delta, newCount);
+			} else {
+				super.notifyAccept(item, handle, delta, newCount);
+			}
 
 			if (newCount == delta) {
 				++articleCount;
@@ -65,6 +83,84 @@ public class DiscreteTrackingNotifier extends DiscreteNotifier {
 		}
 	}
 
+	protected void defer(Article item, int handle, long delta, long newCount) {
+		final int id = item.id();
+		DeferredChange change = deferred.get(id);
+
+		if (change == null) {
+			change = deferredPool.isEmpty() ? new DeferredChange() : deferredPool.pop();
+			change.article = item;
+			change.handle = handle;
+			change.delta = 0;
+			deferred.put(id, change);
+		}
+
+		change.delta += delta;
+		change.newCount = newCount;
+	}
+
+	/**
+	 * Controls whether article notifications to listeners are sent immediately or
+	 * accumulated as one net change per article until {@link #flush()} is called.
+	 * Counts and journals are updated immediately in either case.
+	 *
+	 * @param isDeferring true to accumulate article notifications
+	 */
+	public void setDeferring(boolean isDeferring) {
+		this.isDeferring = isDeferring;
+	}
+
+	public boolean hasDeferred() {
+		return !deferred.isEmpty();
+	}
+
+	/**
+	 * Sends one notification for each article with a non-zero net change since the last flush.
+	 * Articles that were added and removed again are not reported.
+	 */
+	public void flush() {
+		// changes caused by listeners during flush are left for the next flush
+		if (deferred.isEmpty() || !flushing.isEmpty()) {
+			return;
+		}
+
+		final ObjectArrayList<DeferredChange> flushing = this.flushing;
+		flushing.addAll(deferred.values());
+		deferred.clear();
+		final int limit = flushing.size();
+
+		for (int i = 0; i < limit; ++i) {
+			final DeferredChange change = flushing.get(i);
+
+			if (change.delta > 0) {
+				super.notifyAccept(change.article, change.handle, change.delta, change.newCount);
+			} else if (change.delta < 0) {
+				super.notifySupply(change.article, change.handle, -change.delta, change.newCount);
+			}
+
+			change.article = null;
+			deferredPool.add(change);
+		}
+
+		flushing.clear();
+	}
+
+	/**
+	 * Drops accumulated notifications without sending them. Counts and journals are not affected.
+	 */
+	public void discard() {
+		if (!flushing.isEmpty()) {
+			return;
+		}
+
+		for (final DeferredChange change : deferred.values()) {
+			change.article = null;
+			deferredPool.add(change);
+		}
+
+		deferred.clear();
+	}
+
 	public void setCapacity(long newCapacity) {
 		if (newCapacity != capacity) {
 			notifyCapacityChange(newCapacity - capacity);
@@ -114,7 +210,7 @@ public class DiscreteTrackingNotifier extends DiscreteNotifier {
 
 	protected void journal(Article article, long delta) {
 		if (journal != null) {
-			journal.changes.addTo(article, delta);
+			journal.addChange(article, delta);
 		}
 	}
 
@@ -137,4 +233,11 @@ public class DiscreteTrackingNotifier extends DiscreteNotifier {
 	public DiscreteTrackingJournal journal() {
 		return journal;
 	}
+
+	protected static class DeferredChange {
+		protected Article article;
+		protected int handle;
+		protected long delta;
+		protected long newCount;
+	}
 }
@@ -23,6 +23,7 @@ package grondag.fluidity.base.storage.helper;
 import java.lang.reflect.Array;
 import java.util.function.Supplier;
 
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
 import org.jetbrains.annotations.ApiStatus.Experimental;
 
@@ -36,6 +37,13 @@ import grondag.fluidity.base.article.StoredArticle;
 public class FlexibleArticleManager<V extends StoredArticle> extends AbstractArticleManager<V> {
 	protected final Object2ObjectOpenHashMap<Article, V> articles = new Object2ObjectOpenHashMap<>();
 
+	/**
+	 * Keyed by {@link Article#id()} of the article instance held by each stored article.
+	 * Checked first so that lookups of interned articles avoid {@code equals()} and
+	 * tag comparison. The equality-keyed map remains authoritative.
+	 */
+	protected final Int2ObjectOpenHashMap<V> articlesById = new Int2ObjectOpenHashMap<>();
+
 	protected int nextUnusedHandle = 0;
 	protected V[] handles;
 
@@ -56,12 +64,13 @@ public class FlexibleArticleManager<V extends StoredArticle> extends AbstractArt
 
 	@Override
 	public V findOrCreateArticle(Article key) {
-		V candidate = articles.get(key);
+		V candidate = get(key);
 
 		if (candidate == null) {
 			candidate = getEmptyArticle();
 			candidate.setArticle(key);
 			articles.put(key, candidate);
+			articlesById.put(key.id(), candidate);
 		}
 
 		return candidate;
@@ -120,6 +129,7 @@ public class FlexibleArticleManager<V extends StoredArticle> extends AbstractArt
 				}
 
 				articles.remove(a.article());
+				articlesById.remove(a.article().id());
 			}
 		}
 	}
@@ -136,12 +146,20 @@ public class FlexibleArticleManager<V extends StoredArticle> extends AbstractArt
 
 	@Override
 	public V get(Article key) {
+		final V candidate = articlesById.get(key.id());
+
+		if (candidate != null && candidate.article() == key) {
+			return candidate;
+		}
+
+		// may be an equal article instance with a different id
 		return articles.get(key);
 	}
 
 	@Override
 	public void clear() {
 		articles.clear();
+		articlesById.clear();
 		nextUnusedHandle = 0;
 	}
 }
@@ -20,25 +20,63 @@
 
 package grondag.fluidity.base.synch;
 
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
 
 import dev.architectury.networking.NetworkManager.PacketContext;
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import org.jetbrains.annotations.ApiStatus.Experimental;
 import org.jetbrains.annotations.Nullable;
 
+import net.minecraft.Util;
+import net.minecraft.client.Minecraft;
 import net.minecraft.network.FriendlyByteBuf;
 
+import grondag.fluidity.Fluidity;
+
 @Experimental
 public abstract class AbstractStorageClientDelegate<T extends DisplayDelegate> {
-	protected final Int2ObjectOpenHashMap<T> MAP = new Int2ObjectOpenHashMap<>();
+	/**
+	 * Full refreshes and update batches with at least this many entries are indexed
+	 * and sorted on a background thread. See {@link #beginSnapshot(ObjectArrayList, Runnable)}.
+	 */
+	public static final int SNAPSHOT_THRESHOLD = 1024;
+
+	// not final - swapped when a snapshot is installed
+	protected Int2ObjectOpenHashMap<T> MAP = new Int2ObjectOpenHashMap<>();
+
+	/** All non-empty delegates in sort order, regardless of filter. */
+	protected ObjectArrayList<T> ALL = new ObjectArrayList<>();
 
+	/** Delegates that match the filter, in sort order. */
 	public final ObjectArrayList<T> LIST = new ObjectArrayList<>();
 
+	protected DisplaySearchIndex<T> searchIndex = new DisplaySearchIndex<>();
+
+	/** Snapshot being built off-thread. Updates are deferred until it is installed. */
+	protected @Nullable Snapshot<T> pendingSnapshot = null;
+	protected final ObjectArrayList<Runnable> deferredUpdates = new ObjectArrayList<>();
+
+	/**
+	 * True while a large update batch is applied to {@link #MAP} only.
+	 * Lists and the search index are rebuilt by a snapshot afterwards.
+	 */
+	protected boolean isBulkUpdate = false;
+
+	/**
+	 * True when {@link #ALL} is not in sort order and must be fully sorted, after which
+	 * {@link #LIST} is rebuilt from it. Only set when the sort order changes or on a full
+	 * refresh. Individual updates are inserted at their sorted position while lists are in order.
+	 */
 	protected boolean isSortDirty = false;
 
+	/** True when {@link #LIST} or the quantities it displays changed since the last refresh. */
+	protected boolean isListDirty = false;
+
 	protected int sortIndex = 0;
 	protected String filter = "";
 	protected String lastFilter = "";
@@ -47,19 +85,160 @@ public abstract class AbstractStorageClientDelegate<T extends DisplayDelegate> {
 	 * Incorporates changes and updates sort order. Returns true if a refresh was
 	 * performed.
 	 */
+	public boolean refreshListIfNeeded() {
+		if (isSortDirty) {
+			ALL.sort(sort());
+			isSortDirty = false;
+			rebuildList();
+		} else if (!isListDirty) {
+			return false;
+		}
+
+		isListDirty = false;
+		return true;
+	}
 
 	@SuppressWarnings({ "rawtypes", "unchecked" })
-	public boolean refreshListIfNeeded() {
+	protected Comparator<T> sort() {
+		return (Comparator) DisplayDelegate.getSort(sortIndex);
+	}
+
+	/** Adds a delegate that has been added to {@link #MAP}. Empty delegates are ignored. */
+	protected void addDelegate(T delegate) {
+		if (isBulkUpdate || delegate.isEmpty()) {
+			return;
+		}
+
+		searchIndex.add(delegate);
+		insert(ALL, delegate);
+
+		// LIST is rebuilt from ALL when sort is dirty
+		if (!isSortDirty && searchIndex.test(delegate)) {
+			insert(LIST, delegate);
+		}
+
+		isListDirty = true;
+	}
+
+	/**
+	 * Removes a delegate that has been or will be removed from {@link #MAP}. Must be called
+	 * before the quantity of the delegate changes so that it can be located by its sort key.
+	 */
+	protected void removeDelegate(T delegate) {
+		if (isBulkUpdate) {
+			return;
+		}
+
+		searchIndex.remove(delegate);
+		remove(ALL, delegate);
+
 		if (!isSortDirty) {
+			remove(LIST, delegate);
+		}
+
+		isListDirty = true;
+	}
+
+	/** Removes all delegates. Those added afterwards are sorted once on the next refresh. */
+	protected void clearDelegates() {
+		ALL.clear();
+		LIST.clear();
+		searchIndex.clear();
+		isSortDirty = true;
+	}
+
+	/**
+	 * Adds the delegate at its sorted position, or at the end if the list
+	 * will be fully sorted on the next refresh.
+	 */
+	protected void insert(ObjectArrayList<T> list, T delegate) {
+		if (isSortDirty) {
+			list.add(delegate);
+		} else {
+			final int index = Collections.binarySearch(list, delegate, sort());
+			list.add(index < 0 ? -index - 1 : index, delegate);
+		}
+	}
+
+	/**
+	 * Locates the delegate by binary search on its current sort key. Delegates that
+	 * compare as equal (same name and quantity) are disambiguated by identity.
+	 *
+	 * @return index of the delegate in the list, or -1 if not present
+	 */
+	protected int indexOf(ObjectArrayList<T> list, T delegate) {
+		if (isSortDirty) {
+			return list.indexOf(delegate);
+		}
+
+		final Comparator<T> sort = sort();
+		final int index = Collections.binarySearch(list, delegate, sort);
+
+		if (index < 0) {
+			return -1;
+		}
+
+		for (int i = index; i >= 0 && sort.compare(list.get(i), delegate) == 0; --i) {
+			if (list.get(i) == delegate) {
+				return i;
+			}
+		}
+
+		final int limit = list.size();
+
+		for (int i = index + 1; i < limit && sort.compare(list.get(i), delegate) == 0; ++i) {
+			if (list.get(i) == delegate) {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	protected boolean remove(ObjectArrayList<T> list, T delegate) {
+		final int index = indexOf(list, delegate);
+
+		if (index >= 0) {
+			list.remove(index);
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Call before changing the quantity of a delegate that will remain in storage.
+	 * If the current sort depends on quantity, the delegate is removed and must be
+	 * restored to its new position by {@link #endQuantityChange(DisplayDelegate, boolean)}
+	 * once the quantity is updated. Positions of other delegates are not affected.
+	 *
+	 * @return true if the delegate was removed for repositioning
+	 */
+	protected boolean beginQuantityChange(T delegate) {
+		if (isBulkUpdate || isSortDirty || !DisplayDelegate.isQuantitySort(sortIndex)) {
 			return false;
 		}
 
-		final Comparator sort = DisplayDelegate.getSort(sortIndex);
-		LIST.sort(sort);
-		isSortDirty = false;
+		if (!remove(ALL, delegate)) {
+			return false;
+		}
+
+		remove(LIST, delegate);
 		return true;
 	}
 
+	protected void endQuantityChange(T delegate, boolean wasRemoved) {
+		if (wasRemoved) {
+			insert(ALL, delegate);
+
+			if (searchIndex.test(delegate)) {
+				insert(LIST, delegate);
+			}
+		}
+
+		isListDirty = true;
+	}
+
 	public abstract void handleUpdateWithCapacity(FriendlyByteBuf buffer, PacketContext ctx);
 
 	public abstract void handleUpdate(FriendlyByteBuf buffer, PacketContext ctx);
@@ -86,39 +265,196 @@ public abstract class AbstractStorageClientDelegate<T extends DisplayDelegate> {
 
 	private void updateFilter() {
 		if (!filter.equals(lastFilter)) {
-			if (!lastFilter.equals("") && filter.startsWith(lastFilter)) {
-				applyFilter();
-			} else {
-				LIST.clear();
+			searchIndex.setQuery(filter);
 
-				if (filter.equals("")) {
-					LIST.addAll(MAP.values());
+			// LIST is rebuilt from ALL when sort is dirty
+			if (!isSortDirty) {
+				if (!lastFilter.equals("") && filter.startsWith(lastFilter)) {
+					applyFilter(searchIndex.search());
 				} else {
-					for (final T item : MAP.values()) {
-						addToListIfIncluded(item);
-					}
+					rebuildList();
 				}
-
-				isSortDirty = true;
 			}
 
+			isListDirty = true;
 			lastFilter = filter;
 		}
 	}
 
-	protected void applyFilter() {
-		for (int i = LIST.size() - 1; i >= 0; --i) {
+	/**
+	 * Removes delegates not in the search result in a single pass, preserving the order of the rest.
+	 * Used when the filter is narrowed because no new delegates can match.
+	 *
+	 * @param matches handles of matching delegates, or null if all match
+	 */
+	protected void applyFilter(@Nullable IntOpenHashSet matches) {
+		if (matches == null) {
+			return;
+		}
+
+		final int limit = LIST.size();
+		int j = 0;
+
+		for (int i = 0; i < limit; ++i) {
 			final T delegate = LIST.get(i);
 
-			if (delegate.isEmpty() || !delegate.lowerCaseLocalizedName().contains(filter)) {
-				LIST.remove(i);
+			if (matches.contains(delegate.handle())) {
+				LIST.set(j++, delegate);
+			}
+		}
+
+		LIST.size(j);
+	}
+
+	/** Copies delegates that match the filter from {@link #ALL}, which is already in sort order. */
+	protected void rebuildList() {
+		LIST.clear();
+		filterInto(ALL, searchIndex.search(), LIST);
+	}
+
+	protected static <T extends DisplayDelegate> void filterInto(ObjectArrayList<T> from, @Nullable IntOpenHashSet matches, ObjectArrayList<T> to) {
+		if (matches == null) {
+			to.addAll(from);
+		} else {
+			final int limit = from.size();
+
+			for (int i = 0; i < limit; ++i) {
+				final T delegate = from.get(i);
+
+				if (matches.contains(delegate.handle())) {
+					to.add(delegate);
+				}
 			}
 		}
 	}
 
-	protected void addToListIfIncluded(T delegate) {
-		if (!delegate.isEmpty() && (filter.equals("") || delegate.lowerCaseLocalizedName().contains(filter))) {
-			LIST.add(delegate);
+	/**
+	 * Runs an update now, or after the pending snapshot is installed so that
+	 * updates are always applied in the order received. Call on the client thread.
+	 */
+	protected void applyOrDefer(Runnable update) {
+		if (pendingSnapshot == null) {
+			update.run();
+		} else {
+			deferredUpdates.add(update);
+		}
+	}
+
+	/**
+	 * Discards any pending snapshot and deferred updates. Called when a full refresh
+	 * arrives because it supersedes everything received before it.
+	 */
+	protected void cancelSnapshot() {
+		pendingSnapshot = null;
+		deferredUpdates.clear();
+	}
+
+	/**
+	 * Indexes, sorts and filters the given delegates on a background thread, then swaps
+	 * them in on the client thread. The current lists remain displayed until then.
+	 * Updates received in the meantime are deferred by {@link #applyOrDefer(Runnable)}.
+	 * Delegates must not be modified until the snapshot is installed.
+	 * Call on the client thread.
+	 *
+	 * @param delegates  delegates that will make up the new model, empty ones are dropped
+	 * @param onInstall  runs on the client thread right after the snapshot is installed
+	 */
+	protected void beginSnapshot(ObjectArrayList<T> delegates, Runnable onInstall) {
+		final Snapshot<T> snapshot = new Snapshot<>(delegates, sortIndex, filter);
+		deferredUpdates.clear();
+		pendingSnapshot = snapshot;
+
+		CompletableFuture.runAsync(snapshot::build, Util.backgroundExecutor()).whenComplete((v, e) -> {
+			if (e != null) {
+				Fluidity.LOG.warn("Unable to build storage display snapshot off-thread", e);
+			}
+
+			Minecraft.getInstance().execute(() -> installSnapshot(snapshot, onInstall));
+		});
+	}
+
+	protected void installSnapshot(Snapshot<T> snapshot, Runnable onInstall) {
+		if (pendingSnapshot != snapshot) {
+			// superseded by a later full refresh
+			return;
+		}
+
+		if (!snapshot.isBuilt) {
+			snapshot.build();
+		}
+
+		pendingSnapshot = null;
+		MAP = snapshot.map;
+		ALL = snapshot.all;
+		searchIndex = snapshot.searchIndex;
+		LIST.clear();
+		LIST.addAll(snapshot.list);
+
+		// sort or filter may have changed while the snapshot was built
+		isSortDirty = snapshot.sortIndex != sortIndex;
+
+		if (!snapshot.filter.equals(filter)) {
+			searchIndex.setQuery(filter);
+
+			if (!isSortDirty) {
+				rebuildList();
+			}
+		}
+
+		isListDirty = true;
+		onInstall.run();
+
+		if (!deferredUpdates.isEmpty()) {
+			final Runnable[] updates = deferredUpdates.toArray(new Runnable[deferredUpdates.size()]);
+			deferredUpdates.clear();
+
+			for (final Runnable update : updates) {
+				// a replayed update may begin another snapshot
+				applyOrDefer(update);
+			}
+		}
+	}
+
+	/** Model state for a full refresh, built off the client thread. */
+	protected static class Snapshot<T extends DisplayDelegate> {
+		protected final ObjectArrayList<T> delegates;
+		protected final int sortIndex;
+		protected final String filter;
+
+		protected Int2ObjectOpenHashMap<T> map;
+		protected ObjectArrayList<T> all;
+		protected ObjectArrayList<T> list;
+		protected DisplaySearchIndex<T> searchIndex;
+		protected volatile boolean isBuilt = false;
+
+		protected Snapshot(ObjectArrayList<T> delegates, int sortIndex, String filter) {
+			this.delegates = delegates;
+			this.sortIndex = sortIndex;
+			this.filter = filter;
+		}
+
+		@SuppressWarnings({ "rawtypes", "unchecked" })
+		protected void build() {
+			final int limit = delegates.size();
+			map = new Int2ObjectOpenHashMap<>(limit);
+			all = new ObjectArrayList<>(limit);
+			searchIndex = new DisplaySearchIndex<>();
+
+			for (int i = 0; i < limit; ++i) {
+				final T delegate = delegates.get(i);
+
+				if (!delegate.isEmpty()) {
+					map.put(delegate.handle(), delegate);
+					all.add(delegate);
+					searchIndex.add(delegate);
+				}
+			}
+
+			all.sort((Comparator) DisplayDelegate.getSort(sortIndex));
+			searchIndex.setQuery(filter);
+			list = new ObjectArrayList<>(all.size());
+			filterInto(all, searchIndex.search(), list);
+			isBuilt = true;
 		}
 	}
 
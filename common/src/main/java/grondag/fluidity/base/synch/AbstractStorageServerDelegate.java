@@ -26,6 +26,7 @@ import org.jetbrains.annotations.ApiStatus.Experimental;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.world.entity.player.Player;
 
+import grondag.fluidity.api.article.Article;
 import grondag.fluidity.api.storage.StorageListener;
 import grondag.fluidity.api.storage.Store;
 import grondag.fluidity.base.article.AbstractStoredArticle;
@@ -38,10 +39,26 @@ public abstract class AbstractStorageServerDelegate<T extends AbstractStoredArti
 	protected boolean capacityChange = true;
 	protected final Int2ObjectOpenHashMap<T> updates = new Int2ObjectOpenHashMap<>();
 
+	/**
+	 * Article the client currently associates with each non-empty handle. Updates for these
+	 * handles omit the article definition.  Reset by every full refresh.
+	 */
+	protected final Int2ObjectOpenHashMap<Article> sentArticles = new Int2ObjectOpenHashMap<>();
+
 	public AbstractStorageServerDelegate(ServerPlayer player, Store storage) {
+		this(player, storage, true);
+	}
+
+	/**
+	 * @param listen if false, the delegate does not listen to the store and subclasses are responsible for updates
+	 */
+	protected AbstractStorageServerDelegate(ServerPlayer player, Store storage, boolean listen) {
 		this.player = player;
 		this.storage = storage;
-		storage.eventStream().startListening(this, true);
+
+		if (listen) {
+			storage.eventStream().startListening(this, true);
+		}
 	}
 
 	@Override
@@ -54,6 +71,14 @@ public abstract class AbstractStorageServerDelegate<T extends AbstractStoredArti
 
 	public abstract void sendUpdates();
 
+	/**
+	 * True if the client already associates the handle with the given article.
+	 */
+	protected boolean isKnown(int handle, Article article) {
+		final Article known = sentArticles.get(handle);
+		return known != null && known.equals(article);
+	}
+
 	public void close(Player playerEntity) {
 		if (playerEntity == player && storage != null) {
 			storage.eventStream().stopListening(this, false);
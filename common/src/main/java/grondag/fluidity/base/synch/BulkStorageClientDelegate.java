@@ -21,6 +21,8 @@
 package grondag.fluidity.base.synch;
 
 import dev.architectury.networking.NetworkManager.PacketContext;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import org.jetbrains.annotations.ApiStatus.Experimental;
 
 import net.minecraft.network.FriendlyByteBuf;
@@ -55,13 +57,13 @@ public class BulkStorageClientDelegate extends AbstractStorageClientDelegate<Bul
 	public void handleUpdateWithCapacity(FriendlyByteBuf buffer, PacketContext ctx) {
 		final BulkDisplayDelegate[] items = readItems(buffer);
 		final Fraction newCapacity = new Fraction(buffer);
-		ctx.queue(() -> handleUpdateInner(items, newCapacity));
+		ctx.queue(() -> applyOrDefer(() -> handleUpdateInner(items, newCapacity)));
 	}
 
 	@Override
 	public void handleUpdate(FriendlyByteBuf buffer, PacketContext ctx) {
 		final BulkDisplayDelegate[] items = readItems(buffer);
-		ctx.queue(() -> handleUpdateInner(items, null));
+		ctx.queue(() -> applyOrDefer(() -> handleUpdateInner(items, null)));
 	}
 
 	@Override
@@ -71,10 +73,99 @@ public class BulkStorageClientDelegate extends AbstractStorageClientDelegate<Bul
 		ctx.queue(() -> handleFullRefreshInner(items, newCapacity));
 	}
 
+	/**
+	 * Handles updates written by {@link BulkStorageUpdateS2C#beginDelta(int)}.
+	 * Decoded on the network thread and applied on the client thread.
+	 */
+	public void handleDeltaUpdate(FriendlyByteBuf buffer, PacketContext ctx) {
+		final IntArrayList handles = new IntArrayList();
+		final ObjectArrayList<Article> articles = new ObjectArrayList<>();
+		final ObjectArrayList<Fraction> amounts = new ObjectArrayList<>();
+
+		final Fraction newCapacity = BulkStorageUpdateS2C.readDelta(buffer, (handle, article, amount) -> {
+			handles.add(handle);
+			articles.add(article);
+			amounts.add(amount);
+		});
+
+		ctx.queue(() -> applyOrDefer(() -> handleDeltaUpdateInner(handles, articles, amounts, newCapacity)));
+	}
+
+	protected void handleDeltaUpdateInner(IntArrayList handles, ObjectArrayList<Article> articles, ObjectArrayList<Fraction> amounts, Fraction newCapacity) {
+		final int limit = handles.size();
+		// large batches only update the map here and are then sorted off-thread
+		isBulkUpdate = limit >= SNAPSHOT_THRESHOLD;
+
+		if (newCapacity != null) {
+			capacity.set(newCapacity);
+		}
+
+		for (int i = 0; i < limit; i++) {
+			final int handle = handles.getInt(i);
+			final Article article = articles.get(i);
+			final Fraction amount = amounts.get(i);
+			final BulkDisplayDelegate prior = MAP.get(handle);
+
+			assert !amount.isNegative();
+
+			if (article == null) {
+				if (prior == null) {
+					// should not happen - server only omits articles for handles we know
+					continue;
+				}
+
+				if (amount.isZero()) {
+					MAP.remove(handle);
+					removeDelegate(prior);
+					usedCapacity.subtract(prior.getAmount());
+				} else {
+					usedCapacity.add(amount).subtract(prior.getAmount());
+					final boolean wasRemoved = beginQuantityChange(prior);
+					prior.setAmount(amount);
+					endQuantityChange(prior, wasRemoved);
+				}
+			} else {
+				// handle may have been reused for a different article
+				if (prior != null) {
+					MAP.remove(handle);
+					removeDelegate(prior);
+					usedCapacity.subtract(prior.getAmount());
+				}
+
+				if (!amount.isZero()) {
+					final BulkDisplayDelegate update = BulkDisplayDelegate.create(article, amount, handle);
+					MAP.put(handle, update);
+					addDelegate(update);
+					usedCapacity.add(amount);
+				}
+			}
+		}
+
+		if (isBulkUpdate) {
+			isBulkUpdate = false;
+			beginSnapshot(new ObjectArrayList<>(MAP.values()), () -> { });
+		}
+	}
+
 	protected void handleFullRefreshInner(BulkDisplayDelegate[] items, Fraction newCapacity) {
+		cancelSnapshot();
+
+		if (items.length >= SNAPSHOT_THRESHOLD) {
+			beginSnapshot(ObjectArrayList.wrap(items), () -> {
+				capacity.set(newCapacity);
+				usedCapacity.set(0);
+
+				for (final BulkDisplayDelegate item : ALL) {
+					usedCapacity.add(item.getAmount());
+				}
+			});
+
+			return;
+		}
+
 		capacity.set(newCapacity);
 		MAP.clear();
-		LIST.clear();
+		clearDelegates();
 		usedCapacity.set(0);
 
 		final int limit = items.length;
@@ -84,16 +175,16 @@ public class BulkStorageClientDelegate extends AbstractStorageClientDelegate<Bul
 
 			if (!item.getAmount().isZero()) {
 				MAP.put(item.handle(), item);
-				LIST.add(item);
+				addDelegate(item);
 				usedCapacity.add(item.getAmount());
 			}
 		}
-
-		isSortDirty = true;
 	}
 
 	protected void handleUpdateInner(BulkDisplayDelegate[] items, Fraction newCapacity) {
 		final int limit = items.length;
+		// large batches only update the map here and are then sorted off-thread
+		isBulkUpdate = limit >= SNAPSHOT_THRESHOLD;
 
 		if (newCapacity != null) {
 			capacity.set(newCapacity);
@@ -108,20 +199,25 @@ public class BulkStorageClientDelegate extends AbstractStorageClientDelegate<Bul
 			if (prior == null) {
 				if (!update.getAmount().isZero()) {
 					MAP.put(update.handle(), update);
-					addToListIfIncluded(update);
+					addDelegate(update);
 					usedCapacity.add(update.getAmount());
 				}
 			} else if (update.getAmount().isZero()) {
 				MAP.remove(update.handle());
-				LIST.remove(prior);
+				removeDelegate(prior);
 				usedCapacity.subtract(prior.getAmount());
 			} else {
 				usedCapacity.add(update.getAmount()).subtract(prior.getAmount());
+				final boolean wasRemoved = beginQuantityChange(prior);
 				prior.setAmount(update.getAmount());
+				endQuantityChange(prior, wasRemoved);
 			}
 		}
 
-		isSortDirty = true;
+		if (isBulkUpdate) {
+			isBulkUpdate = false;
+			beginSnapshot(new ObjectArrayList<>(MAP.values()), () -> { });
+		}
 	}
 
 	public Fraction capacity() {
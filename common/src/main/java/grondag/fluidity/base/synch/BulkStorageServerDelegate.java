@@ -72,24 +72,72 @@ public class BulkStorageServerDelegate extends AbstractStorageServerDelegate<Sto
 			return;
 		}
 
-		final FriendlyByteBuf buf = BulkStorageUpdateS2C.begin(updates.size());
+		// UGLY: find way to avoid unreliable cast here and in next block
+		final StorageUpdateEncoder encoder = StorageUpdateEncoder.get();
+
+		if (isFirstUpdate) {
+			encodeFullRefresh(encoder);
+			BulkStorageUpdateS2C.sendFullRefresh(player, encoder, storage.volume());
+			isFirstUpdate = false;
+		} else {
+			encodeDelta(encoder);
+			BulkStorageUpdateS2C.sendDeltaUpdate(player, encoder, capacityChange ? storage.volume() : null);
+		}
+
+		capacityChange = false;
+		updates.clear();
+	}
+
+	/**
+	 * Encodes all pending updates with full article definitions and resets
+	 * tracking of what the client knows to match. Does not clear pending updates.
+	 *
+	 * @return the encoder buffer
+	 */
+	protected FriendlyByteBuf encodeFullRefresh(StorageUpdateEncoder encoder) {
+		final FriendlyByteBuf buf = BulkStorageUpdateS2C.begin(encoder, updates.size());
+		sentArticles.clear();
 
 		for (final StoredBulkArticle a : updates.values()) {
 			BulkStorageUpdateS2C.append(buf, a.article(), a.amount(), a.handle());
+			track(a.article(), a.amount(), a.handle());
 		}
 
-		if (isFirstUpdate) {
-			// UGLY: find way to avoid unreliable cast here and in next block
-			BulkStorageUpdateS2C.sendFullRefresh(player, buf, storage.volume());
-			isFirstUpdate = false;
-			capacityChange = false;
-		} else if (capacityChange) {
-			BulkStorageUpdateS2C.sendUpdateWithCapacity(player, buf, storage.volume());
-			capacityChange = false;
+		return buf;
+	}
+
+	/**
+	 * Encodes all pending updates, omitting article definitions for handles the client
+	 * already knows. Does not clear pending updates.
+	 *
+	 * @return the encoder buffer
+	 */
+	protected FriendlyByteBuf encodeDelta(StorageUpdateEncoder encoder) {
+		final FriendlyByteBuf buf = BulkStorageUpdateS2C.beginDelta(encoder, updates.size());
+
+		for (final StoredBulkArticle a : updates.values()) {
+			appendDelta(buf, a.article(), a.amount(), a.handle());
+		}
+
+		return buf;
+	}
+
+	protected void appendDelta(FriendlyByteBuf buf, Article article, Fraction amount, int handle) {
+		if (isKnown(handle, article)) {
+			BulkStorageUpdateS2C.appendAmount(buf, amount, handle);
 		} else {
-			BulkStorageUpdateS2C.sendUpdate(player, buf);
+			BulkStorageUpdateS2C.appendDefinition(buf, article, amount, handle);
 		}
 
-		updates.clear();
+		track(article, amount, handle);
+	}
+
+	/** Client drops handles with a zero amount, so they must be defined again when next used. */
+	protected void track(Article article, Fraction amount, int handle) {
+		if (amount.isZero()) {
+			sentArticles.remove(handle);
+		} else {
+			sentArticles.put(handle, article);
+		}
 	}
 }
@@ -23,6 +23,7 @@ package grondag.fluidity.base.synch;
 import dev.architectury.networking.NetworkManager;
 import io.netty.buffer.Unpooled;
 import org.jetbrains.annotations.ApiStatus.Experimental;
+import org.jetbrains.annotations.Nullable;
 
 import net.minecraft.network.FriendlyByteBuf;
 import net.minecraft.resources.ResourceLocation;
@@ -42,6 +43,16 @@ public final class BulkStorageUpdateS2C {
 		return buf;
 	}
 
+	/**
+	 * As with {@link #begin(int)} but encodes into the reusable buffer of the given encoder.
+	 * Send with {@link #sendFullRefresh(ServerPlayer, StorageUpdateEncoder, Fraction)}.
+	 */
+	public static FriendlyByteBuf begin(StorageUpdateEncoder encoder, int count) {
+		final FriendlyByteBuf buf = encoder.begin(count);
+		buf.writeInt(count);
+		return buf;
+	}
+
 	public static FriendlyByteBuf append(FriendlyByteBuf buf, Article article, Fraction amount, int handle) {
 		article.toPacket(buf);
 		amount.writeBuffer(buf);
@@ -49,6 +60,109 @@ public final class BulkStorageUpdateS2C {
 		return buf;
 	}
 
+	/**
+	 * Starts a delta update. Unlike {@link #begin(int)}, entries are written with
+	 * {@link #appendDefinition(FriendlyByteBuf, Article, Fraction, int)} for handles the client
+	 * does not know yet and with {@link #appendAmount(FriendlyByteBuf, Fraction, int)} for handles
+	 * the client already associates with the same article.
+	 *
+	 * @param count number of entries that will be appended
+	 * @return new buffer for the update
+	 */
+	public static FriendlyByteBuf beginDelta(int count) {
+		final FriendlyByteBuf buf = new FriendlyByteBuf(Unpooled.buffer());
+		buf.writeVarInt(count);
+		return buf;
+	}
+
+	/**
+	 * As with {@link #beginDelta(int)} but encodes into the reusable buffer of the given encoder.
+	 * Send with {@link #sendDeltaUpdate(ServerPlayer, StorageUpdateEncoder, Fraction)}.
+	 */
+	public static FriendlyByteBuf beginDelta(StorageUpdateEncoder encoder, int count) {
+		final FriendlyByteBuf buf = encoder.begin(count);
+		buf.writeVarInt(count);
+		return buf;
+	}
+
+	/** Entry for a handle that is new to the client or now holds a different article. */
+	public static FriendlyByteBuf appendDefinition(FriendlyByteBuf buf, Article article, Fraction amount, int handle) {
+		buf.writeVarInt((handle << 1) | 1);
+		article.toPacket(buf);
+		amount.writeBuffer(buf);
+		return buf;
+	}
+
+	/**
+	 * Entry for a handle the client already knows. The article is omitted. Amounts are sent
+	 * whole because the difference of two fractions is seldom more compact than either one.
+	 */
+	public static FriendlyByteBuf appendAmount(FriendlyByteBuf buf, Fraction amount, int handle) {
+		buf.writeVarInt(handle << 1);
+		amount.writeBuffer(buf);
+		return buf;
+	}
+
+	/**
+	 * Sends a delta update started with {@link #beginDelta(int)}.
+	 *
+	 * @param capacity new storage capacity, or null if unchanged
+	 */
+	public static void sendDeltaUpdate(ServerPlayer player, FriendlyByteBuf buf, @Nullable Fraction capacity) {
+		send(ID_DELTA_UPDATE, player, finishDelta(buf, capacity));
+	}
+
+	public static FriendlyByteBuf finishDelta(FriendlyByteBuf buf, @Nullable Fraction capacity) {
+		if (capacity != null) {
+			buf.writeBoolean(true);
+			capacity.writeBuffer(buf);
+		} else {
+			buf.writeBoolean(false);
+		}
+
+		return buf;
+	}
+
+	/**
+	 * Reads a delta update and passes each entry to the consumer in order.
+	 *
+	 * @return new storage capacity, or null if unchanged
+	 */
+	public static @Nullable Fraction readDelta(FriendlyByteBuf buf, DeltaConsumer consumer) {
+		final int limit = buf.readVarInt();
+
+		for (int i = 0; i < limit; ++i) {
+			final int header = buf.readVarInt();
+			final Article article = (header & 1) == 1 ? Article.fromPacket(buf) : null;
+			consumer.accept(header >>> 1, article, new Fraction(buf));
+		}
+
+		return buf.readBoolean() ? new Fraction(buf) : null;
+	}
+
+	@FunctionalInterface
+	public interface DeltaConsumer {
+		/**
+		 * @param handle storage handle
+		 * @param article article now associated with the handle, or null if the handle holds the same article as before
+		 * @param amount new amount for the handle
+		 */
+		void accept(int handle, @Nullable Article article, Fraction amount);
+	}
+
+	public static void sendFullRefresh(ServerPlayer player, StorageUpdateEncoder encoder, Fraction capacity) {
+		capacity.writeBuffer(encoder.buffer());
+		send(ID_FULL_REFRESH, player, encoder.finish());
+	}
+
+	/**
+	 * @param capacity new storage capacity, or null if unchanged
+	 */
+	public static void sendDeltaUpdate(ServerPlayer player, StorageUpdateEncoder encoder, @Nullable Fraction capacity) {
+		finishDelta(encoder.buffer(), capacity);
+		send(ID_DELTA_UPDATE, player, encoder.finish());
+	}
+
 	public static void sendFullRefresh(ServerPlayer player, FriendlyByteBuf buf, Fraction capacity) {
 		capacity.writeBuffer(buf);
 		send(ID_FULL_REFRESH, player, buf);
@@ -70,4 +184,5 @@ public final class BulkStorageUpdateS2C {
 	public static ResourceLocation ID_FULL_REFRESH = new ResourceLocation(Fluidity.MOD_ID, "ffrs2c");
 	public static ResourceLocation ID_UPDATE = new ResourceLocation(Fluidity.MOD_ID, "fuds2c");
 	public static ResourceLocation ID_UPDATE_WITH_CAPACITY = new ResourceLocation(Fluidity.MOD_ID, "fucs2c");
+	public static ResourceLocation ID_DELTA_UPDATE = new ResourceLocation(Fluidity.MOD_ID, "fdds2c");
 }
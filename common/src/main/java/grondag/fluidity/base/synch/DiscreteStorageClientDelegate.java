@@ -21,6 +21,9 @@
 package grondag.fluidity.base.synch;
 
 import dev.architectury.networking.NetworkManager.PacketContext;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import org.jetbrains.annotations.ApiStatus.Experimental;
 
 import net.minecraft.network.FriendlyByteBuf;
@@ -53,13 +56,13 @@ public class DiscreteStorageClientDelegate extends AbstractStorageClientDelegate
 	public void handleUpdateWithCapacity(FriendlyByteBuf buffer, PacketContext ctx) {
 		final DiscreteDisplayDelegate[] items = readItems(buffer);
 		final long newCapacity = buffer.readVarLong();
-		ctx.queue(() -> handleUpdateInner(items, newCapacity));
+		ctx.queue(() -> applyOrDefer(() -> handleUpdateInner(items, newCapacity)));
 	}
 
 	@Override
 	public void handleUpdate(FriendlyByteBuf buffer, PacketContext ctx) {
 		final DiscreteDisplayDelegate[] items = readItems(buffer);
-		ctx.queue(() -> handleUpdateInner(items, -1));
+		ctx.queue(() -> applyOrDefer(() -> handleUpdateInner(items, -1)));
 	}
 
 	@Override
@@ -69,10 +72,100 @@ public class DiscreteStorageClientDelegate extends AbstractStorageClientDelegate
 		ctx.queue(() -> handleFullRefreshInner(items, newCapacity));
 	}
 
+	/**
+	 * Handles updates written by {@link DiscreteStorageUpdateS2C#beginDelta(int)}.
+	 * Decoded on the network thread and applied on the client thread.
+	 */
+	public void handleDeltaUpdate(FriendlyByteBuf buffer, PacketContext ctx) {
+		final IntArrayList handles = new IntArrayList();
+		final ObjectArrayList<Article> articles = new ObjectArrayList<>();
+		final LongArrayList values = new LongArrayList();
+
+		final long newCapacity = DiscreteStorageUpdateS2C.readDelta(buffer, (handle, article, value) -> {
+			handles.add(handle);
+			articles.add(article);
+			values.add(value);
+		});
+
+		ctx.queue(() -> applyOrDefer(() -> handleDeltaUpdateInner(handles, articles, values, newCapacity)));
+	}
+
+	protected void handleDeltaUpdateInner(IntArrayList handles, ObjectArrayList<Article> articles, LongArrayList values, long newCapacity) {
+		final int limit = handles.size();
+		// large batches only update the map here and are then sorted off-thread
+		isBulkUpdate = limit >= SNAPSHOT_THRESHOLD;
+
+		if (newCapacity >= 0) {
+			capacity = newCapacity;
+		}
+
+		for (int i = 0; i < limit; i++) {
+			final int handle = handles.getInt(i);
+			final Article article = articles.get(i);
+			final long value = values.getLong(i);
+			final DiscreteDisplayDelegate prior = MAP.get(handle);
+
+			if (article == null) {
+				if (prior == null) {
+					// should not happen - server only sends deltas for handles we know
+					continue;
+				}
+
+				final long newCount = prior.getCount() + value;
+				assert newCount >= 0;
+
+				if (newCount <= 0) {
+					MAP.remove(handle);
+					removeDelegate(prior);
+					usedCapacity -= prior.getCount();
+				} else {
+					usedCapacity += value;
+					final boolean wasRemoved = beginQuantityChange(prior);
+					prior.setCount(newCount);
+					endQuantityChange(prior, wasRemoved);
+				}
+			} else {
+				// handle may have been reused for a different article
+				if (prior != null) {
+					MAP.remove(handle);
+					removeDelegate(prior);
+					usedCapacity -= prior.getCount();
+				}
+
+				if (value > 0) {
+					final DiscreteDisplayDelegate update = DiscreteDisplayDelegate.create(article, value, handle);
+					MAP.put(handle, update);
+					addDelegate(update);
+					usedCapacity += value;
+				}
+			}
+		}
+
+		if (isBulkUpdate) {
+			isBulkUpdate = false;
+			beginSnapshot(new ObjectArrayList<>(MAP.values()), () -> { });
+		}
+	}
+
 	protected void handleFullRefreshInner(DiscreteDisplayDelegate[] items, long newCapacity) {
+		cancelSnapshot();
+
+		if (items.length >= SNAPSHOT_THRESHOLD) {
+			beginSnapshot(ObjectArrayList.wrap(items), () -> {
+				capacity = newCapacity;
+				usedCapacity = 0;
+
+				for (final DiscreteDisplayDelegate item : ALL) {
+					usedCapacity += item.getCount();
+				}
+			});
+
+			return;
+		}
+
 		capacity = newCapacity;
 		MAP.clear();
-		LIST.clear();
+		clearDelegates();
 		usedCapacity = 0;
 
 		final int limit = items.length;
@@ -82,16 +175,16 @@ public class DiscreteStorageClientDelegate extends AbstractStorageClientDelegate
 
 			if (item.getCount() > 0) {
 				MAP.put(item.handle(), item);
-				addToListIfIncluded(item);
+				addDelegate(item);
 				usedCapacity += item.getCount();
 			}
 		}
-
-		isSortDirty = true;
 	}
 
 	protected void handleUpdateInner(DiscreteDisplayDelegate[] items, long newCapacity) {
 		final int limit = items.length;
+		// large batches only update the map here and are then sorted off-thread
+		isBulkUpdate = limit >= SNAPSHOT_THRESHOLD;
 
 		if (newCapacity >= 0) {
 			capacity = newCapacity;
@@ -106,20 +199,25 @@ public class DiscreteStorageClientDelegate extends AbstractStorageClientDelegate
 			if (prior == null) {
 				if (update.getCount() > 0) {
 					MAP.put(update.handle(), update);
-					addToListIfIncluded(update);
+					addDelegate(update);
 					usedCapacity += update.getCount();
 				}
 			} else if (update.getCount() == 0) {
 				MAP.remove(update.handle());
-				LIST.remove(prior);
+				removeDelegate(prior);
 				usedCapacity -= prior.getCount();
 			} else {
 				usedCapacity += update.getCount() - prior.getCount();
+				final boolean wasRemoved = beginQuantityChange(prior);
 				prior.setCount(update.getCount());
+				endQuantityChange(prior, wasRemoved);
 			}
 		}
 
-		isSortDirty = true;
+		if (isBulkUpdate) {
+			isBulkUpdate = false;
+			beginSnapshot(new ObjectArrayList<>(MAP.values()), () -> { });
+		}
 	}
 
 	public long capacity() {
@@ -20,10 +20,12 @@
 
 package grondag.fluidity.base.synch;
 
+import it.unimi.dsi.fastutil.ints.Int2LongOpenHashMap;
 import org.jetbrains.annotations.ApiStatus.Experimental;
 
 import net.minecraft.network.FriendlyByteBuf;
 import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.entity.player.Player;
 
 import grondag.fluidity.api.article.Article;
 import grondag.fluidity.api.storage.Store;
@@ -32,8 +34,31 @@ import grondag.fluidity.base.storage.discrete.DiscreteStorageListener;
 
 @Experimental
 public class DiscreteStorageServerDelegate extends AbstractStorageServerDelegate<StoredDiscreteArticle> implements DiscreteStorageListener {
+	/** Count last sent to the client for each handle in {@link #sentArticles}. */
+	protected final Int2LongOpenHashMap sentCounts = new Int2LongOpenHashMap();
+
+	/** Non-null if updates are sent by a hub shared with other players viewing the same store. */
+	protected DiscreteStorageSyncHub hub;
+
+	/** Encodes updates for this player alone whenever {@link #sendUpdates()} is called. */
 	public DiscreteStorageServerDelegate(ServerPlayer player, Store storage) {
-		super(player, storage);
+		this(player, storage, false);
+	}
+
+	/**
+	 * @param player player viewing the store
+	 * @param storage store being viewed
+	 * @param shared if true, updates are encoded by the {@link DiscreteStorageSyncHub} for the store once per
+	 * server tick and shared with other players. {@link #sendUpdates()} then does nothing. If false, updates
+	 * are encoded for this player alone whenever {@link #sendUpdates()} is called.
+	 */
+	public DiscreteStorageServerDelegate(ServerPlayer player, Store storage, boolean shared) {
+		super(player, storage, !shared);
+
+		if (shared) {
+			hub = DiscreteStorageSyncHub.of(storage);
+			hub.addViewer(player);
+		}
 	}
 
 	@Override
@@ -65,29 +90,97 @@ public class DiscreteStorageServerDelegate extends AbstractStorageServerDelegate
 		}
 	}
 
+	@Override
+	public void close(Player playerEntity) {
+		if (hub == null) {
+			super.close(playerEntity);
+		} else if (playerEntity == player) {
+			hub.removeViewer(player);
+			hub = null;
+			storage = null;
+			player = null;
+		}
+	}
+
 	@Override
 	public void sendUpdates() {
+		if (hub != null) {
+			// hub sends after each server tick
+			return;
+		}
+
 		if (updates.isEmpty() && !(isFirstUpdate || capacityChange)) {
 			return;
 		}
 
-		final FriendlyByteBuf buf = DiscreteStorageUpdateS2C.begin(updates.size());
+		final StorageUpdateEncoder encoder = StorageUpdateEncoder.get();
+
+		if (isFirstUpdate) {
+			encodeFullRefresh(encoder);
+			DiscreteStorageUpdateS2C.sendFullRefresh(player, encoder, storage.capacity());
+			isFirstUpdate = false;
+		} else {
+			encodeDelta(encoder);
+			DiscreteStorageUpdateS2C.sendDeltaUpdate(player, encoder, capacityChange ? storage.capacity() : -1);
+		}
+
+		capacityChange = false;
+		updates.clear();
+	}
+
+	/**
+	 * Encodes all pending updates with full article definitions and resets
+	 * tracking of what the client knows to match. Does not clear pending updates.
+	 *
+	 * @return the encoder buffer
+	 */
+	protected FriendlyByteBuf encodeFullRefresh(StorageUpdateEncoder encoder) {
+		final FriendlyByteBuf buf = DiscreteStorageUpdateS2C.begin(encoder, updates.size());
+		sentArticles.clear();
+		sentCounts.clear();
 
 		for (final StoredDiscreteArticle a : updates.values()) {
 			DiscreteStorageUpdateS2C.append(buf, a.article(), a.count(), a.handle());
+			track(a.article(), a.count(), a.handle());
 		}
 
-		if (isFirstUpdate) {
-			DiscreteStorageUpdateS2C.sendFullRefresh(player, buf, storage.capacity());
-			isFirstUpdate = false;
-			capacityChange = false;
-		} else if (capacityChange) {
-			DiscreteStorageUpdateS2C.sendUpdateWithCapacity(player, buf, storage.capacity());
-			capacityChange = false;
+		return buf;
+	}
+
+	/**
+	 * Encodes all pending updates, omitting article definitions for handles the client
+	 * already knows. Does not clear pending updates.
+	 *
+	 * @return the encoder buffer
+	 */
+	protected FriendlyByteBuf encodeDelta(StorageUpdateEncoder encoder) {
+		final FriendlyByteBuf buf = DiscreteStorageUpdateS2C.beginDelta(encoder, updates.size());
+
+		for (final StoredDiscreteArticle a : updates.values()) {
+			appendDelta(buf, a.article(), a.count(), a.handle());
+		}
+
+		return buf;
+	}
+
+	protected void appendDelta(FriendlyByteBuf buf, Article article, long count, int handle) {
+		if (isKnown(handle, article)) {
+			DiscreteStorageUpdateS2C.appendDelta(buf, count - sentCounts.get(handle), handle);
 		} else {
-			DiscreteStorageUpdateS2C.sendUpdate(player, buf);
+			DiscreteStorageUpdateS2C.appendDefinition(buf, article, count, handle);
 		}
 
-		updates.clear();
+		track(article, count, handle);
+	}
+
+	/** Client drops handles with a zero count, so they must be defined again when next used. */
+	protected void track(Article article, long count, int handle) {
+		if (count == 0) {
+			sentArticles.remove(handle);
+			sentCounts.remove(handle);
+		} else {
+			sentArticles.put(handle, article);
+			sentCounts.put(handle, count);
+		}
 	}
 }
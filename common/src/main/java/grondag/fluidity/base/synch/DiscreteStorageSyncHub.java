@@ -0,0 +1,408 @@
+/*
+ * This file is part of Fluidity and is licensed to the project under
+ * terms that are compatible with the GNU Lesser General Public License.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership and licensing.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package grondag.fluidity.base.synch;
+
+import java.util.IdentityHashMap;
+
+import io.netty.buffer.Unpooled;
+import it.unimi.dsi.fastutil.ints.Int2LongMap;
+import it.unimi.dsi.fastutil.ints.Int2LongMaps;
+import it.unimi.dsi.fastutil.ints.Int2LongOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import org.jetbrains.annotations.ApiStatus.Experimental;
+
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.level.ServerPlayer;
+
+import grondag.fluidity.api.article.Article;
+import grondag.fluidity.api.storage.Store;
+import grondag.fluidity.base.storage.discrete.DiscreteStorageListener;
+import grondag.fluidity.impl.FluidityConfig;
+
+/**
+ * Alternative to one {@link DiscreteStorageServerDelegate} per player for storage viewed by many players.
+ * Listens to the store once, encodes accumulated changes once per server tick and sends the same
+ * packet content to every viewer.
+ *
+ * <p>All viewers share one record of what the client knows, so every viewer receives identical
+ * delta updates. New viewers receive a full refresh of that shared record, not of the store itself,
+ * so that they are in step with other viewers immediately.
+ *
+ * <p>Delta updates are limited to {@link FluidityConfig#SYNC_BYTES_PER_TICK} bytes per player per tick,
+ * counted across all hubs the player views. New handles, changed articles and removals are sent before
+ * count changes for articles the client already knows. Entries that don't fit are deferred to later ticks.
+ * Full refreshes for new viewers are always sent but count against the budget, and a single entry larger
+ * than the whole budget is sent alone when nothing else has been sent to the viewers that tick.
+ *
+ * <p>Used by a {@link DiscreteStorageServerDelegate} only when created with {@code shared} set to true.
+ * Delegates created without it encode updates for their own player, outside of the per-player budget.
+ *
+ * <p>Server thread only. Hubs are retained while they have viewers and are ticked after each server tick.
+ */
+@Experimental
+public class DiscreteStorageSyncHub implements DiscreteStorageListener {
+	/** Store this hub was created for. Retained after disconnect so the hub can be released. */
+	protected final Store owner;
+	/** Null after disconnect or close. */
+	protected Store storage;
+	protected final ObjectArrayList<ServerPlayer> viewers = new ObjectArrayList<>();
+	protected final ObjectArrayList<ServerPlayer> newViewers = new ObjectArrayList<>();
+
+	/** Latest count and article for each handle changed since last sent. */
+	protected final Int2LongOpenHashMap pendingCounts = new Int2LongOpenHashMap();
+	protected final Int2ObjectOpenHashMap<Article> pendingArticles = new Int2ObjectOpenHashMap<>();
+	protected boolean capacityChange = false;
+
+	/** Article and count shared by all viewers for each non-empty handle. */
+	protected final Int2ObjectOpenHashMap<Article> sentArticles = new Int2ObjectOpenHashMap<>();
+	protected final Int2LongOpenHashMap sentCounts = new Int2LongOpenHashMap();
+
+	/** Entries are encoded here first because the entry count precedes them. */
+	protected final FriendlyByteBuf body = new FriendlyByteBuf(Unpooled.buffer());
+
+	protected DiscreteStorageSyncHub(Store storage) {
+		owner = storage;
+		this.storage = storage;
+		storage.eventStream().startListening(this, true);
+	}
+
+	public void addViewer(ServerPlayer player) {
+		if (!viewers.contains(player) && !newViewers.contains(player)) {
+			newViewers.add(player);
+		}
+	}
+
+	public void removeViewer(ServerPlayer player) {
+		viewers.remove(player);
+		newViewers.remove(player);
+	}
+
+	public boolean hasViewers() {
+		return !viewers.isEmpty() || !newViewers.isEmpty();
+	}
+
+	@Override
+	public void onAccept(Store storage, int handle, Article item, long delta, long newCount) {
+		assert newCount >= 0;
+
+		if (storage != null) {
+			pendingCounts.put(handle, newCount);
+			pendingArticles.put(handle, item);
+		}
+	}
+
+	@Override
+	public void onSupply(Store storage, int slot, Article item, long delta, long newCount) {
+		onAccept(storage, slot, item, delta, newCount);
+	}
+
+	@Override
+	public void onCapacityChange(Store storage, long capacityDelta) {
+		if (storage != null) {
+			capacityChange = true;
+		}
+	}
+
+	@Override
+	public void disconnect(Store storage, boolean didNotify, boolean isValid) {
+		if (storage == this.storage) {
+			this.storage = null;
+			viewers.clear();
+			newViewers.clear();
+		}
+	}
+
+	/**
+	 * @param bytesPerPlayer delta update budget for each player this tick, or zero for no limit
+	 */
+	protected void tick(int bytesPerPlayer) {
+		removeDisconnected(viewers);
+		removeDisconnected(newViewers);
+
+		if (viewers.isEmpty()) {
+			// nobody to send to, but new viewers must see current state
+			if (!pendingCounts.isEmpty()) {
+				applyAllPending();
+			}
+
+			capacityChange = false;
+		} else if (!pendingCounts.isEmpty() || capacityChange) {
+			final int remaining = remainingBytes(viewers, bytesPerPlayer);
+			final StorageUpdateEncoder encoder = StorageUpdateEncoder.get();
+			final FriendlyByteBuf buf = encodeDelta(encoder, Math.max(0, remaining - DELTA_OVERHEAD_BYTES), remaining == bytesPerPlayer);
+
+			// nothing fit and nothing else to report
+			if (body.writerIndex() > 0 || capacityChange) {
+				DiscreteStorageUpdateS2C.finishDelta(buf, capacityChange ? storage.capacity() : -1);
+				capacityChange = false;
+				final FriendlyByteBuf packet = encoder.finish();
+				charge(viewers, bytesPerPlayer, packet.writerIndex());
+				sendToAll(viewers, DiscreteStorageUpdateS2C.ID_DELTA_UPDATE, packet);
+			}
+		}
+
+		if (!newViewers.isEmpty()) {
+			final StorageUpdateEncoder encoder = StorageUpdateEncoder.get();
+			final FriendlyByteBuf buf = encodeFullRefresh(encoder);
+			buf.writeVarLong(storage.capacity());
+			final FriendlyByteBuf packet = encoder.finish();
+			charge(newViewers, bytesPerPlayer, packet.writerIndex());
+			sendToAll(newViewers, DiscreteStorageUpdateS2C.ID_FULL_REFRESH, packet);
+			viewers.addAll(newViewers);
+			newViewers.clear();
+		}
+	}
+
+	/** Least delta update budget remaining this tick among the given players. */
+	protected static int remainingBytes(ObjectArrayList<ServerPlayer> players, int bytesPerPlayer) {
+		if (bytesPerPlayer <= 0) {
+			return Integer.MAX_VALUE;
+		}
+
+		int result = bytesPerPlayer;
+		final int limit = players.size();
+
+		for (int i = 0; i < limit; ++i) {
+			result = Math.min(result, bytesPerPlayer - SENT_BYTES.getInt(players.get(i)));
+		}
+
+		return Math.max(0, result);
+	}
+
+	protected static void charge(ObjectArrayList<ServerPlayer> players, int bytesPerPlayer, int bytes) {
+		if (bytesPerPlayer > 0) {
+			final int limit = players.size();
+
+			for (int i = 0; i < limit; ++i) {
+				SENT_BYTES.addTo(players.get(i), bytes);
+			}
+		}
+	}
+
+	protected static void removeDisconnected(ObjectArrayList<ServerPlayer> players) {
+		for (int i = players.size() - 1; i >= 0; --i) {
+			if (players.get(i).hasDisconnected()) {
+				players.remove(i);
+			}
+		}
+	}
+
+	/** Each player gets an independent view of the same content. */
+	protected static void sendToAll(ObjectArrayList<ServerPlayer> players, ResourceLocation id, FriendlyByteBuf buf) {
+		final int limit = players.size();
+
+		for (int i = 0; i < limit; ++i) {
+			DiscreteStorageUpdateS2C.send(id, players.get(i), new FriendlyByteBuf(buf.duplicate()));
+		}
+	}
+
+	protected FriendlyByteBuf encodeFullRefresh(StorageUpdateEncoder encoder) {
+		final FriendlyByteBuf buf = DiscreteStorageUpdateS2C.begin(encoder, sentCounts.size());
+
+		for (final Int2LongMap.Entry e : Int2LongMaps.fastIterable(sentCounts)) {
+			final int handle = e.getIntKey();
+			DiscreteStorageUpdateS2C.append(buf, sentArticles.get(handle), e.getLongValue(), handle);
+		}
+
+		return buf;
+	}
+
+	/**
+	 * Encodes pending changes, structural entries first, and removes encoded entries from pending.
+	 * Encoding stops at the first entry that would exceed the budget. That entry and the rest remain pending.
+	 * Entries are encoded into {@link #body} before they are copied to the encoder.
+	 *
+	 * @param budget maximum bytes of encoded entries
+	 * @param mayExceed if true, the first entry is encoded even if it alone exceeds the budget,
+	 * so that oversized entries are eventually sent
+	 */
+	protected FriendlyByteBuf encodeDelta(StorageUpdateEncoder encoder, int budget, boolean mayExceed) {
+		final FriendlyByteBuf body = this.body;
+		body.clear();
+		int count = 0;
+		boolean isFull = false;
+
+		// structural changes first - these change what handles mean on the client, not just counts
+		ObjectIterator<Int2LongMap.Entry> it = Int2LongMaps.fastIterator(pendingCounts);
+
+		while (it.hasNext()) {
+			final Int2LongMap.Entry e = it.next();
+			final int handle = e.getIntKey();
+			final Article article = pendingArticles.get(handle);
+			final long newCount = e.getLongValue();
+
+			if (newCount == 0 || !isKnown(handle, article)) {
+				if (!tryAppend(body, handle, article, newCount, budget, mayExceed && count == 0)) {
+					isFull = true;
+					break;
+				}
+
+				pendingArticles.remove(handle);
+				it.remove();
+				++count;
+			}
+		}
+
+		if (!isFull) {
+			it = Int2LongMaps.fastIterator(pendingCounts);
+
+			while (it.hasNext()) {
+				final Int2LongMap.Entry e = it.next();
+				final int handle = e.getIntKey();
+
+				if (!tryAppend(body, handle, pendingArticles.get(handle), e.getLongValue(), budget, mayExceed && count == 0)) {
+					break;
+				}
+
+				pendingArticles.remove(handle);
+				it.remove();
+				++count;
+			}
+		}
+
+		final FriendlyByteBuf buf = DiscreteStorageUpdateS2C.beginDelta(encoder, count);
+		buf.writeBytes(body, 0, body.writerIndex());
+		return buf;
+	}
+
+	protected boolean isKnown(int handle, Article article) {
+		final Article known = sentArticles.get(handle);
+		return known != null && known.equals(article);
+	}
+
+	/**
+	 * Encodes the entry and tracks it as sent, unless it would exceed the budget.
+	 *
+	 * @return true if the entry was encoded
+	 */
+	protected boolean tryAppend(FriendlyByteBuf buf, int handle, Article article, long newCount, int budget, boolean mayExceed) {
+		final int mark = buf.writerIndex();
+
+		if (isKnown(handle, article)) {
+			DiscreteStorageUpdateS2C.appendDelta(buf, newCount - sentCounts.get(handle), handle);
+		} else {
+			DiscreteStorageUpdateS2C.appendDefinition(buf, article, newCount, handle);
+		}
+
+		if (buf.writerIndex() > budget && !mayExceed) {
+			buf.writerIndex(mark);
+			return false;
+		}
+
+		track(handle, article, newCount);
+		return true;
+	}
+
+	protected void applyAllPending() {
+		for (final Int2LongMap.Entry e : Int2LongMaps.fastIterable(pendingCounts)) {
+			final int handle = e.getIntKey();
+			track(handle, pendingArticles.get(handle), e.getLongValue());
+		}
+
+		pendingCounts.clear();
+		pendingArticles.clear();
+	}
+
+	protected void track(int handle, Article article, long count) {
+		if (count == 0) {
+			sentArticles.remove(handle);
+			sentCounts.remove(handle);
+		} else {
+			sentArticles.put(handle, article);
+			sentCounts.put(handle, count);
+		}
+	}
+
+	protected void close() {
+		if (storage != null) {
+			storage.eventStream().stopListening(this, false);
+			storage = null;
+		}
+	}
+
+	/** Entry count, capacity flag and capacity of a delta update. */
+	protected static final int DELTA_OVERHEAD_BYTES = 16;
+
+	private static final IdentityHashMap<Store, DiscreteStorageSyncHub> HUBS = new IdentityHashMap<>();
+	private static final ObjectArrayList<DiscreteStorageSyncHub> TICKING = new ObjectArrayList<>();
+	/** Bytes sent to each player during the current tick. Only tracked when there is a budget. */
+	private static final Object2IntOpenHashMap<ServerPlayer> SENT_BYTES = new Object2IntOpenHashMap<>();
+	/** Rotates the hub ticked first so that no hub consistently gets the leftover budget. */
+	private static int tickOffset = 0;
+
+	/**
+	 * Hub for the given store, created if necessary. Hubs without viewers are released after the next tick.
+	 */
+	public static DiscreteStorageSyncHub of(Store storage) {
+		DiscreteStorageSyncHub result = HUBS.get(storage);
+
+		if (result == null) {
+			result = new DiscreteStorageSyncHub(storage);
+			HUBS.put(storage, result);
+		}
+
+		return result;
+	}
+
+	/** Call after each server tick. */
+	public static void tickAll() {
+		if (HUBS.isEmpty()) {
+			return;
+		}
+
+		// ticking may send packets, so don't iterate the map directly
+		TICKING.addAll(HUBS.values());
+		SENT_BYTES.clear();
+		final int bytesPerPlayer = FluidityConfig.SYNC_BYTES_PER_TICK;
+		final int limit = TICKING.size();
+		final int offset = Math.floorMod(tickOffset++, limit);
+
+		for (int j = 0; j < limit; ++j) {
+			final int i = j + offset;
+			final DiscreteStorageSyncHub hub = TICKING.get(i >= limit ? i - limit : i);
+
+			if (hub.storage != null) {
+				hub.tick(bytesPerPlayer);
+			}
+
+			if (hub.storage == null || !hub.hasViewers()) {
+				HUBS.remove(hub.owner);
+				hub.close();
+			}
+		}
+
+		TICKING.clear();
+	}
+
+	/** Releases all hubs, for server shutdown. */
+	public static void clearAll() {
+		for (final DiscreteStorageSyncHub hub : HUBS.values()) {
+			hub.close();
+		}
+
+		HUBS.clear();
+		SENT_BYTES.clear();
+	}
+}
@@ -22,6 +22,7 @@ package grondag.fluidity.base.synch;
 
 import io.netty.buffer.Unpooled;
 import org.jetbrains.annotations.ApiStatus.Experimental;
+import org.jetbrains.annotations.Nullable;
 
 import net.minecraft.network.FriendlyByteBuf;
 import net.minecraft.network.protocol.Packet;
@@ -43,6 +44,16 @@ public final class DiscreteStorageUpdateS2C {
 		return buf;
 	}
 
+	/**
+	 * As with {@link #begin(int)} but encodes into the reusable buffer of the given encoder.
+	 * Send with {@link #sendFullRefresh(ServerPlayer, StorageUpdateEncoder, long)}.
+	 */
+	public static FriendlyByteBuf begin(StorageUpdateEncoder encoder, int count) {
+		final FriendlyByteBuf buf = encoder.begin(count);
+		buf.writeInt(count);
+		return buf;
+	}
+
 	public static FriendlyByteBuf append(FriendlyByteBuf buf, Article article, long count, int handle) {
 		article.toPacket(buf);
 		buf.writeVarLong(count);
@@ -50,6 +61,114 @@ public final class DiscreteStorageUpdateS2C {
 		return buf;
 	}
 
+	/**
+	 * Starts a delta update. Unlike {@link #begin(int)}, entries are written with
+	 * {@link #appendDefinition(FriendlyByteBuf, Article, long, int)} for handles the client
+	 * does not know yet and with {@link #appendDelta(FriendlyByteBuf, long, int)} for handles
+	 * the client already associates with the same article.
+	 *
+	 * @param count number of entries that will be appended
+	 * @return new buffer for the update
+	 */
+	public static FriendlyByteBuf beginDelta(int count) {
+		final FriendlyByteBuf buf = new FriendlyByteBuf(Unpooled.buffer());
+		buf.writeVarInt(count);
+		return buf;
+	}
+
+	/**
+	 * As with {@link #beginDelta(int)} but encodes into the reusable buffer of the given encoder.
+	 * Send with {@link #sendDeltaUpdate(ServerPlayer, StorageUpdateEncoder, long)}.
+	 */
+	public static FriendlyByteBuf beginDelta(StorageUpdateEncoder encoder, int count) {
+		final FriendlyByteBuf buf = encoder.begin(count);
+		buf.writeVarInt(count);
+		return buf;
+	}
+
+	/** Entry for a handle that is new to the client or now holds a different article. Count is absolute. */
+	public static FriendlyByteBuf appendDefinition(FriendlyByteBuf buf, Article article, long count, int handle) {
+		buf.writeVarInt((handle << 1) | 1);
+		article.toPacket(buf);
+		buf.writeVarLong(count);
+		return buf;
+	}
+
+	/** Entry for a handle the client already knows. Only the change in count is sent. */
+	public static FriendlyByteBuf appendDelta(FriendlyByteBuf buf, long delta, int handle) {
+		buf.writeVarInt(handle << 1);
+		// zig-zag so that small decreases are as compact as small increases
+		buf.writeVarLong((delta << 1) ^ (delta >> 63));
+		return buf;
+	}
+
+	/**
+	 * Sends a delta update started with {@link #beginDelta(int)}.
+	 *
+	 * @param capacity new storage capacity, or -1 if unchanged
+	 */
+	public static void sendDeltaUpdate(ServerPlayer player, FriendlyByteBuf buf, long capacity) {
+		send(ID_DELTA_UPDATE, player, finishDelta(buf, capacity));
+	}
+
+	public static FriendlyByteBuf finishDelta(FriendlyByteBuf buf, long capacity) {
+		if (capacity >= 0) {
+			buf.writeBoolean(true);
+			buf.writeVarLong(capacity);
+		} else {
+			buf.writeBoolean(false);
+		}
+
+		return buf;
+	}
+
+	/**
+	 * Reads a delta update and passes each entry to the consumer in order.
+	 *
+	 * @return new storage capacity, or -1 if unchanged
+	 */
+	public static long readDelta(FriendlyByteBuf buf, DeltaConsumer consumer) {
+		final int limit = buf.readVarInt();
+
+		for (int i = 0; i < limit; ++i) {
+			final int header = buf.readVarInt();
+			final int handle = header >>> 1;
+
+			if ((header & 1) == 1) {
+				final Article article = Article.fromPacket(buf);
+				consumer.accept(handle, article, buf.readVarLong());
+			} else {
+				final long zigZag = buf.readVarLong();
+				consumer.accept(handle, null, (zigZag >>> 1) ^ -(zigZag & 1));
+			}
+		}
+
+		return buf.readBoolean() ? buf.readVarLong() : -1;
+	}
+
+	@FunctionalInterface
+	public interface DeltaConsumer {
+		/**
+		 * @param handle storage handle
+		 * @param article article now associated with the handle, or null if the handle holds the same article as before
+		 * @param value absolute count when article is non-null, otherwise change in count
+		 */
+		void accept(int handle, @Nullable Article article, long value);
+	}
+
+	public static void sendFullRefresh(ServerPlayer player, StorageUpdateEncoder encoder, long capacity) {
+		encoder.buffer().writeVarLong(capacity);
+		send(ID_FULL_REFRESH, player, encoder.finish());
+	}
+
+	/**
+	 * @param capacity new storage capacity, or -1 if unchanged
+	 */
+	public static void sendDeltaUpdate(ServerPlayer player, StorageUpdateEncoder encoder, long capacity) {
+		finishDelta(encoder.buffer(), capacity);
+		send(ID_DELTA_UPDATE, player, encoder.finish());
+	}
+
 	public static void sendFullRefresh(ServerPlayer player, FriendlyByteBuf buf, long capacity) {
 		buf.writeVarLong(capacity);
 		send(ID_FULL_REFRESH, player, buf);
@@ -64,7 +183,7 @@ public final class DiscreteStorageUpdateS2C {
 		send(ID_UPDATE, player, buf);
 	}
 
-	private static void send(ResourceLocation id, ServerPlayer player, FriendlyByteBuf buf) {
+	public static void send(ResourceLocation id, ServerPlayer player, FriendlyByteBuf buf) {
 		final Packet<?> packet = ServerPlayNetworking.createS2CPacket(id, buf);
 		player.connection.send(packet);
 	}
@@ -72,4 +191,5 @@ public final class DiscreteStorageUpdateS2C {
 	public static ResourceLocation ID_FULL_REFRESH = new ResourceLocation(Fluidity.MOD_ID, "dfrs2c");
 	public static ResourceLocation ID_UPDATE = new ResourceLocation(Fluidity.MOD_ID, "duds2c");
 	public static ResourceLocation ID_UPDATE_WITH_CAPACITY = new ResourceLocation(Fluidity.MOD_ID, "ducs2c");
+	public static ResourceLocation ID_DELTA_UPDATE = new ResourceLocation(Fluidity.MOD_ID, "ddds2c");
 }
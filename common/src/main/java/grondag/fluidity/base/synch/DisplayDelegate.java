@@ -76,9 +76,8 @@ public interface DisplayDelegate {
 				return -1;
 			}
 
-			final String s1 = I18n.get(o1.localizedName());
-			final String s2 = I18n.get(o2.localizedName());
-			return s1.compareTo(s2);
+			// localized names are translated and cached when the article is set
+			return o1.localizedName().compareTo(o2.localizedName());
 		}
 	};
 
@@ -138,6 +137,14 @@ public interface DisplayDelegate {
 
 	int SORT_COUNT = 4;
 
+	/**
+	 * @return true if the given sort order depends on quantity, meaning a delegate
+	 * must be repositioned when its quantity changes
+	 */
+	static boolean isQuantitySort(int sortIndex) {
+		return sortIndex % SORT_COUNT >= 2;
+	}
+
 	static String getSortTranslactionKey(int sortIndex) {
 		switch (sortIndex % SORT_COUNT) {
 			case 0:
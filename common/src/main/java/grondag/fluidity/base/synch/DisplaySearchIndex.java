@@ -0,0 +1,323 @@
+/*
+ * This file is part of Fluidity and is licensed to the project under
+ * terms that are compatible with the GNU Lesser General Public License.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership and licensing.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package grondag.fluidity.base.synch;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import org.jetbrains.annotations.ApiStatus.Experimental;
+import org.jetbrains.annotations.Nullable;
+
+import net.minecraft.core.Registry;
+
+import grondag.fluidity.api.article.Article;
+
+/**
+ * Search index over client display delegates, keyed by handle.
+ *
+ * <p>Names are indexed by every 1, 2 and 3 character substring of the lower-case
+ * localized name. Queries of up to three characters are answered directly from the
+ * index. Longer queries only check names that contain the rarest trigram of the query.
+ *
+ * <p>Queries starting with {@code @} match mod ids and queries starting with {@code #}
+ * match tag ids. Both match any id that contains the rest of the query.
+ */
+@Experimental
+public class DisplaySearchIndex<T extends DisplayDelegate> {
+	protected static final int QUERY_ALL = 0;
+	protected static final int QUERY_NAME = 1;
+	protected static final int QUERY_MOD = 2;
+	protected static final int QUERY_TAG = 3;
+
+	protected static final String[] NO_TAGS = new String[0];
+
+	protected final Int2ObjectOpenHashMap<Entry<T>> entries = new Int2ObjectOpenHashMap<>();
+	protected final Long2ObjectOpenHashMap<IntOpenHashSet> grams = new Long2ObjectOpenHashMap<>();
+	protected final Object2ObjectOpenHashMap<String, IntOpenHashSet> mods = new Object2ObjectOpenHashMap<>();
+	protected final Object2ObjectOpenHashMap<String, IntOpenHashSet> tags = new Object2ObjectOpenHashMap<>();
+	protected final IntOpenHashSet result = new IntOpenHashSet();
+
+	protected int queryType = QUERY_ALL;
+	protected String queryText = "";
+
+	protected static class Entry<T> {
+		protected final T delegate;
+		protected final String mod;
+		protected final String[] tags;
+
+		protected Entry(T delegate, String mod, String[] tags) {
+			this.delegate = delegate;
+			this.mod = mod;
+			this.tags = tags;
+		}
+	}
+
+	public void add(T delegate) {
+		final int handle = delegate.handle();
+		final Entry<T> prior = entries.get(handle);
+
+		if (prior != null) {
+			remove(prior.delegate);
+		}
+
+		final Article article = delegate.article();
+		final Entry<T> entry = new Entry<>(delegate, modId(article), tagIds(article));
+		entries.put(handle, entry);
+
+		final String name = delegate.lowerCaseLocalizedName();
+		final int len = name.length();
+
+		for (int i = 0; i < len; ++i) {
+			for (int n = 1; n <= 3 && i + n <= len; ++n) {
+				grams.computeIfAbsent(gramKey(name, i, n), k -> new IntOpenHashSet()).add(handle);
+			}
+		}
+
+		mods.computeIfAbsent(entry.mod, k -> new IntOpenHashSet()).add(handle);
+
+		for (final String tag : entry.tags) {
+			tags.computeIfAbsent(tag, k -> new IntOpenHashSet()).add(handle);
+		}
+	}
+
+	public void remove(T delegate) {
+		final int handle = delegate.handle();
+		final Entry<T> entry = entries.get(handle);
+
+		if (entry == null || entry.delegate != delegate) {
+			return;
+		}
+
+		entries.remove(handle);
+
+		final String name = delegate.lowerCaseLocalizedName();
+		final int len = name.length();
+
+		for (int i = 0; i < len; ++i) {
+			for (int n = 1; n <= 3 && i + n <= len; ++n) {
+				removePosting(grams, gramKey(name, i, n), handle);
+			}
+		}
+
+		removePosting(mods, entry.mod, handle);
+
+		for (final String tag : entry.tags) {
+			removePosting(tags, tag, handle);
+		}
+	}
+
+	public void clear() {
+		entries.clear();
+		grams.clear();
+		mods.clear();
+		tags.clear();
+		result.clear();
+	}
+
+	/**
+	 * Sets the query used by {@link #search()} and {@link #test(DisplayDelegate)}.
+	 *
+	 * @param query lower-case query, optionally prefixed with {@code @} or {@code #}
+	 */
+	public void setQuery(String query) {
+		if (query.startsWith("@")) {
+			queryType = QUERY_MOD;
+			queryText = query.substring(1);
+		} else if (query.startsWith("#")) {
+			queryType = QUERY_TAG;
+			queryText = query.substring(1);
+		} else {
+			queryType = QUERY_NAME;
+			queryText = query;
+		}
+
+		if (queryText.isEmpty()) {
+			queryType = QUERY_ALL;
+		}
+	}
+
+	/**
+	 * Finds all indexed delegates that match the current query.
+	 *
+	 * @return handles of matching delegates, or null if the query matches everything.
+	 * The set is reused by the next search.
+	 */
+	public @Nullable IntOpenHashSet search() {
+		result.clear();
+
+		switch (queryType) {
+			case QUERY_ALL:
+			default:
+				return null;
+
+			case QUERY_NAME:
+				searchName(queryText);
+				break;
+
+			case QUERY_MOD:
+				searchIds(mods, queryText);
+				break;
+
+			case QUERY_TAG:
+				searchIds(tags, queryText);
+				break;
+		}
+
+		return result;
+	}
+
+	protected void searchName(String text) {
+		final int len = text.length();
+
+		if (len <= 3) {
+			final IntOpenHashSet postings = grams.get(gramKey(text, 0, len));
+
+			if (postings != null) {
+				result.addAll(postings);
+			}
+
+			return;
+		}
+
+		IntOpenHashSet rarest = null;
+
+		for (int i = 0; i + 3 <= len; ++i) {
+			final IntOpenHashSet postings = grams.get(gramKey(text, i, 3));
+
+			if (postings == null) {
+				return;
+			}
+
+			if (rarest == null || postings.size() < rarest.size()) {
+				rarest = postings;
+			}
+		}
+
+		final IntIterator it = rarest.iterator();
+
+		while (it.hasNext()) {
+			final int handle = it.nextInt();
+
+			if (entries.get(handle).delegate.lowerCaseLocalizedName().contains(text)) {
+				result.add(handle);
+			}
+		}
+	}
+
+	protected void searchIds(Object2ObjectOpenHashMap<String, IntOpenHashSet> index, String text) {
+		final ObjectIterator<Object2ObjectOpenHashMap.Entry<String, IntOpenHashSet>> it = index.object2ObjectEntrySet().fastIterator();
+
+		while (it.hasNext()) {
+			final Object2ObjectOpenHashMap.Entry<String, IntOpenHashSet> e = it.next();
+
+			if (e.getKey().contains(text)) {
+				result.addAll(e.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Tests a single indexed delegate against the current query without searching the index.
+	 */
+	public boolean test(T delegate) {
+		switch (queryType) {
+			case QUERY_ALL:
+			default:
+				return true;
+
+			case QUERY_NAME:
+				return delegate.lowerCaseLocalizedName().contains(queryText);
+
+			case QUERY_MOD:
+				return entry(delegate).mod.contains(queryText);
+
+			case QUERY_TAG:
+				for (final String tag : entry(delegate).tags) {
+					if (tag.contains(queryText)) {
+						return true;
+					}
+				}
+
+				return false;
+		}
+	}
+
+	protected Entry<T> entry(T delegate) {
+		final Entry<T> entry = entries.get(delegate.handle());
+
+		if (entry != null && entry.delegate == delegate) {
+			return entry;
+		}
+
+		final Article article = delegate.article();
+		return new Entry<>(delegate, modId(article), tagIds(article));
+	}
+
+	protected static <K> void removePosting(Object2ObjectOpenHashMap<K, IntOpenHashSet> index, K key, int handle) {
+		final IntOpenHashSet postings = index.get(key);
+
+		if (postings != null && postings.remove(handle) && postings.isEmpty()) {
+			index.remove(key);
+		}
+	}
+
+	protected static void removePosting(Long2ObjectOpenHashMap<IntOpenHashSet> index, long key, int handle) {
+		final IntOpenHashSet postings = index.get(key);
+
+		if (postings != null && postings.remove(handle) && postings.isEmpty()) {
+			index.remove(key);
+		}
+	}
+
+	/** Packs up to three characters with their count so that grams of different length never collide. */
+	protected static long gramKey(String s, int start, int length) {
+		long result = length;
+
+		for (int i = 0; i < length; ++i) {
+			result = (result << 16) | s.charAt(start + i);
+		}
+
+		return result;
+	}
+
+	protected static String modId(Article article) {
+		if (article.isItem()) {
+			return Registry.ITEM.getKey(article.toItem()).getNamespace();
+		} else if (article.isFluid()) {
+			return Registry.FLUID.getKey(article.toFluid()).getNamespace();
+		} else {
+			return "";
+		}
+	}
+
+	protected static String[] tagIds(Article article) {
+		if (article.isItem()) {
+			return article.toItem().builtInRegistryHolder().tags().map(t -> t.location().toString()).toArray(String[]::new);
+		} else if (article.isFluid()) {
+			return article.toFluid().builtInRegistryHolder().tags().map(t -> t.location().toString()).toArray(String[]::new);
+		} else {
+			return NO_TAGS;
+		}
+	}
+}
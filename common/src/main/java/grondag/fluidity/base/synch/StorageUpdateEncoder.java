@@ -0,0 +1,113 @@
+/*
+ * This file is part of Fluidity and is licensed to the project under
+ * terms that are compatible with the GNU Lesser General Public License.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership and licensing.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package grondag.fluidity.base.synch;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import org.jetbrains.annotations.ApiStatus.Experimental;
+
+import net.minecraft.network.FriendlyByteBuf;
+
+/**
+ * Reusable encoding buffer for storage update packets.
+ *
+ * <p>Updates are encoded into a pooled direct buffer that is retained by the encoder and
+ * sized up front from the number of entries and the average entry size seen so far.
+ * The finished content is then copied once into an exactly-sized heap buffer for the packet.
+ * Packets are not released after they are sent, so the pooled buffer itself must never be sent.
+ *
+ * <p>Encoders are not thread-safe. Use {@link #get()} for an encoder confined to the current thread.
+ */
+@Experimental
+public class StorageUpdateEncoder {
+	/** Size of counts and trailing capacity that precede or follow entries. */
+	protected static final int OVERHEAD_BYTES = 32;
+	protected static final int INITIAL_ENTRY_BYTES = 16;
+
+	protected final ByteBuf scratch = PooledByteBufAllocator.DEFAULT.directBuffer(1024);
+	protected final FriendlyByteBuf buffer = new FriendlyByteBuf(scratch);
+	protected int entryCount = 0;
+
+	/** Running average of encoded bytes per entry, in 1/16ths of a byte. */
+	protected int averageEntryBytes16 = INITIAL_ENTRY_BYTES << 4;
+
+	/**
+	 * Clears the encoding buffer and ensures it can hold the expected entries without resizing.
+	 *
+	 * @param entryCount number of entries that will be encoded
+	 * @return encoding buffer, valid until the next call to this method
+	 */
+	public FriendlyByteBuf begin(int entryCount) {
+		this.entryCount = entryCount;
+		scratch.clear();
+		scratch.ensureWritable(estimateBytes(entryCount));
+		return buffer;
+	}
+
+	/**
+	 * @return encoding buffer, valid until the next call to {@link #begin(int)}
+	 */
+	public FriendlyByteBuf buffer() {
+		return buffer;
+	}
+
+	public int estimateBytes(int entryCount) {
+		return OVERHEAD_BYTES + (int) Math.min(Integer.MAX_VALUE - OVERHEAD_BYTES, ((long) entryCount * averageEntryBytes16) >> 4);
+	}
+
+	/**
+	 * Copies encoded content to a new heap buffer of exact size for sending
+	 * and updates the entry size estimate.
+	 *
+	 * @return new buffer to be sent as a packet
+	 */
+	public FriendlyByteBuf finish() {
+		final int bytes = scratch.writerIndex();
+
+		if (entryCount > 0) {
+			final int entryBytes16 = (int) Math.min(Integer.MAX_VALUE, ((long) Math.max(0, bytes - OVERHEAD_BYTES) << 4) / entryCount);
+			// exponential moving average - weights recent packets at 1/4
+			averageEntryBytes16 += (entryBytes16 - averageEntryBytes16) >> 2;
+			averageEntryBytes16 = Math.max(averageEntryBytes16, 1 << 4);
+		}
+
+		final ByteBuf result = Unpooled.buffer(bytes, bytes);
+		result.writeBytes(scratch, 0, bytes);
+		return new FriendlyByteBuf(result);
+	}
+
+	/** Returns the pooled buffer to the allocator. The encoder cannot be used afterwards. */
+	public void release() {
+		scratch.release();
+	}
+
+	private static final ThreadLocal<StorageUpdateEncoder> ENCODERS = ThreadLocal.withInitial(StorageUpdateEncoder::new);
+
+	/**
+	 * Encoder for the current thread, retained across ticks.
+	 *
+	 * @return encoder confined to the current thread
+	 */
+	public static StorageUpdateEncoder get() {
+		return ENCODERS.get();
+	}
+}
@@ -31,8 +31,10 @@ import net.minecraft.world.item.alchemy.Potions;
 import net.minecraft.world.level.material.Fluids;
 
 import grondag.fluidity.api.device.ItemActionHelper;
+import grondag.fluidity.base.synch.DiscreteStorageSyncHub;
 import grondag.fluidity.base.synch.ItemStorageInteractionC2S;
 import grondag.fluidity.impl.article.ArticleTypeImpl;
+import grondag.fluidity.wip.base.transport.TokenBucketCostFunction;
 
 public abstract class Fluidity {
 	private Fluidity() { }
@@ -47,8 +49,13 @@ public abstract class Fluidity {
 	public static void initialize() {
 		FluidityConfig.init();
 		ArticleTypeImpl.init();
+		TransactionImpl.setPerThread(FluidityConfig.PER_THREAD_TRANSACTIONS);
 
 		TickEvent.SERVER_POST.register(MultiBlockManagerImpl::tick);
+		TickEvent.SERVER_POST.register(s -> DiscreteStorageSyncHub.tickAll());
+		TickEvent.SERVER_POST.register(s -> TokenBucketCostFunction.onServerTick());
+		LifecycleEvent.SERVER_STOPPED.register(s -> DiscreteStorageSyncHub.clearAll());
+		LifecycleEvent.SERVER_STOPPED.register(MultiBlockManagerImpl::stop);
 
 		LifecycleEvent.SERVER_STARTED.register(s -> {
 			TransactionImpl.setServerThread(s.getRunningThread());
@@ -34,9 +34,11 @@ public abstract class FluidityClient {
 		NetworkManager.registerReceiver(NetworkManager.s2c(), DiscreteStorageUpdateS2C.ID_FULL_REFRESH, DiscreteStorageClientDelegate.INSTANCE::handleFullRefresh);
 		NetworkManager.registerReceiver(NetworkManager.s2c(), DiscreteStorageUpdateS2C.ID_UPDATE, DiscreteStorageClientDelegate.INSTANCE::handleUpdate);
 		NetworkManager.registerReceiver(NetworkManager.s2c(), DiscreteStorageUpdateS2C.ID_UPDATE_WITH_CAPACITY, DiscreteStorageClientDelegate.INSTANCE::handleUpdateWithCapacity);
+		NetworkManager.registerReceiver(NetworkManager.s2c(), DiscreteStorageUpdateS2C.ID_DELTA_UPDATE, DiscreteStorageClientDelegate.INSTANCE::handleDeltaUpdate);
 
 		NetworkManager.registerReceiver(NetworkManager.s2c(), BulkStorageUpdateS2C.ID_FULL_REFRESH, BulkStorageClientDelegate.INSTANCE::handleFullRefresh);
 		NetworkManager.registerReceiver(NetworkManager.s2c(), BulkStorageUpdateS2C.ID_UPDATE, BulkStorageClientDelegate.INSTANCE::handleUpdate);
 		NetworkManager.registerReceiver(NetworkManager.s2c(), BulkStorageUpdateS2C.ID_UPDATE_WITH_CAPACITY, BulkStorageClientDelegate.INSTANCE::handleUpdateWithCapacity);
+		NetworkManager.registerReceiver(NetworkManager.s2c(), BulkStorageUpdateS2C.ID_DELTA_UPDATE, BulkStorageClientDelegate.INSTANCE::handleDeltaUpdate);
 	}
 }
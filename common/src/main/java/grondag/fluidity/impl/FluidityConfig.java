@@ -34,8 +34,19 @@ public class FluidityConfig {
 	private FluidityConfig() { }
 
 	public static final boolean TRACE_DEVICE_CONNECTIONS;
-	// TODO: use it or remove
+	public static final boolean PER_THREAD_TRANSACTIONS;
+	/** Time allowed each tick for multiblock connection requests. Remaining requests wait for the next tick. Zero for no limit. */
 	public static final int PER_TICK_BUDGET_MILLISECONDS;
+	/**
+	 * Bytes of shared storage sync delta updates sent to each player per tick, across all storage viewed.
+	 * Full refreshes and single oversized entries may exceed it. Zero for no limit.
+	 */
+	public static final int SYNC_BYTES_PER_TICK;
+	/**
+	 * Resolve multiblock connection requests for different worlds in parallel. Changes to multiblocks
+	 * are still applied on the server thread, but connection tests are then called from worker threads.
+	 */
+	public static final boolean PARALLEL_MULTIBLOCK_WORLDS;
 
 	static void init() {
 		// NOOP - loads
@@ -60,7 +71,10 @@ public class FluidityConfig {
 		}
 
 		TRACE_DEVICE_CONNECTIONS = properties.computeIfAbsent("trace_device_connections", (a) -> "false").equals("true");
+		PER_THREAD_TRANSACTIONS = properties.computeIfAbsent("per_thread_transactions", (a) -> "false").equals("true");
 		PER_TICK_BUDGET_MILLISECONDS = readInteger(properties, "per_tick_budget_milliseconds", 10);
+		SYNC_BYTES_PER_TICK = readInteger(properties, "sync_bytes_per_tick", 8192);
+		PARALLEL_MULTIBLOCK_WORLDS = properties.computeIfAbsent("parallel_multiblock_worlds", (a) -> "false").equals("true");
 
 		try (FileOutputStream stream = new FileOutputStream(configFile)) {
 			properties.store(stream, "Fluidity properties file");
@@ -27,12 +27,14 @@ import java.util.Iterator;
 import java.util.function.BiPredicate;
 import java.util.function.Supplier;
 
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.longs.LongArrayList;
-import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
-import it.unimi.dsi.fastutil.objects.Object2BooleanOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2BooleanLinkedOpenHashMap;
 import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
 import org.jetbrains.annotations.ApiStatus.Experimental;
 import org.jetbrains.annotations.Nullable;
 
@@ -44,45 +46,179 @@ import grondag.fluidity.api.multiblock.MultiBlock;
 import grondag.fluidity.api.multiblock.MultiBlockManager;
 import grondag.fluidity.api.multiblock.MultiBlockMember;
 
+/**
+ * Connectivity of members in each world is tracked by the manager with its own member groups.
+ * Requests are first resolved against these groups, which touches nothing outside the manager,
+ * and the resulting changes to members and multiblocks are recorded. Recorded changes are then
+ * applied on the server thread in the order they were made. This lets the request queues of
+ * different worlds be resolved in parallel when {@link FluidityConfig#PARALLEL_MULTIBLOCK_WORLDS}
+ * is enabled while multiblocks and members only ever see calls from the server thread.
+ *
+ * <p>Requests are resolved until {@link FluidityConfig#PER_TICK_BUDGET_MILLISECONDS} is used and
+ * the rest wait for the next tick. While a backlog remains, as after world load, changed multiblocks
+ * are told they are {@link MultiBlock#setAssembling(boolean) assembling} until the backlog is cleared.
+ */
 @Experimental
 @SuppressWarnings({ "unchecked", "rawtypes" })
 public class MultiBlockManagerImpl<T extends MultiBlockMember<T, U, V>, U extends MultiBlock<T, U, V>, V> implements MultiBlockManager<T, U, V> {
+	/**
+	 * Connected members as known to the manager. The multiblock instance is created
+	 * on the server thread when recorded changes are applied.
+	 */
+	private class Group {
+		private final ObjectOpenHashSet<T> members = new ObjectOpenHashSet<>();
+		private U owner;
+
+		private U owner() {
+			if (owner == null) {
+				owner = compoundSupplier.get();
+			}
+
+			return owner;
+		}
+
+		@Override
+		public String toString() {
+			return owner == null ? "(new multiblock)" : owner.toString();
+		}
+	}
+
 	@SuppressWarnings("serial")
 	private class WorldHandler extends Long2ObjectOpenHashMap<T> {
 		private final Object2LongOpenHashMap<T> reverseMap = new Object2LongOpenHashMap<>();
 
-		private final Object2BooleanOpenHashMap<T> requests = new Object2BooleanOpenHashMap<>();
+		/** Insertion ordered so that requests are resolved in the order received. */
+		private final Object2BooleanLinkedOpenHashMap<T> requests = new Object2BooleanLinkedOpenHashMap<>();
+
+		private final Object2ObjectOpenHashMap<T, Group> groups = new Object2ObjectOpenHashMap<>();
+
+		/** Changes to members and multiblocks, applied on the server thread by {@link #apply()}. */
+		private final ObjectArrayList<Runnable> changes = new ObjectArrayList<>();
+
+		/**
+		 * True from world load until the request backlog is cleared within a tick budget,
+		 * and again whenever a backlog remains at the end of a tick.
+		 * Groups changed in that time are told they are assembling.
+		 */
+		private boolean isAssembling = true;
+		private final ObjectOpenHashSet<Group> assembling = new ObjectOpenHashSet<>();
+
+		private final ObjectArrayList<T> neighbors = new ObjectArrayList<>();
+
+		/** Members found by each neighbor search. */
+		private final ObjectArrayList<T>[] splitDevices = new ObjectArrayList[6];
+		private final LongArrayList[] searchStacks = new LongArrayList[6];
+
+		/** Union-find parent of each neighbor search. Searches that meet are connected. */
+		private final int[] searchGroups = new int[6];
+
+		/** Index of the search that first visited each position, or {@link #NOT_MEMBER}. */
+		private final Long2IntOpenHashMap visitedBy = new Long2IntOpenHashMap();
 
 		boolean didRequestTick = false;
 
+		private WorldHandler() {
+			for (int i = 0; i < 6; i++) {
+				splitDevices[i] = new ObjectArrayList<>();
+				searchStacks[i] = new LongArrayList();
+			}
+
+			visitedBy.defaultReturnValue(UNDETERMINED);
+		}
+
+		private void clearRequests() {
+			requests.clear();
+			didRequestTick = false;
+		}
+
 		private void firstTick() {
 			clear();
 			reverseMap.clear();
+			groups.clear();
+			changes.clear();
+			assembling.clear();
+			isAssembling = true;
 		}
 
-		private void process() {
+		/**
+		 * Resolves pending requests against member groups and records the resulting changes.
+		 * Does not call multiblocks or members, other than the connection test.
+		 * Requests not resolved by the deadline remain queued for the next tick.
+		 *
+		 * @param deadline {@link System#nanoTime()} after which no more requests are started
+		 */
+		private void process(long deadline) {
 			didRequestTick = false;
+			int count = 0;
 
-			for (final it.unimi.dsi.fastutil.objects.Object2BooleanMap.Entry<T> e : requests.object2BooleanEntrySet()) {
-				if (e.getBooleanValue()) {
-					doConnect(e.getKey());
+			while (!requests.isEmpty()) {
+				// checking time is not free, so only every few requests
+				if ((++count & 63) == 0 && System.nanoTime() > deadline) {
+					break;
+				}
+
+				final T device = requests.firstKey();
+
+				if (requests.removeFirstBoolean()) {
+					doConnect(device);
 				} else {
-					doDisconnect(e.getKey());
+					doDisconnect(device);
 				}
 			}
 
-			requests.clear();
+			if (!requests.isEmpty()) {
+				isAssembling = true;
+			} else if (isAssembling) {
+				isAssembling = false;
+
+				for (final Group group : assembling) {
+					changes.add(() -> group.owner().setAssembling(false));
+				}
+
+				assembling.clear();
+			}
+		}
+
+		/** Applies recorded changes to members and multiblocks. Server thread only. */
+		private void apply() {
+			final Object[] elements = changes.elements();
+			final int limit = changes.size();
+
+			for (int i = 0; i < limit; i++) {
+				((Runnable) elements[i]).run();
+			}
+
+			changes.clear();
 		}
 
 		private void request(T device, boolean status) {
+			if (!status && requests.containsKey(device) && !reverseMap.containsKey(device)) {
+				// connect still queued - cancel it
+				requests.removeBoolean(device);
+				return;
+			}
+
 			requests.put(device, status);
+			requestTick();
+		}
 
+		private void requestTick() {
 			if (!didRequestTick) {
 				didRequestTick = true;
 				TICK_REQUESTS.add(this);
 			}
 		}
 
+		/**
+		 * Tells the multiblock for the group it is assembling before any other
+		 * change to it is applied, if the world is still assembling.
+		 */
+		private void touch(Group group) {
+			if (isAssembling && assembling.add(group)) {
+				changes.add(() -> group.owner().setAssembling(true));
+			}
+		}
+
 		private void doConnect(T device) {
 			if (FluidityConfig.TRACE_DEVICE_CONNECTIONS) {
 				Fluidity.trace("Device connection request from %s @ %s", device.toString(), device.getBlockPos().toString());
@@ -115,30 +251,27 @@ public class MultiBlockManagerImpl<T extends MultiBlockMember<T, U, V>, U extend
 				return;
 			}
 
-			final U fromOwner = fromDevice.getMultiblock();
-			final U toOwner = toDevice.getMultiblock();
+			final Group fromOwner = groups.get(fromDevice);
+			final Group toOwner = groups.get(toDevice);
 
 			if (fromOwner == null) {
 				if (toOwner == null) {
 					// form new compound device
-					final U newOwner = compoundSupplier.get();
+					final Group newOwner = new Group();
 
 					if (FluidityConfig.TRACE_DEVICE_CONNECTIONS) {
 						Fluidity.trace("New compound device %s from %s @ %s and %s @ %s", newOwner.toString(), fromDevice.toString(), fromDevice.getBlockPos().toString(), toDevice.toString(), toDevice.getBlockPos().toString());
 					}
 
-					fromDevice.setMultiblock(newOwner);
-					newOwner.add(fromDevice);
-					toDevice.setMultiblock(newOwner);
-					newOwner.add(toDevice);
+					join(fromDevice, newOwner);
+					join(toDevice, newOwner);
 				} else {
 					// join to device compound
 					if (FluidityConfig.TRACE_DEVICE_CONNECTIONS) {
 						Fluidity.trace("Compound device %s added %s @ %s", toOwner.toString(), fromDevice.toString(), fromDevice.getBlockPos().toString());
 					}
 
-					fromDevice.setMultiblock(toOwner);
-					toOwner.add(fromDevice);
+					join(fromDevice, toOwner);
 				}
 			} else if (fromOwner == toOwner) {
 				// already joined
@@ -151,11 +284,10 @@ public class MultiBlockManagerImpl<T extends MultiBlockMember<T, U, V>, U extend
 					Fluidity.trace("Compound device %s added %s @ %s", fromOwner.toString(), toDevice.toString(), toDevice.getBlockPos().toString());
 				}
 
-				toDevice.setMultiblock(fromOwner);
-				fromOwner.add(toDevice);
+				join(toDevice, fromOwner);
 			} else {
 				// two different non-null compound devices - must merge one of them
-				if (fromOwner.memberCount() > toOwner.memberCount()) {
+				if (fromOwner.members.size() > toOwner.members.size()) {
 					if (FluidityConfig.TRACE_DEVICE_CONNECTIONS) {
 						Fluidity.trace("Merging compound device %s from device %s @ %s into comound device %s from device %s @ %s",
 							toOwner, toDevice.toString(), toDevice.getBlockPos().toString(), fromOwner, fromDevice.toString(), fromDevice.getBlockPos().toString());
@@ -173,13 +305,33 @@ public class MultiBlockManagerImpl<T extends MultiBlockMember<T, U, V>, U extend
 			}
 		}
 
-		private void handleMerge(U victim, U survivor) {
-			victim.removalAllAndClose(d -> {
-				d.setMultiblock(survivor);
-				survivor.add(d);
+		private void join(T device, Group group) {
+			touch(group);
+			groups.put(device, group);
+			group.members.add(device);
+
+			changes.add(() -> {
+				final U owner = group.owner();
+				device.setMultiblock(owner);
+				owner.add(device);
 			});
 		}
 
+		private void handleMerge(Group victim, Group survivor) {
+			touch(survivor);
+			// victim is closed and members are moved without ever leaving assembly
+			assembling.remove(victim);
+
+			for (final T d : victim.members) {
+				groups.put(d, survivor);
+				survivor.members.add(d);
+			}
+
+			victim.members.clear();
+
+			changes.add(() -> victim.owner().mergeInto(survivor.owner()));
+		}
+
 		private void doDisconnect(T device) {
 			if (FluidityConfig.TRACE_DEVICE_CONNECTIONS) {
 				Fluidity.trace("Device disconnect request from %s @ %s", device.toString(), device.getBlockPos().toString());
@@ -194,7 +346,7 @@ public class MultiBlockManagerImpl<T extends MultiBlockMember<T, U, V>, U extend
 				return;
 			}
 
-			final U owner = device.getMultiblock();
+			final Group owner = groups.remove(device);
 
 			if (owner == null) {
 				// not connected to anything
@@ -214,8 +366,12 @@ public class MultiBlockManagerImpl<T extends MultiBlockMember<T, U, V>, U extend
 				Fluidity.trace("Device %s @ %s removed from compound device %s", device.toString(), device.getBlockPos().toString(), owner.toString());
 			}
 
-			owner.remove(device);
-			device.setMultiblock(null);
+			owner.members.remove(device);
+
+			changes.add(() -> {
+				owner.owner().remove(device);
+				device.setMultiblock(null);
+			});
 
 			if (neighbors.size() > 1) {
 				// if part of a compound device and has more than one neighbor,
@@ -224,123 +380,244 @@ public class MultiBlockManagerImpl<T extends MultiBlockMember<T, U, V>, U extend
 			}
 
 			// if we are next to last one out, close up shop
-			if (owner.memberCount() == 1) {
-				owner.removalAllAndClose(d -> d.setMultiblock(null));
-			} else if (owner.memberCount() == 0) {
-				owner.close();
+			if (owner.members.size() == 1) {
+				for (final T d : owner.members) {
+					groups.remove(d);
+				}
+
+				owner.members.clear();
+				assembling.remove(owner);
+				changes.add(() -> owner.owner().removalAllAndClose(d -> d.setMultiblock(null)));
+			} else if (owner.members.isEmpty()) {
+				assembling.remove(owner);
+				changes.add(() -> owner.owner().close());
 			}
 		}
 
-		private void addNeighbor(U owner, @Nullable T neighbor) {
-			if (neighbor != null && neighbor.getMultiblock() == owner) {
+		private void addNeighbor(Group owner, @Nullable T neighbor) {
+			if (neighbor != null && groups.get(neighbor) == owner) {
 				neighbors.add(neighbor);
 			}
 		}
 
-		private void handleComplicatedSplit(U owner, long pos) {
+		/**
+		 * Runs a search from each remaining neighbor of the removed member, one step per
+		 * search per round. Searches that reach a position already visited by another
+		 * search are connected and are grouped. Searching stops as soon as at most one
+		 * group still has unexplored positions, so the cost is proportional to the size
+		 * of the parts being split off, not the size of the whole multiblock.
+		 *
+		 * <p>Because groups merge as searches meet, a fully explored group can be larger than
+		 * the part of the remaining group visited so far. In that case the remaining group is
+		 * searched further until it is larger, or fully explored, so that the largest part
+		 * always keeps the original multiblock.
+		 */
+		private void handleComplicatedSplit(Group owner, long pos) {
 			if (FluidityConfig.TRACE_DEVICE_CONNECTIONS) {
 				Fluidity.trace("Compound Device %s requires complicated split due to removal of device @ %s", owner.toString(), BlockPos.of(pos).toString());
 			}
 
-			splitIndex = 0;
-			Arrays.fill(splits, UNDETERMINED);
-			visited.clear();
+			final int limit = neighbors.size();
+			visitedBy.clear();
 
-			for (int i = 0; i < 6; i++) {
+			for (int i = 0; i < limit; i++) {
+				final T neighbor = neighbors.get(i);
+				final long nPos = neighbor.getPackedPos();
+				searchGroups[i] = i;
 				splitDevices[i].clear();
+				splitDevices[i].add(neighbor);
+				searchStacks[i].clear();
+				searchStacks[i].push(nPos);
+				visitedBy.put(nPos, i);
 			}
 
-			final int limit = neighbors.size();
+			while (activeGroupCount(limit) > 1) {
+				for (int i = 0; i < limit; i++) {
+					step(owner, i);
+				}
+			}
+
+			int groupCount = 0;
+			int active = UNDETERMINED;
+			int survivor = UNDETERMINED;
+			int survivorSize = -1;
 
+			// keep the largest fully explored group (first if tied) unless the remaining group is larger
 			for (int i = 0; i < limit; i++) {
-				if (splits[i] == UNDETERMINED) {
-					splits[i] = splitIndex;
-					visitFrom(owner, neighbors.get(i));
-
-					// mark any subsequent siblings that were visited as part of the search that just happened
-					if (i < limit - 1) {
-						for (int j = i + 1; j < limit; j++) {
-							final long nPos = neighbors.get(j).getPackedPos();
-
-							if (splits[j] == UNDETERMINED && visited.contains(nPos)) {
-								splits[j] = splitIndex;
-							}
+				if (find(i) == i) {
+					++groupCount;
+
+					if (!isExhausted(i, limit)) {
+						active = i;
+					} else {
+						final int size = groupSize(i, limit);
+
+						if (size > survivorSize) {
+							survivor = i;
+							survivorSize = size;
+						}
+					}
+				}
+			}
+
+			if (active != UNDETERMINED) {
+				// The remaining group can only grow, so search it only until it is known to be larger.
+				// It cannot meet a fully explored group because that group visited all of its neighbors.
+				while (groupSize(active, limit) <= survivorSize && !isExhausted(active, limit)) {
+					for (int i = 0; i < limit; i++) {
+						if (find(i) == active) {
+							step(owner, i);
 						}
 					}
+				}
+
+				final int size = groupSize(active, limit);
 
-					splitIndex++;
+				if (size > survivorSize || size == survivorSize && active < survivor) {
+					survivor = active;
 				}
 			}
 
-			if (splitIndex > 1) {
+			if (groupCount > 1) {
 				// at least two disconnected groups now, so must split off new compound devices
 				if (FluidityConfig.TRACE_DEVICE_CONNECTIONS) {
-					Fluidity.trace("Compound Device %s was split into %d devices, including original", owner.toString(), splitIndex);
+					Fluidity.trace("Compound Device %s was split into %d devices, including original", owner.toString(), groupCount);
 				}
 
-				// keep the largest one (first if tied) as existing compound device
-				int winningSize = splitDevices[0].size();
-
-				for (int i = 1; i < splitIndex; i++) {
-					winningSize = Math.max(winningSize, splitDevices[i].size());
+				for (int i = 0; i < limit; i++) {
+					if (i != survivor && find(i) == i) {
+						handleSplit(owner, i, limit);
+					}
 				}
+			}
+		}
 
-				for (int i = 0; i < splitIndex; i++) {
-					if (splitDevices[i].size() == winningSize) {
-						winningSize = -1; // breaks ties - first wins
-						continue;
-					}
+		/** Explores the neighbors of the next position on the stack of the given search, if any. */
+		private void step(Group owner, int search) {
+			final LongArrayList stack = searchStacks[search];
+
+			if (!stack.isEmpty()) {
+				final long p = stack.popLong();
+				visit(owner, search, BlockPos.offset(p, 1, 0, 0));
+				visit(owner, search, BlockPos.offset(p, -1, 0, 0));
+				visit(owner, search, BlockPos.offset(p, 0, 1, 0));
+				visit(owner, search, BlockPos.offset(p, 0, -1, 0));
+				visit(owner, search, BlockPos.offset(p, 0, 0, 1));
+				visit(owner, search, BlockPos.offset(p, 0, 0, -1));
+			}
+		}
 
-					handleSplit(owner, i);
+		/** Number of search groups with at least one search that has not finished. */
+		private int activeGroupCount(int limit) {
+			int result = 0;
+
+			for (int i = 0; i < limit; i++) {
+				if (find(i) == i && !isExhausted(i, limit)) {
+					++result;
 				}
 			}
+
+			return result;
 		}
 
-		private void handleSplit(U owner, int index) {
-			final int count = splitDevices[index].size();
+		private boolean isExhausted(int group, int limit) {
+			for (int i = 0; i < limit; i++) {
+				if (!searchStacks[i].isEmpty() && find(i) == group) {
+					return false;
+				}
+			}
 
-			if (count == 1) {
-				final MultiBlockMember d = splitDevices[index].get(0);
-				owner.remove((T) d);
-				d.setMultiblock(null);
-			} else if (count > 1) {
-				final U newOwner = compoundSupplier.get();
+			return true;
+		}
 
-				for (final MultiBlockMember d : splitDevices[index]) {
-					owner.remove((T) d);
-					d.setMultiblock(newOwner);
-					newOwner.add((T) d);
+		private int groupSize(int group, int limit) {
+			int result = 0;
+
+			for (int i = 0; i < limit; i++) {
+				if (find(i) == group) {
+					result += splitDevices[i].size();
 				}
 			}
+
+			return result;
 		}
 
-		private void visitFrom(U owner, MultiBlockMember sibling) {
-			final long pos = sibling.getPackedPos();
-			visited.add(pos);
-			splitDevices[splitIndex].add(sibling);
-			searchStack.add(pos);
-
-			while (!searchStack.isEmpty()) {
-				final long p = searchStack.popLong();
-				visit(owner, BlockPos.offset(p, 1, 0, 0));
-				visit(owner, BlockPos.offset(p, -1, 0, 0));
-				visit(owner, BlockPos.offset(p, 0, 1, 0));
-				visit(owner, BlockPos.offset(p, 0, -1, 0));
-				visit(owner, BlockPos.offset(p, 0, 0, 1));
-				visit(owner, BlockPos.offset(p, 0, 0, -1));
+		private int find(int search) {
+			while (searchGroups[search] != search) {
+				search = searchGroups[search] = searchGroups[searchGroups[search]];
 			}
+
+			return search;
 		}
 
-		private void visit(U owner, long pos) {
-			if (!visited.contains(pos)) {
+		private void handleSplit(Group owner, int group, int limit) {
+			final int count = groupSize(group, limit);
+
+			if (count == 1) {
+				for (int i = 0; i < limit; i++) {
+					if (find(i) == group && !splitDevices[i].isEmpty()) {
+						final T d = splitDevices[i].get(0);
+						owner.members.remove(d);
+						groups.remove(d);
+
+						changes.add(() -> {
+							owner.owner().remove(d);
+							d.setMultiblock(null);
+						});
+					}
+				}
+			} else if (count > 1) {
+				final Group newOwner = new Group();
+				touch(newOwner);
+				final Object[] moved = new Object[count];
+				int n = 0;
+
+				for (int i = 0; i < limit; i++) {
+					if (find(i) == group) {
+						for (final T d : splitDevices[i]) {
+							owner.members.remove(d);
+							groups.put(d, newOwner);
+							newOwner.members.add(d);
+							moved[n++] = d;
+						}
+					}
+				}
+
+				changes.add(() -> {
+					final U from = owner.owner();
+					final U to = newOwner.owner();
+
+					for (final Object o : moved) {
+						final T d = (T) o;
+						from.remove(d);
+						d.setMultiblock(to);
+						to.add(d);
+					}
+				});
+			}
+		}
+
+		private void visit(Group owner, int search, long pos) {
+			final int prior = visitedBy.get(pos);
+
+			if (prior == UNDETERMINED) {
 				final T d = get(pos);
 
-				if (d != null && d.getMultiblock() == owner) {
-					splitDevices[splitIndex].add(d);
-					searchStack.add(pos);
+				if (d != null && groups.get(d) == owner) {
+					splitDevices[search].add(d);
+					searchStacks[search].push(pos);
+					visitedBy.put(pos, search);
+				} else {
+					visitedBy.put(pos, NOT_MEMBER);
 				}
+			} else if (prior != NOT_MEMBER) {
+				// searches met - join their groups
+				final int a = find(search);
+				final int b = find(prior);
 
-				visited.add(pos);
+				if (a != b) {
+					searchGroups[Math.max(a, b)] = Math.min(a, b);
+				}
 			}
 		}
 	}
@@ -374,23 +651,8 @@ public class MultiBlockManagerImpl<T extends MultiBlockMember<T, U, V>, U extend
 		worldHandler(device.getWorld()).request(device, false);
 	}
 
-	private static final ObjectArrayList<MultiBlockMember> neighbors = new ObjectArrayList<>();
-
-	private static int splitIndex = 0;
-	private static final int[] splits = new int[6];
-	private static final ObjectArrayList<MultiBlockMember>[] splitDevices = new ObjectArrayList[6];
-
-	static {
-		for (int i = 0; i < 6; i++) {
-			splitDevices[i] = new ObjectArrayList<>();
-		}
-	}
-
 	private static final int UNDETERMINED = -1;
-
-	private static final LongOpenHashSet visited = new LongOpenHashSet();
-
-	private static final LongArrayList searchStack = new LongArrayList();
+	private static final int NOT_MEMBER = -2;
 
 	// PERF: if instances are to be held as static final by their creator, why do we need weak references?
 	private static final ObjectArrayList<WeakReference<MultiBlockManagerImpl>> MANAGERS = new ObjectArrayList<>();
@@ -402,21 +664,37 @@ public class MultiBlockManagerImpl<T extends MultiBlockMember<T, U, V>, U extend
 			return;
 		}
 
-		// TODO: make this properly concurrent or simplify it
-		final Object[] elements = TICK_REQUESTS.elements();
-		final int limit = Math.min(elements.length, TICK_REQUESTS.size());
+		final long budget = FluidityConfig.PER_TICK_BUDGET_MILLISECONDS;
+		final long deadline = budget > 0 ? System.nanoTime() + budget * 1_000_000L : Long.MAX_VALUE;
+
+		// copy so that requests made while changes are applied are handled next tick
+		final MultiBlockManagerImpl.WorldHandler[] handlers = TICK_REQUESTS.toArray(new MultiBlockManagerImpl.WorldHandler[TICK_REQUESTS.size()]);
+		TICK_REQUESTS.clear();
 
-		for (int i = 0; i < limit; i++) {
-			final MultiBlockManagerImpl.WorldHandler e = (MultiBlockManagerImpl.WorldHandler) elements[i];
+		if (FluidityConfig.PARALLEL_MULTIBLOCK_WORLDS && handlers.length > 1) {
+			// handlers share no state, and changes are applied below in request order
+			Arrays.stream(handlers).parallel().forEach(h -> h.process(deadline));
 
-			if (e == null) {
-				break;
+			for (final MultiBlockManagerImpl.WorldHandler h : handlers) {
+				h.apply();
+			}
+		} else {
+			for (final MultiBlockManagerImpl.WorldHandler h : handlers) {
+				h.process(deadline);
+				h.apply();
 			}
+		}
 
-			e.process();
+		for (final MultiBlockManagerImpl.WorldHandler h : handlers) {
+			if (!h.requests.isEmpty()) {
+				h.requestTick();
+			}
 		}
+	}
 
-		TICK_REQUESTS.clear();
+	/** True if any world has connection requests waiting for the next tick. */
+	public static boolean hasPendingRequests() {
+		return !TICK_REQUESTS.isEmpty();
 	}
 
 	public static void start(MinecraftServer server) {
@@ -432,4 +710,23 @@ public class MultiBlockManagerImpl<T extends MultiBlockMember<T, U, V>, U extend
 			}
 		}
 	}
+
+	/**
+	 * Drops connection requests that were not processed before the server stopped, so that
+	 * a server started later in the same session does not replay them for unloaded members.
+	 */
+	public static void stop(MinecraftServer server) {
+		TICK_REQUESTS.clear();
+		final Iterator<WeakReference<MultiBlockManagerImpl>> it = MANAGERS.iterator();
+
+		while (it.hasNext()) {
+			final MultiBlockManagerImpl m = it.next().get();
+
+			if (m == null) {
+				it.remove();
+			} else {
+				m.worlds.values().forEach(w -> ((MultiBlockManagerImpl.WorldHandler) w).clearRequests());
+			}
+		}
+	}
 }
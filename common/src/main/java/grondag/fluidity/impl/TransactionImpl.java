@@ -21,14 +21,23 @@
 package grondag.fluidity.impl;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.ConcurrentModificationException;
-import java.util.IdentityHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
 
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
 import org.jetbrains.annotations.ApiStatus.Internal;
 
 import grondag.fluidity.api.transact.Transaction;
+import grondag.fluidity.api.transact.TransactionConflictException;
 import grondag.fluidity.api.transact.TransactionContext;
 import grondag.fluidity.api.transact.TransactionParticipant;
 import grondag.fluidity.api.transact.TransactionParticipant.TransactionDelegate;
@@ -40,13 +49,13 @@ public final class TransactionImpl implements Transaction {
 
 		@Override
 		public <T> void setState(T state) {
-			stateStorage.put(contextDelegate, state);
+			states[contextIndex] = state;
 		}
 
 		@Override
 		@SuppressWarnings("unchecked")
 		public <T> T getState() {
-			return (T) stateStorage.get(contextDelegate);
+			return (T) states[contextIndex];
 		}
 
 		@Override
@@ -55,14 +64,30 @@ public final class TransactionImpl implements Transaction {
 		}
 	}
 
+	/** Above this many participants, lookups use a hash index instead of a linear scan. */
+	private static final int LINEAR_SEARCH_LIMIT = 32;
+
 	private final ContextImpl context = new ContextImpl();
 	private boolean isOpen = true;
 	private boolean isCommited = false;
-	private final IdentityHashMap<TransactionDelegate, Consumer<TransactionContext>> participants = new IdentityHashMap<>();
-	private final IdentityHashMap<TransactionDelegate, Object> stateStorage = new IdentityHashMap<>();
-	private TransactionDelegate contextDelegate;
 
-	private TransactionImpl() { }
+	// Participant journal as parallel arrays, in order of enlistment. Retained and reused
+	// with the transaction instance so that steady-state use does not allocate.
+	private TransactionDelegate[] delegates = new TransactionDelegate[8];
+	private Object[] rollbacks = new Object[8];
+	private Object[] states = new Object[8];
+	private int participantCount = 0;
+
+	/** Maps delegates to journal index - only populated when participant count exceeds {@link #LINEAR_SEARCH_LIMIT}. */
+	private Reference2IntOpenHashMap<TransactionDelegate> delegateIndex;
+	private boolean isIndexed = false;
+
+	private int contextIndex = -1;
+	private final TransactionStack stack;
+
+	private TransactionImpl(TransactionStack stack) {
+		this.stack = stack;
+	}
 
 	@Override
 	public void close() {
@@ -88,8 +113,17 @@ public final class TransactionImpl implements Transaction {
 
 	private void handleClosing() {
 		notifyParticipantsOfClose();
+		final boolean isCommited = this.isCommited;
+		// taken before pop because the shared stack may be used by another thread once released
+		final RootCloseListener[] rootCloseListeners = stack.isCurrentRoot() ? stack.takeRootCloseListeners() : null;
 		clear();
-		popCurrenTransaction();
+		stack.pop();
+
+		if (rootCloseListeners != null) {
+			for (final RootCloseListener listener : rootCloseListeners) {
+				listener.onRootClose(isCommited);
+			}
+		}
 	}
 
 	private void validate() {
@@ -97,15 +131,72 @@ public final class TransactionImpl implements Transaction {
 			throw new IllegalStateException("Encountered transaction operation for closed transaction.");
 		}
 
-		if (STACK.get(stackPointer) != this) {
+		if (stack.current() != this) {
 			throw new IndexOutOfBoundsException("Transaction operations must apply to most recent open transaction.");
 		}
 
-		if (!innerLock.isHeldByCurrentThread()) {
+		if (stack.thread != Thread.currentThread()) {
 			throw new ConcurrentModificationException("Attempt to modify transaction status from foreign thread");
 		}
 	}
 
+	private int indexOf(TransactionDelegate delegate) {
+		if (isIndexed) {
+			return delegateIndex.getInt(delegate);
+		}
+
+		final TransactionDelegate[] delegates = this.delegates;
+		final int limit = participantCount;
+
+		for (int i = 0; i < limit; ++i) {
+			if (delegates[i] == delegate) {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	private int addParticipant(TransactionDelegate delegate, Object rollback, Object state) {
+		final int index = participantCount++;
+
+		if (index == delegates.length) {
+			final int newSize = index * 2;
+			delegates = Arrays.copyOf(delegates, newSize);
+			rollbacks = Arrays.copyOf(rollbacks, newSize);
+			states = Arrays.copyOf(states, newSize);
+		}
+
+		delegates[index] = delegate;
+		rollbacks[index] = rollback;
+		states[index] = state;
+
+		if (isIndexed) {
+			delegateIndex.put(delegate, index);
+		} else if (participantCount > LINEAR_SEARCH_LIMIT) {
+			buildIndex();
+		}
+
+		return index;
+	}
+
+	private void buildIndex() {
+		if (delegateIndex == null) {
+			delegateIndex = new Reference2IntOpenHashMap<>();
+			delegateIndex.defaultReturnValue(-1);
+		} else {
+			delegateIndex.clear();
+		}
+
+		final int limit = participantCount;
+
+		for (int i = 0; i < limit; ++i) {
+			delegateIndex.put(delegates[i], i);
+		}
+
+		isIndexed = true;
+	}
+
 	/**
 	 * Must be called on commit before participants are notified. Does nothing for root transaction.
 	 *
@@ -116,48 +207,71 @@ public final class TransactionImpl implements Transaction {
 	 * they do not already have a delegate in the outer transaction.
 	 */
 	private void elevateLocalDelegates() {
-		if (isCurrentRoot()) {
+		if (stack.isCurrentRoot()) {
 			// no outer transaction will remain open to accept delegates - nothing to do
 			return;
 		}
 
-		final var prior = STACK.get(stackPointer - 1);
+		final var prior = stack.prior();
+		final int limit = participantCount;
+		int retained = 0;
 
-		final var it = participants.entrySet().iterator();
+		for (int i = 0; i < limit; ++i) {
+			final var delegate = delegates[i];
 
-		while (it.hasNext()) {
-			final var entry = it.next();
-			final var delegate = entry.getKey();
-
-			if (prior.participants.containsKey(delegate)) {
+			if (prior.indexOf(delegate) != -1) {
 				// participant has a checkpoint in enclosing transaction that must
-				// by definition precede this one - need to move it
-				continue;
+				// by definition precede this one - need to keep it here
+				if (retained != i) {
+					delegates[retained] = delegate;
+					rollbacks[retained] = rollbacks[i];
+					states[retained] = states[i];
+				}
+
+				++retained;
+			} else {
+				prior.addParticipant(delegate, rollbacks[i], states[i]);
 			}
+		}
 
-			prior.participants.put(delegate, entry.getValue());
-			final var state = stateStorage.get(delegate);
-
-			if (state != null) {
-				prior.stateStorage.put(delegate, state);
-			}
+		Arrays.fill(delegates, retained, limit, null);
+		Arrays.fill(rollbacks, retained, limit, null);
+		Arrays.fill(states, retained, limit, null);
+		participantCount = retained;
 
-			it.remove();
-			stateStorage.remove(delegate);
+		if (isIndexed) {
+			buildIndex();
 		}
 	}
 
+	@SuppressWarnings("unchecked")
 	private void notifyParticipantsOfClose() {
-		participants.forEach((c, r) -> {
-			contextDelegate = c;
-			r.accept(context);
-		});
+		final int limit = participantCount;
+
+		for (int i = 0; i < limit; ++i) {
+			final var rollback = (Consumer<TransactionContext>) rollbacks[i];
+
+			// null if prepareRollback threw during enlistment
+			if (rollback != null) {
+				contextIndex = i;
+				rollback.accept(context);
+			}
+		}
 	}
 
 	private void clear() {
-		participants.clear();
-		stateStorage.clear();
-		contextDelegate = null;
+		final int limit = participantCount;
+		Arrays.fill(delegates, 0, limit, null);
+		Arrays.fill(rollbacks, 0, limit, null);
+		Arrays.fill(states, 0, limit, null);
+		participantCount = 0;
+
+		if (isIndexed) {
+			delegateIndex.clear();
+			isIndexed = false;
+		}
+
+		contextIndex = -1;
 		isOpen = false;
 		isCommited = false;
 	}
@@ -165,23 +279,65 @@ public final class TransactionImpl implements Transaction {
 	@Override
 	public <T extends TransactionParticipant> T enlistSelf(T container) {
 		validate();
-		final TransactionDelegate d = container.getTransactionDelegate();
-
-		if (!participants.containsKey(d)) {
-			contextDelegate = d;
-			participants.put(d, defaultRollback(d.prepareRollback(context)));
-			contextDelegate = null;
-		}
-
+		enlistDelegate(container.getTransactionDelegate());
 		return container;
 	}
 
-	private Consumer<TransactionContext> defaultRollback(Consumer<TransactionContext> consumer) {
-		return consumer;
+	private void enlistDelegate(TransactionDelegate d) {
+		if (indexOf(d) == -1) {
+			if (stack.isPerThread) {
+				stack.claim(d);
+			}
+
+			// slot is reserved first so that state can be saved during prepareRollback
+			final int index = addParticipant(d, null, null);
+			final int priorIndex = contextIndex;
+			contextIndex = index;
+			final Consumer<TransactionContext> rollback = d.prepareRollback(context);
+			// arrays may have grown if prepareRollback enlisted other delegates
+			rollbacks[index] = rollback;
+			contextIndex = priorIndex;
+		}
 	}
 
 	///// STATIC MEMBERS FOLLOW /////
 
+	/**
+	 * Receives notice when the outermost open transaction closes.
+	 */
+	@FunctionalInterface
+	public interface RootCloseListener {
+		/**
+		 * Called once after every participant of the outermost transaction, and of any transaction
+		 * nested in it, has been notified of close. The transaction is no longer current when called.
+		 *
+		 * @param isCommited true if the outermost transaction was committed
+		 */
+		void onRootClose(boolean isCommited);
+	}
+
+	/**
+	 * Registers a listener to be called when the outermost transaction open on this thread closes.
+	 * Listeners registered while participants are being notified of close, for example by reversals
+	 * applied in rollback handlers, are still called. Listeners are not de-duplicated.
+	 *
+	 * <p>For state that must not be published until all changes made by participants during
+	 * close, including those of rollback handlers, are known.
+	 *
+	 * @param listener listener to be called
+	 * @return true if a transaction is open and the listener will be called
+	 */
+	public static boolean notifyOnRootClose(RootCloseListener listener) {
+		final TransactionImpl tx = current();
+
+		if (tx == null || tx.stack.thread != Thread.currentThread()) {
+			return false;
+		}
+
+		tx.stack.rootCloseListeners.add(listener);
+		return true;
+	}
+
 	public static void setServerThread(Thread thread) {
 		serverThread = thread;
 	}
@@ -197,53 +353,218 @@ public final class TransactionImpl implements Transaction {
 	 */
 	static final ReentrantLock outerLock = new ReentrantLock();
 
-	private static final ArrayList<TransactionImpl> STACK = new ArrayList<>();
-	private static int stackPointer = -1;
+	/**
+	 * Open transactions for one thread, or for all threads when transactions are serialized.
+	 * In per-thread mode, also tracks the delegate stripes claimed by the root transaction.
+	 */
+	private static final class TransactionStack {
+		private final ArrayList<TransactionImpl> transactions = new ArrayList<>();
+		private final boolean isPerThread;
+		private final IntArrayList claimedStripes = new IntArrayList();
+		private final ObjectArrayList<RootCloseListener> rootCloseListeners = new ObjectArrayList<>();
+		private int pointer = -1;
+		private Thread thread;
+
+		/**
+		 * Age of the current root transaction, lower is older. Read by other threads to resolve conflicts.
+		 */
+		private volatile long rootSequence;
+
+		private TransactionStack(boolean isPerThread) {
+			this.isPerThread = isPerThread;
+		}
 
-	public static TransactionImpl open() {
-		// non-server threads must take turns
-		if (Thread.currentThread() != serverThread) {
-			outerLock.lock();
+		private TransactionImpl push() {
+			final TransactionImpl result;
+
+			if (transactions.size() > ++pointer) {
+				result = transactions.get(pointer);
+				result.isOpen = true;
+			} else {
+				assert transactions.size() == pointer;
+				result = new TransactionImpl(this);
+				transactions.add(result);
+			}
+
+			return result;
 		}
 
-		innerLock.lock();
+		private void pop() {
+			final boolean root = --pointer == -1;
 
-		final TransactionImpl result;
+			if (isPerThread) {
+				if (root) {
+					releaseClaims();
+					thread = null;
+					OPEN_PER_THREAD_ROOTS.decrementAndGet();
+				}
 
-		if (STACK.size() > ++stackPointer) {
-			result = STACK.get(stackPointer);
-			result.isOpen = true;
-		} else {
-			assert STACK.size() == stackPointer;
-			result = new TransactionImpl();
-			STACK.add(result);
+				return;
+			}
+
+			if (root) {
+				thread = null;
+			}
+
+			innerLock.unlock();
+
+			// non-server threads have an additional lock we must release.
+			if (Thread.currentThread() != serverThread) {
+				outerLock.unlock();
+
+				if (root) {
+					// Give other threads (like the server thread) that want to do transactions a
+					// chance to jump in.
+					Thread.yield();
+				}
+			}
 		}
 
-		return result;
-	}
+		private TransactionImpl current() {
+			return pointer == -1 ? null : transactions.get(pointer);
+		}
 
-	private static void popCurrenTransaction() {
-		final boolean root = --stackPointer == -1;
+		private TransactionImpl prior() {
+			return transactions.get(pointer - 1);
+		}
 
-		innerLock.unlock();
+		private boolean isCurrentRoot() {
+			return pointer == 0;
+		}
 
-		// non-server threads have an additional lock we must release.
-		if (Thread.currentThread() != serverThread) {
-			outerLock.unlock();
+		/**
+		 * Claims the stripe for the given delegate on behalf of the root transaction, using
+		 * wait-die to resolve conflicts: an older root waits for a younger owner to close,
+		 * a younger root aborts. The server thread is always treated as oldest.
+		 */
+		private void claim(TransactionDelegate delegate) {
+			final int stripe = stripeOf(delegate);
+			int spins = 0;
+
+			while (true) {
+				final TransactionStack owner = STRIPE_OWNERS.get(stripe);
+
+				if (owner == this) {
+					return;
+				}
+
+				if (owner == null) {
+					if (STRIPE_OWNERS.compareAndSet(stripe, null, this)) {
+						claimedStripes.add(stripe);
+						return;
+					}
+
+					continue;
+				}
+
+				final long ownerSequence = owner.rootSequence;
+
+				if (rootSequence > ownerSequence) {
+					throw new TransactionConflictException("Transaction participant is enlisted in an older transaction on another thread");
+				}
+
+				if (++spins < 64) {
+					Thread.onSpinWait();
+				} else {
+					LockSupport.parkNanos(1000);
+				}
+			}
+		}
 
-			if (root) {
-				// Give other threads (like the server thread) that want to do transactions a
-				// chance to jump in.
-				Thread.yield();
+		private RootCloseListener[] takeRootCloseListeners() {
+			if (rootCloseListeners.isEmpty()) {
+				return null;
+			}
+
+			final RootCloseListener[] result = rootCloseListeners.toArray(new RootCloseListener[rootCloseListeners.size()]);
+			rootCloseListeners.clear();
+			return result;
+		}
+
+		private void releaseClaims() {
+			final int limit = claimedStripes.size();
+
+			for (int i = 0; i < limit; ++i) {
+				STRIPE_OWNERS.set(claimedStripes.getInt(i), null);
 			}
+
+			claimedStripes.clear();
+		}
+	}
+
+	private static final TransactionStack SHARED_STACK = new TransactionStack(false);
+	private static final ThreadLocal<TransactionStack> THREAD_STACK = ThreadLocal.withInitial(() -> new TransactionStack(true));
+
+	private static final int STRIPE_COUNT = 1024;
+	private static final int STRIPE_MASK = STRIPE_COUNT - 1;
+	private static final AtomicReferenceArray<TransactionStack> STRIPE_OWNERS = new AtomicReferenceArray<>(STRIPE_COUNT);
+
+	/** Root transaction age for wait-die conflict resolution. Zero is reserved for the server thread. */
+	private static final AtomicLong ROOT_SEQUENCE = new AtomicLong();
+	private static final AtomicInteger OPEN_PER_THREAD_ROOTS = new AtomicInteger();
+
+	private static volatile boolean perThread = false;
+
+	/**
+	 * Selects how transactions on different threads interact. When {@code false} (the default)
+	 * all transactions share one stack and threads take turns, as described in {@link Transaction#open()}.
+	 *
+	 * <p>When {@code true}, each thread has its own transaction stack and transactions on different
+	 * threads run concurrently. Delegates are claimed (by striped identity) by the root transaction
+	 * that first enlists them and released when that root closes. If a delegate is already claimed
+	 * by another thread, the older root transaction waits and the younger one fails with a
+	 * {@link TransactionConflictException} and should be retried by the caller. Transactions
+	 * on the server thread are always considered older and so never fail.
+	 *
+	 * <p>Must only be called when no transactions are open.
+	 *
+	 * @param isPerThread {@code true} to give each thread its own transaction stack
+	 */
+	public static void setPerThread(boolean isPerThread) {
+		if (SHARED_STACK.pointer != -1 || OPEN_PER_THREAD_ROOTS.get() != 0) {
+			throw new IllegalStateException("Transaction mode cannot be changed while transactions are open");
 		}
+
+		perThread = isPerThread;
 	}
 
-	private static boolean isCurrentRoot() {
-		return stackPointer == 0;
+	/**
+	 * Stripe claimed for the delegate in per-thread mode. Delegates in the same stripe cannot
+	 * be enlisted in transactions on different threads at the same time.
+	 */
+	public static int stripeOf(TransactionDelegate delegate) {
+		return HashCommon.mix(System.identityHashCode(delegate)) & STRIPE_MASK;
+	}
+
+	public static boolean isPerThread() {
+		return perThread;
+	}
+
+	public static TransactionImpl open() {
+		if (perThread) {
+			final TransactionStack stack = THREAD_STACK.get();
+
+			if (stack.pointer == -1) {
+				final Thread thread = Thread.currentThread();
+				stack.thread = thread;
+				stack.rootSequence = thread == serverThread ? 0 : ROOT_SEQUENCE.incrementAndGet();
+				OPEN_PER_THREAD_ROOTS.incrementAndGet();
+			}
+
+			return stack.push();
+		}
+
+		// non-server threads must take turns
+		if (Thread.currentThread() != serverThread) {
+			outerLock.lock();
+		}
+
+		innerLock.lock();
+		SHARED_STACK.thread = Thread.currentThread();
+		return SHARED_STACK.push();
 	}
 
 	public static TransactionImpl current() {
-		return stackPointer == -1 ? null : STACK.get(stackPointer);
+		return perThread ? THREAD_STACK.get().current() : SHARED_STACK.current();
 	}
 }
@@ -21,19 +21,25 @@
 package grondag.fluidity.impl.article;
 
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
 
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
+import it.unimi.dsi.fastutil.HashCommon;
 import org.jetbrains.annotations.ApiStatus.Internal;
 
 import net.minecraft.nbt.CompoundTag;
 
 import grondag.fluidity.api.article.Article;
 import grondag.fluidity.api.article.ArticleType;
-import grondag.fluidity.impl.Fluidity;
 
+/**
+ * Interns article instances so that each distinct type/resource/tag combination
+ * has a single instance.
+ *
+ * <p>Untagged articles of types with raw registry ids are found by direct array lookup.
+ * Other untagged articles use a concurrent map. Tagged articles use a striped open-addressing
+ * table that is read without locks and compares tags in place, so the tag is only copied
+ * when a new article is created.
+ */
 @Internal
 public class ArticleCache {
 	static class ArticleKey {
@@ -63,49 +69,102 @@ public class ArticleCache {
 		}
 	}
 
-	static class FatArticleKey {
-		private ArticleType<?> type;
-		private Object resource;
-		private int hashCode;
-		public CompoundTag tag;
+	/**
+	 * One stripe of the tagged article table. Readers probe the current table without locking.
+	 * Entries are only ever added to a published table (or the whole table is replaced) and article
+	 * fields are final, so an unlocked reader sees either a complete entry or a miss. Misses are
+	 * confirmed while holding the stripe lock before a new article is created.
+	 */
+	private static class TaggedStripe {
+		private static final int MAX_SIZE = 0x10000 / TAGGED_STRIPE_COUNT;
+
+		private volatile ArticleImpl<?>[] table = new ArticleImpl<?>[64];
+		private int size = 0;
+
+		ArticleImpl<?> find(ArticleType<?> type, Object resource, CompoundTag tag, int hash) {
+			final ArticleImpl<?>[] table = this.table;
+			final int mask = table.length - 1;
+			int i = HashCommon.mix(hash) & mask;
+			ArticleImpl<?> a;
+
+			while ((a = table[i]) != null) {
+				if (a.hashCode == hash && a.resource == resource && a.type == type && tag.equals(a.tag)) {
+					return a;
+				}
 
-		FatArticleKey set (ArticleType<?> type, Object resource, CompoundTag tag) {
-			this.type = type;
-			this.resource = resource;
-			this.tag = tag.copy();
-			hashCode = type.hashCode() ^ resource.hashCode() ^ tag.hashCode();
-			return this;
+				i = (i + 1) & mask;
+			}
+
+			return null;
 		}
 
-		@Override
-		public boolean equals(Object obj) {
-			if (obj instanceof final FatArticleKey other) {
-				return type == other.type && resource == other.resource && tag.equals(other.tag);
-			} else {
-				return false;
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		synchronized ArticleImpl<?> findOrCreate(ArticleType type, Object resource, CompoundTag tag, int hash) {
+			ArticleImpl<?> result = find(type, resource, tag, hash);
+
+			if (result != null) {
+				return result;
 			}
+
+			MISSES.increment();
+
+			if (size >= MAX_SIZE) {
+				// Evict the whole stripe. Existing instances remain valid, but lookups will
+				// produce new (equal) instances until the stripe is re-populated.
+				EVICTIONS.add(size);
+				table = new ArticleImpl<?>[table.length];
+				size = 0;
+			} else if (size >= table.length >> 1) {
+				resize();
+			}
+
+			result = new ArticleImpl(type, resource, tag.copy());
+			insert(table, result);
+			++size;
+			return result;
 		}
 
-		@Override
-		public int hashCode() {
-			return hashCode;
+		private void resize() {
+			final ArticleImpl<?>[] oldTable = table;
+			final ArticleImpl<?>[] newTable = new ArticleImpl<?>[oldTable.length << 1];
+
+			for (final ArticleImpl<?> a : oldTable) {
+				if (a != null) {
+					insert(newTable, a);
+				}
+			}
+
+			table = newTable;
+		}
+
+		private static void insert(ArticleImpl<?>[] table, ArticleImpl<?> article) {
+			final int mask = table.length - 1;
+			int i = HashCommon.mix(article.hashCode) & mask;
+
+			while (table[i] != null) {
+				i = (i + 1) & mask;
+			}
+
+			table[i] = article;
 		}
 	}
 
+	private static final int TAGGED_STRIPE_COUNT = 16;
+	private static final int TAGGED_STRIPE_SHIFT = Integer.SIZE - Integer.numberOfTrailingZeros(TAGGED_STRIPE_COUNT);
+
 	private static final ThreadLocal<ArticleKey> KEYS = ThreadLocal.withInitial(ArticleKey::new);
-	private static final ThreadLocal<FatArticleKey> FAT_KEYS = ThreadLocal.withInitial(FatArticleKey::new);
 	private static final ConcurrentHashMap<ArticleKey, ArticleImpl<?>> UNIQUES = new ConcurrentHashMap<>();
+	private static final TaggedStripe[] TAGGED = new TaggedStripe[TAGGED_STRIPE_COUNT];
 
-	@SuppressWarnings({ "rawtypes", "unchecked" })
-	private static final LoadingCache<FatArticleKey, ArticleImpl<?>> TAGGED = CacheBuilder
-		.newBuilder()
-		.maximumSize(0x10000)
-		.build(CacheLoader.from(k -> {
-			FAT_KEYS.set(new FatArticleKey());
-			return new ArticleImpl(k.type, k.resource, k.tag);
-		}));
+	static {
+		for (int i = 0; i < TAGGED_STRIPE_COUNT; ++i) {
+			TAGGED[i] = new TaggedStripe();
+		}
+	}
 
-	private static boolean warnOnTaggedFailure = true;
+	private static final LongAdder HITS = new LongAdder();
+	private static final LongAdder MISSES = new LongAdder();
+	private static final LongAdder EVICTIONS = new LongAdder();
 
 	@SuppressWarnings({ "unchecked", "rawtypes" })
 	static Article getArticle(ArticleType type, Object resource, CompoundTag tag) {
@@ -114,24 +173,73 @@ public class ArticleCache {
 		}
 
 		if (tag == null) {
-			final ArticleKey key = KEYS.get().set(type, resource);
-			return UNIQUES.computeIfAbsent(key, k -> {
-				KEYS.set(new ArticleKey());
-				return new ArticleImpl(k.type, k.resource, null);
-			});
-		} else {
-			final FatArticleKey key = FAT_KEYS.get().set(type, resource, tag);
-
-			try {
-				return TAGGED.get(key);
-			} catch (final ExecutionException e) {
-				if (warnOnTaggedFailure) {
-					Fluidity.LOG.warn("Cache load failure for tagged article.  Subsequent warnings are suppressed.", e);
-					warnOnTaggedFailure = false;
+			final ArticleTypeImpl typeImpl = (ArticleTypeImpl) type;
+			final int rawId = typeImpl.rawId(resource);
+
+			if (rawId >= 0) {
+				final ArticleImpl<?> result = typeImpl.articleByRawId(rawId);
+
+				// raw ids can be remapped (on client join, for example) so must confirm resource
+				if (result != null && result.resource == resource) {
+					HITS.increment();
+					return result;
 				}
 
-				return new ArticleImpl(type, resource, tag);
+				final ArticleImpl<?> interned = getUntagged(type, resource);
+				typeImpl.setArticleByRawId(rawId, interned);
+				return interned;
+			}
+
+			return getUntagged(type, resource);
+		} else {
+			final int hash = resource.hashCode() + tag.hashCode();
+			final TaggedStripe stripe = TAGGED[HashCommon.mix(hash) >>> TAGGED_STRIPE_SHIFT];
+			final ArticleImpl<?> result = stripe.find(type, resource, tag, hash);
+
+			if (result != null) {
+				HITS.increment();
+				return result;
 			}
+
+			return stripe.findOrCreate(type, resource, tag, hash);
 		}
 	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static ArticleImpl<?> getUntagged(ArticleType type, Object resource) {
+		final ArticleKey key = KEYS.get().set(type, resource);
+		final ArticleImpl<?> result = UNIQUES.get(key);
+
+		if (result != null) {
+			HITS.increment();
+			return result;
+		}
+
+		return UNIQUES.computeIfAbsent(key, k -> {
+			MISSES.increment();
+			KEYS.set(new ArticleKey());
+			return new ArticleImpl(k.type, k.resource, null);
+		});
+	}
+
+	/**
+	 * @return count of lookups that found an existing article
+	 */
+	public static long hitCount() {
+		return HITS.sum();
+	}
+
+	/**
+	 * @return count of lookups that created a new article
+	 */
+	public static long missCount() {
+		return MISSES.sum();
+	}
+
+	/**
+	 * @return count of tagged articles dropped from the cache to bound memory use
+	 */
+	public static long evictionCount() {
+		return EVICTIONS.sum();
+	}
 }
@@ -20,6 +20,8 @@
 
 package grondag.fluidity.impl.article;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.jetbrains.annotations.ApiStatus.Internal;
 import org.jetbrains.annotations.Nullable;
 
@@ -41,9 +43,11 @@ public class ArticleImpl<T> implements Article {
 	final T resource;
 	final CompoundTag tag;
 	final int hashCode;
+	final int id;
 	String translationKey;
 
 	ArticleImpl(ArticleType<T> type, T resource, @Nullable CompoundTag tag) {
+		id = NEXT_ID.getAndIncrement();
 		this.type = (ArticleTypeImpl<T>) type;
 		this.resource = resource;
 		this.tag = tag;
@@ -68,6 +72,11 @@ public class ArticleImpl<T> implements Article {
 		return resource;
 	}
 
+	@Override
+	public final int id() {
+		return id;
+	}
+
 	@Override
 	public final boolean hasTag() {
 		return tag != null;
@@ -101,6 +110,8 @@ public class ArticleImpl<T> implements Article {
 		return hashCode;
 	}
 
+	private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
 	public static final ArticleImpl<Void> NOTHING = new ArticleImpl<>(ArticleType.NOTHING, null, null);
 
 	@Override
@@ -20,12 +20,15 @@
 
 package grondag.fluidity.impl.article;
 
+import java.util.Arrays;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
 
 import com.google.common.base.Preconditions;
 import org.jetbrains.annotations.ApiStatus.Internal;
+import org.jetbrains.annotations.Nullable;
 
 import net.minecraft.core.Registry;
 import net.minecraft.nbt.ByteTag;
@@ -55,6 +58,10 @@ public class ArticleTypeImpl<T> implements ArticleType<T> {
 	final Predicate<? super StoredArticleView> viewPredicate;
 	final Predicate<Article> articlePredicate;
 	final Predicate<ArticleType<?>> typePredicate;
+	final ToIntFunction<T> rawIdFunction;
+
+	/** Untagged articles indexed by raw registry id. Null if the type has no raw ids. */
+	private volatile ArticleImpl<?>[] articlesByRawId;
 
 	ArticleTypeImpl(BuilderImpl<T> builder) {
 		this.clazz = builder.clazz;
@@ -64,6 +71,8 @@ public class ArticleTypeImpl<T> implements ArticleType<T> {
 		this.tagReader = builder.tagReader;
 		this.tagWriter = builder.tagWriter;
 		this.keyFunction = builder.keyFunction;
+		this.rawIdFunction = builder.rawIdFunction;
+		articlesByRawId = rawIdFunction == null ? null : new ArticleImpl<?>[256];
 		this.isFluid = clazz == Fluid.class;
 		this.isItem = clazz == Item.class;
 		viewPredicate = v -> v.article().type() == this;
@@ -116,6 +125,39 @@ public class ArticleTypeImpl<T> implements ArticleType<T> {
 		return typePredicate;
 	}
 
+	/**
+	 * Raw registry id of the given resource, or -1 if this type does not have raw ids.
+	 */
+	int rawId(T resource) {
+		return rawIdFunction == null ? -1 : rawIdFunction.applyAsInt(resource);
+	}
+
+	@Nullable ArticleImpl<?> articleByRawId(int rawId) {
+		final ArticleImpl<?>[] articles = articlesByRawId;
+		return rawId < articles.length ? articles[rawId] : null;
+	}
+
+	/**
+	 * Articles are immutable (with final fields) and so can be published with a racy write.
+	 * Growth is synchronized so that concurrent writers can't drop each other's entries.
+	 */
+	void setArticleByRawId(int rawId, ArticleImpl<?> article) {
+		ArticleImpl<?>[] articles = articlesByRawId;
+
+		if (rawId >= articles.length) {
+			synchronized (this) {
+				articles = articlesByRawId;
+
+				if (rawId >= articles.length) {
+					articles = Arrays.copyOf(articles, Math.max(rawId + 1, articles.length * 2));
+					articlesByRawId = articles;
+				}
+			}
+		}
+
+		articles[rawId] = article;
+	}
+
 	private static class BuilderImpl<U> implements Builder<U> {
 		private final Class<U> clazz;
 		private boolean isBulk = false;
@@ -124,6 +166,7 @@ public class ArticleTypeImpl<T> implements ArticleType<T> {
 		private Function<U, Tag> tagWriter;
 		private Function<Tag, U> tagReader;
 		private Function<U, String> keyFunction;
+		private ToIntFunction<U> rawIdFunction;
 
 		BuilderImpl(Class<U> clazz) {
 			this.clazz = clazz;
@@ -173,10 +216,20 @@ public class ArticleTypeImpl<T> implements ArticleType<T> {
 			this.keyFunction = keyFunction;
 			return this;
 		}
+
+		/**
+		 * For types backed by a game registry. Enables direct lookup of untagged articles.
+		 * Ids must be non-negative and reasonably dense.
+		 */
+		BuilderImpl<U> rawIdFunction(ToIntFunction<U> rawIdFunction) {
+			this.rawIdFunction = rawIdFunction;
+			return this;
+		}
 	}
 
 	public static final ArticleType<Item> ITEM = ArticleTypeRegistryImpl.INSTANCE.add("fluidity:item",
 			builder(Item.class)
+			.rawIdFunction(Registry.ITEM::getId)
 			.bulk(false)
 			.resourceTagWriter(r -> StringTag.valueOf(Registry.ITEM.getKey(r).toString()))
 			.resourceTagReader(t -> Registry.ITEM.get(new ResourceLocation(t.getAsString())))
@@ -186,6 +239,7 @@ public class ArticleTypeImpl<T> implements ArticleType<T> {
 			.build());
 
 	public static final ArticleType<Fluid> FLUID = ArticleTypeRegistryImpl.INSTANCE.add("fluidity:fluid", builder(Fluid.class)
+			.rawIdFunction(Registry.FLUID::getId)
 			.bulk(true)
 			.resourceTagWriter(r -> StringTag.valueOf(Registry.FLUID.getKey(r).toString()))
 			.resourceTagReader(t -> Registry.FLUID.get(new ResourceLocation(t.getAsString())))
@@ -20,16 +20,21 @@
 
 package grondag.fluidity.wip.base.transport;
 
+import java.util.Comparator;
 import java.util.function.Function;
+import java.util.function.Predicate;
 
+import com.google.common.base.Preconditions;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
 
+import grondag.fluidity.api.article.Article;
 import grondag.fluidity.api.device.DeviceComponentAccess;
 import grondag.fluidity.api.device.DeviceComponentType;
+import grondag.fluidity.api.fraction.Fraction;
 import grondag.fluidity.base.storage.helper.ListenerSet;
-import grondag.fluidity.impl.Fluidity;
 import grondag.fluidity.wip.api.transport.Carrier;
 import grondag.fluidity.wip.api.transport.CarrierListener;
 import grondag.fluidity.wip.api.transport.CarrierNode;
@@ -40,8 +45,25 @@ public abstract class AggregateCarrier<T extends CarrierCostFunction> implements
 	protected final ListenerSet<CarrierListener> listeners = new ListenerSet<>(this::sendFirstListenerUpdate, this::sendLastListenerUpdate, this::onListenersEmpty);
 	protected final Long2ObjectOpenHashMap<CarrierSession> nodeMap = new Long2ObjectOpenHashMap<>();
 	protected final ObjectArrayList<CarrierSession> nodeList = new ObjectArrayList<>();
+
+	/** Created on first supplier or consumer lookup so that carriers never searched don't track storage. */
+	protected CarrierRoutingIndex routes = null;
+
+	protected BroadcastDistribution broadcastDistribution = BroadcastDistribution.cheapestFirst();
 	protected final ObjectOpenHashSet<SubCarrier<T>> carriers = new ObjectOpenHashSet<>();
 
+	/** Links between sub-carriers. Transfers are routed only when at least one link exists. */
+	protected final CarrierTopology<SubCarrier<T>> topology = new CarrierTopology<>();
+	/** Sub-carrier of each attached node, by node address. */
+	protected final Long2ObjectOpenHashMap<SubCarrier<T>> nodeCarriers = new Long2ObjectOpenHashMap<>();
+	protected final Object2ObjectOpenHashMap<SubCarrier<T>, RouteOrder> routeOrders = new Object2ObjectOpenHashMap<>();
+	protected final ObjectArrayList<SubCarrier<T>> path = new ObjectArrayList<>();
+	/** Incremented when nodes attach or detach so that cached node orders are rebuilt. */
+	protected int nodeVersion = 0;
+	/** Routes from the requesting node during a supplier or consumer lookup. */
+	protected CarrierTopology.PathTree<SubCarrier<T>> lookupTree = null;
+	protected final Predicate<CarrierNode> reachableFilter = this::isReachable;
+
 	protected final CarrierType carrierType;
 
 	public AggregateCarrier(CarrierType carrierType) {
@@ -60,7 +82,186 @@ public abstract class AggregateCarrier<T extends CarrierCostFunction> implements
 			carriers.remove(carrier);
 			carrier.stopListening(this, true);
 			carrier.setParent(null);
+			topology.remove(carrier);
+			routeOrders.remove(carrier);
+		}
+	}
+
+	/**
+	 * Links two sub-carriers of this carrier, or changes the cost of an existing link.
+	 * Once any link exists, transfers are limited to nodes that can be reached through links
+	 * and are limited by the cost function of every sub-carrier on the route.
+	 *
+	 * @param a sub-carrier at one end
+	 * @param b sub-carrier at the other end
+	 * @param cost cost of moving articles across the link, must be >= 0. Routes with lower total cost are preferred
+	 */
+	public void link(SubCarrier<T> a, SubCarrier<T> b, double cost) {
+		Preconditions.checkArgument(carriers.contains(a) && carriers.contains(b), "Linked carriers must belong to the aggregate carrier");
+		topology.link(a, b, cost);
+	}
+
+	public void unlink(SubCarrier<T> a, SubCarrier<T> b) {
+		topology.unlink(a, b);
+	}
+
+	/** True if at least one link exists, so transfers follow routes. */
+	public boolean isRouted() {
+		return !topology.isEmpty();
+	}
+
+	/**
+	 * Cost of the cheapest route between two nodes.
+	 *
+	 * @return zero if not routed or both nodes are on the same sub-carrier,
+	 * {@link Double#POSITIVE_INFINITY} if either node is not attached or they are not connected
+	 */
+	public double routeCost(CarrierNode from, CarrierNode to) {
+		if (!isRouted()) {
+			return 0;
+		}
+
+		final SubCarrier<T> a = nodeCarriers.get(from.nodeAddress());
+		final SubCarrier<T> b = nodeCarriers.get(to.nodeAddress());
+		return a == null || b == null ? Double.POSITIVE_INFINITY : topology.cost(a, b);
+	}
+
+	/**
+	 * Nodes that can be reached from the given node, including the node itself, in order of route cost.
+	 * Cached until links or attached nodes change. Not a copy - callers must not modify the result.
+	 *
+	 * @param from node at start of route
+	 * @return reachable nodes, cheapest first
+	 */
+	public ObjectArrayList<CarrierSession> nodesByRouteCost(CarrierNode from) {
+		final SubCarrier<T> source = nodeCarriers.get(from.nodeAddress());
+
+		if (source == null) {
+			return EMPTY_ORDER;
+		}
+
+		final CarrierTopology.PathTree<SubCarrier<T>> tree = topology.tree(source);
+		RouteOrder order = routeOrders.get(source);
+
+		if (order == null) {
+			order = new RouteOrder();
+			routeOrders.put(source, order);
+		}
+
+		if (order.tree != tree || order.nodeVersion != nodeVersion) {
+			order.tree = tree;
+			order.nodeVersion = nodeVersion;
+			order.nodes.clear();
+			final int limit = nodeList.size();
+
+			for (int i = 0; i < limit; ++i) {
+				final CarrierSession node = nodeList.get(i);
+
+				if (tree.cost(nodeCarriers.get(node.nodeAddress())) != Double.POSITIVE_INFINITY) {
+					order.nodes.add(node);
+				}
+			}
+
+			// stable, so attach order is retained for equal cost
+			order.nodes.sort(Comparator.comparingDouble(n -> tree.cost(nodeCarriers.get(n.nodeAddress()))));
+		}
+
+		return order.nodes;
+	}
+
+	/**
+	 * Sub-carriers on the cheapest route between nodes. Result is reused.
+	 * Empty if either node is not attached or they are not connected.
+	 */
+	protected ObjectArrayList<SubCarrier<T>> path(CarrierNode from, CarrierNode to) {
+		final SubCarrier<T> a = nodeCarriers.get(from.nodeAddress());
+		final SubCarrier<T> b = nodeCarriers.get(to.nodeAddress());
+
+		if (a == null || b == null) {
+			path.clear();
+			return path;
+		}
+
+		return topology.path(a, b, path);
+	}
+
+	@Override
+	public long applyRoute(CarrierSession sender, CarrierNode peer, Article item, long count, boolean simulate) {
+		if (!isRouted() || count == 0) {
+			return count;
+		}
+
+		final ObjectArrayList<SubCarrier<T>> route = path(sender, peer);
+		final int limit = route.size();
+
+		// find what every segment can carry before consuming any capacity
+		for (int i = 0; i < limit && count > 0; ++i) {
+			count = route.get(i).costFunction().apply(sender, item, count, true);
+		}
+
+		if (limit == 0 || count == 0) {
+			return 0;
+		}
+
+		if (!simulate) {
+			for (int i = 0; i < limit; ++i) {
+				count = route.get(i).costFunction().apply(sender, item, count, false);
+			}
+		}
+
+		return count;
+	}
+
+	@Override
+	public Fraction applyRoute(CarrierSession sender, CarrierNode peer, Article item, Fraction volume, boolean simulate) {
+		if (!isRouted() || volume.isZero()) {
+			return volume;
+		}
+
+		final ObjectArrayList<SubCarrier<T>> route = path(sender, peer);
+		final int limit = route.size();
+
+		for (int i = 0; i < limit && !volume.isZero(); ++i) {
+			volume = route.get(i).costFunction().apply(sender, item, volume, true);
+		}
+
+		if (limit == 0 || volume.isZero()) {
+			return Fraction.ZERO;
+		}
+
+		if (!simulate) {
+			for (int i = 0; i < limit; ++i) {
+				volume = route.get(i).costFunction().apply(sender, item, volume, false);
+			}
+		}
+
+		return volume;
+	}
+
+	@Override
+	public long applyRoute(CarrierSession sender, CarrierNode peer, Article item, long numerator, long divisor, boolean simulate) {
+		if (!isRouted() || numerator == 0) {
+			return numerator;
+		}
+
+		final ObjectArrayList<SubCarrier<T>> route = path(sender, peer);
+		final int limit = route.size();
+
+		for (int i = 0; i < limit && numerator > 0; ++i) {
+			numerator = route.get(i).costFunction().apply(sender, item, numerator, divisor, true);
+		}
+
+		if (limit == 0 || numerator == 0) {
+			return 0;
+		}
+
+		if (!simulate) {
+			for (int i = 0; i < limit; ++i) {
+				numerator = route.get(i).costFunction().apply(sender, item, numerator, divisor, false);
+			}
 		}
+
+		return numerator;
 	}
 
 	@Override
@@ -68,16 +269,44 @@ public abstract class AggregateCarrier<T extends CarrierCostFunction> implements
 		return carrierType;
 	}
 
+	/**
+	 * Removes the sub-carrier without relying on it for notifications.
+	 * Nodes still attached to it are detached here.
+	 */
+	@SuppressWarnings("unchecked")
 	@Override
 	public void disconnect(Carrier carrier, boolean didNotify, boolean isValid) {
-		//TODO: implement and remove warning
-		Fluidity.LOG.warn("Unhandled disconnect in aggregate carrier.");
+		if (!carriers.contains(carrier)) {
+			return;
+		}
+
+		final SubCarrier<T> subCarrier = (SubCarrier<T>) carrier;
+
+		for (final CarrierSession node : nodeList.toArray(new CarrierSession[nodeList.size()])) {
+			if (nodeCarriers.get(node.nodeAddress()) == subCarrier) {
+				onDetach(subCarrier, node);
+			}
+		}
+
+		carriers.remove(subCarrier);
+		subCarrier.stopListening(this, false);
+		subCarrier.setParent(null);
+		topology.remove(subCarrier);
+		routeOrders.remove(subCarrier);
 	}
 
+	@SuppressWarnings("unchecked")
 	@Override
 	public void onAttach(Carrier carrier, CarrierSession node) {
 		if (nodeMap.put(node.nodeAddress(), node) == null) {
 			nodeList.add(node);
+			nodeCarriers.put(node.nodeAddress(), (SubCarrier<T>) carrier);
+			++nodeVersion;
+
+			if (routes != null) {
+				routes.add(node);
+			}
+
 			listeners.forEach(l -> l.onAttach(this, node));
 		}
 	}
@@ -86,6 +315,13 @@ public abstract class AggregateCarrier<T extends CarrierCostFunction> implements
 	public void onDetach(Carrier carrier, CarrierSession node) {
 		if (nodeMap.remove(node.nodeAddress()) != null) {
 			nodeList.remove(node);
+			nodeCarriers.remove(node.nodeAddress());
+			++nodeVersion;
+
+			if (routes != null) {
+				routes.remove(node);
+			}
+
 			listeners.forEach(l -> l.onDetach(this, node));
 		}
 	}
@@ -148,4 +384,98 @@ public abstract class AggregateCarrier<T extends CarrierCostFunction> implements
 	public <V extends CarrierNode> V nodeByAddress(long address) {
 		return (V) nodeMap.getOrDefault(address, CarrierSession.INVALID);
 	}
+
+	@Override
+	public BroadcastDistribution broadcastDistribution() {
+		return broadcastDistribution;
+	}
+
+	/**
+	 * @param broadcastDistribution new instance, not shared with any other carrier
+	 */
+	public void setBroadcastDistribution(BroadcastDistribution broadcastDistribution) {
+		this.broadcastDistribution = broadcastDistribution;
+	}
+
+	protected CarrierRoutingIndex routes() {
+		CarrierRoutingIndex result = routes;
+
+		if (result == null) {
+			result = new CarrierRoutingIndex();
+			final int limit = nodeList.size();
+
+			for (int i = 0; i < limit; ++i) {
+				result.add(nodeList.get(i));
+			}
+
+			routes = result;
+		}
+
+		return result;
+	}
+
+	/**
+	 * When routed, only nodes that can be reached from the requesting node are returned.
+	 */
+	@Override
+	public CarrierNode supplierOf(Article article, long requestorAddress) {
+		if (!isRouted()) {
+			return routes().supplierOf(article, requestorAddress);
+		}
+
+		if (!beginLookup(requestorAddress)) {
+			return CarrierNode.INVALID;
+		}
+
+		try {
+			return routes().supplierOf(article, requestorAddress, reachableFilter);
+		} finally {
+			lookupTree = null;
+		}
+	}
+
+	/**
+	 * When routed, only nodes that can be reached from the requesting node are returned.
+	 */
+	@Override
+	public CarrierNode consumerOf(Article article, long requestorAddress) {
+		if (!isRouted()) {
+			return routes().consumerOf(article, requestorAddress);
+		}
+
+		if (!beginLookup(requestorAddress)) {
+			return CarrierNode.INVALID;
+		}
+
+		try {
+			return routes().consumerOf(article, requestorAddress, reachableFilter);
+		} finally {
+			lookupTree = null;
+		}
+	}
+
+	/** @return false if the requesting node is not attached, so no node can be reached */
+	protected boolean beginLookup(long requestorAddress) {
+		final SubCarrier<T> source = nodeCarriers.get(requestorAddress);
+
+		if (source == null) {
+			return false;
+		}
+
+		lookupTree = topology.tree(source);
+		return true;
+	}
+
+	protected boolean isReachable(CarrierNode node) {
+		final SubCarrier<T> c = nodeCarriers.get(node.nodeAddress());
+		return c != null && lookupTree.cost(c) != Double.POSITIVE_INFINITY;
+	}
+
+	protected static final ObjectArrayList<CarrierSession> EMPTY_ORDER = new ObjectArrayList<>();
+
+	protected class RouteOrder {
+		protected CarrierTopology.PathTree<SubCarrier<T>> tree;
+		protected int nodeVersion;
+		protected final ObjectArrayList<CarrierSession> nodes = new ObjectArrayList<>();
+	}
 }
@@ -25,6 +25,7 @@ import java.util.function.Function;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 
+import grondag.fluidity.api.article.Article;
 import grondag.fluidity.api.device.DeviceComponentAccess;
 import grondag.fluidity.api.device.DeviceComponentType;
 import grondag.fluidity.base.storage.helper.ListenerSet;
@@ -45,6 +46,11 @@ public abstract class BasicCarrier<T extends CarrierCostFunction> implements Lim
 	protected final Long2ObjectOpenHashMap<CarrierSession> nodeMap = new Long2ObjectOpenHashMap<>();
 	protected final ObjectArrayList<CarrierSession> nodeList = new ObjectArrayList<>();
 
+	/** Created on first supplier or consumer lookup so that carriers never searched don't track storage. */
+	protected CarrierRoutingIndex routes = null;
+
+	protected BroadcastDistribution broadcastDistribution = BroadcastDistribution.roundRobin();
+
 	protected void sendFirstListenerUpdate(CarrierListener listener) {
 		final int limit = nodeList.size();
 
@@ -92,6 +98,11 @@ public abstract class BasicCarrier<T extends CarrierCostFunction> implements Lim
 
 		if (nodeMap.put(result.nodeAddress(), result) == null) {
 			nodeList.add(result);
+
+			if (routes != null) {
+				routes.add(result);
+			}
+
 			listeners.forEach(l -> l.onAttach(this, result));
 		}
 
@@ -102,6 +113,11 @@ public abstract class BasicCarrier<T extends CarrierCostFunction> implements Lim
 	public void detach(CarrierSession node) {
 		if (nodeMap.remove(node.nodeAddress()) != null) {
 			nodeList.remove(node);
+
+			if (routes != null) {
+				routes.remove(node);
+			}
+
 			listeners.forEach(l -> l.onDetach(this, node));
 		}
 	}
@@ -123,6 +139,45 @@ public abstract class BasicCarrier<T extends CarrierCostFunction> implements Lim
 		return (V) nodeMap.getOrDefault(address, CarrierSession.INVALID);
 	}
 
+	@Override
+	public BroadcastDistribution broadcastDistribution() {
+		return broadcastDistribution;
+	}
+
+	/**
+	 * @param broadcastDistribution new instance, not shared with any other carrier
+	 */
+	public void setBroadcastDistribution(BroadcastDistribution broadcastDistribution) {
+		this.broadcastDistribution = broadcastDistribution;
+	}
+
+	protected CarrierRoutingIndex routes() {
+		CarrierRoutingIndex result = routes;
+
+		if (result == null) {
+			result = new CarrierRoutingIndex();
+			final int limit = nodeList.size();
+
+			for (int i = 0; i < limit; ++i) {
+				result.add(nodeList.get(i));
+			}
+
+			routes = result;
+		}
+
+		return result;
+	}
+
+	@Override
+	public CarrierNode supplierOf(Article article, long requestorAddress) {
+		return routes().supplierOf(article, requestorAddress);
+	}
+
+	@Override
+	public CarrierNode consumerOf(Article article, long requestorAddress) {
+		return routes().consumerOf(article, requestorAddress);
+	}
+
 	public LimitedCarrier<T> effectiveCarrier() {
 		return this;
 	}
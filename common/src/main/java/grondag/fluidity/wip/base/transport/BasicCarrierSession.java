@@ -23,19 +23,26 @@ package grondag.fluidity.wip.base.transport;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
+import grondag.fluidity.api.article.Article;
 import grondag.fluidity.api.device.DeviceComponentAccess;
 import grondag.fluidity.api.device.DeviceComponentType;
+import grondag.fluidity.api.fraction.Fraction;
+import grondag.fluidity.api.fraction.MutableFraction;
 import grondag.fluidity.api.storage.ArticleFunction;
 import grondag.fluidity.api.transact.TransactionContext;
+import grondag.fluidity.api.transact.TransactionParticipant;
 import grondag.fluidity.api.transact.TransactionParticipant.TransactionDelegate;
+import grondag.fluidity.base.transact.LazyRollbackHandler;
 
-public class BasicCarrierSession<T extends CarrierCostFunction> implements LimitedCarrierSession<T>, TransactionDelegate {
+public class BasicCarrierSession<T extends CarrierCostFunction> implements LimitedCarrierSession<T>, TransactionParticipant, TransactionDelegate {
 	protected final long address = AssignedNumbersAuthority.createCarrierAddress();
 	protected final Function<DeviceComponentType<?>, DeviceComponentAccess<?>> componentFunction;
 	protected final BasicCarrier<T> carrier;
 	protected final BroadcastConsumer<T> broadcastConsumer;
 	protected final BroadcastSupplier<T> broadcastSupplier;
 	protected boolean isOpen = true;
+	protected final LazyRollbackHandler rollbackHandler = new LazyRollbackHandler(this::createRollbackState, this::applyRollbackState, this);
+	protected final MutableFraction transferred = new MutableFraction();
 
 	public BasicCarrierSession(BasicCarrier<T> carrier, Function<DeviceComponentType<?>, DeviceComponentAccess<?>> componentFunction) {
 		this.carrier = carrier;
@@ -80,14 +87,43 @@ public class BasicCarrierSession<T extends CarrierCostFunction> implements Limit
 		}
 	}
 
+	/**
+	 * Total amount transferred by broadcasts from this session, with discrete articles counted
+	 * as whole units. Transfers that are rolled back are not included.
+	 */
+	public Fraction transferred() {
+		return transferred;
+	}
+
 	@Override
-	public Consumer<TransactionContext> prepareRollback(TransactionContext context) {
-		if (!isOpen) {
-			return c -> { };
+	public void onTransfer(Article item, Fraction amount) {
+		rollbackHandler.prepareIfNeeded();
+		transferred.add(amount);
+	}
+
+	protected Object createRollbackState() {
+		return transferred.toImmutable();
+	}
+
+	protected void applyRollbackState(Object state, boolean isCommitted) {
+		if (!isCommitted) {
+			transferred.set((Fraction) state);
 		}
+	}
 
-		// TODO: Implement proper rollback
-		return c -> { };
+	@Override
+	public Consumer<TransactionContext> prepareRollback(TransactionContext context) {
+		return rollbackHandler.prepareExternal(context);
+	}
+
+	@Override
+	public TransactionDelegate getTransactionDelegate() {
+		return this;
+	}
+
+	@Override
+	public boolean isSelfEnlisting() {
+		return true;
 	}
 
 	@Override
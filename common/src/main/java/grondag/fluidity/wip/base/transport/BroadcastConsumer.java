@@ -31,6 +31,8 @@ import grondag.fluidity.wip.api.transport.CarrierNode;
 
 public class BroadcastConsumer<T extends CarrierCostFunction> implements ArticleFunction {
 	protected final LimitedCarrierSession<T> fromNode;
+	/** Set when a route could not carry an amount already accepted, so the broadcast must not commit. */
+	protected boolean routeShortfall;
 
 	public BroadcastConsumer(LimitedCarrierSession<T> fromNode) {
 		this.fromNode = fromNode;
@@ -47,23 +49,32 @@ public class BroadcastConsumer<T extends CarrierCostFunction> implements Article
 		}
 
 		try (Transaction tx = Transaction.open()) {
-			// note that cost function is self-enlisting
-			count = carrier.costFunction().apply(fromNode, item, count, simulate);
+			// cost is charged only for what is transferred, and is restored if the transaction is rolled back
+			final T costFunction = carrier.costFunction();
+			count = costFunction.apply(fromNode, item, count, true);
 
+			final BroadcastDistribution distribution = carrier.broadcastDistribution();
+			final int visitCount = distribution.begin(carrier, fromNode);
+			routeShortfall = false;
 			long result = 0;
 
-			for (int i = 0; i < nodeCount; ++i) {
-				final CarrierNode n = carrier.nodeByIndex(i);
+			if (distribution.isPartial()) {
+				result = offer(tx, distribution, visitCount, item, count, result, simulate, true);
+			}
 
-				if (n != fromNode && n.hasFlag(CarrierNode.FLAG_ACCEPT_CONSUMER_BROADCASTS)) {
-					final ArticleFunction c = n.getComponent(ArticleFunction.CONSUMER_COMPONENT).get();
-					tx.enlist(c); // allow for implementations that do not self-enlist
-					result += c.apply(item, count - result, simulate);
+			if (result < count) {
+				result = offer(tx, distribution, visitCount, item, count, result, simulate, false);
+			}
 
-					if (result >= count) {
-						break;
-					}
+			distribution.end();
+
+			if (!simulate && result > 0) {
+				if (routeShortfall || costFunction.apply(fromNode, item, result, false) < result) {
+					// not committed, so partial transfer is rolled back
+					return 0;
 				}
+
+				fromNode.onTransfer(item, transfer.set(result));
 			}
 
 			tx.commit();
@@ -74,8 +85,67 @@ public class BroadcastConsumer<T extends CarrierCostFunction> implements Article
 		}
 	}
 
+	protected long offer(Transaction tx, BroadcastDistribution distribution, int visitCount, Article item, long count, long result, boolean simulate, boolean useShare) {
+		if (result >= count) {
+			return result;
+		}
+
+		final LimitedCarrier<T> carrier = fromNode.carrier();
+
+		for (int k = 0; k < visitCount; ++k) {
+			final CarrierNode n = distribution.visit(k);
+
+			if (n != fromNode && n.isValid() && n.hasFlag(CarrierNode.FLAG_ACCEPT_CONSUMER_BROADCASTS)) {
+				long offer = count - result;
+
+				if (useShare) {
+					final double share = distribution.share(k);
+
+					if (share == 0) {
+						continue;
+					} else if (share < 1) {
+						offer = Math.min(offer, (long) Math.ceil(offer * share));
+					}
+				}
+
+				offer = carrier.applyRoute(fromNode, n, item, offer, true);
+
+				if (offer == 0) {
+					continue;
+				}
+
+				final ArticleFunction c = n.getComponent(ArticleFunction.CONSUMER_COMPONENT).get();
+				tx.enlist(c); // allow for implementations that do not self-enlist
+				final long accepted = c.apply(item, offer, simulate);
+
+				if (accepted != 0) {
+					result += accepted;
+
+					if (!simulate) {
+						distribution.onAccept(k);
+
+						if (carrier.applyRoute(fromNode, n, item, accepted, false) < accepted) {
+							routeShortfall = true;
+						}
+					}
+
+					if (result >= count) {
+						break;
+					}
+				}
+			}
+		}
+
+		return result;
+	}
+
 	protected final MutableFraction calc = new MutableFraction();
 	protected final MutableFraction result = new MutableFraction();
+	protected final MutableFraction transfer = new MutableFraction();
+	protected final MutableFraction offer = new MutableFraction();
+
+	/** Precision of shares applied to fractional volumes. */
+	protected static final long SHARE_DIVISOR = 1024;
 
 	@Override
 	public Fraction apply(Article item, Fraction volume, boolean simulate) {
@@ -88,29 +158,34 @@ public class BroadcastConsumer<T extends CarrierCostFunction> implements Article
 		}
 
 		try (Transaction tx = Transaction.open()) {
-			// note that cost function is self-enlisting
-			volume = carrier.costFunction().apply(fromNode, item, volume, simulate);
+			// cost is charged only for what is transferred, and is restored if the transaction is rolled back
+			final T costFunction = carrier.costFunction();
+			volume = costFunction.apply(fromNode, item, volume, true);
 
 			result.set(0);
 			calc.set(volume);
 
-			for (int i = 0; i < nodeCount; ++i) {
-				final CarrierNode n = carrier.nodeByIndex(i);
+			final BroadcastDistribution distribution = carrier.broadcastDistribution();
+			final int visitCount = distribution.begin(carrier, fromNode);
+			routeShortfall = false;
 
-				if (n != fromNode && n.hasFlag(CarrierNode.FLAG_ACCEPT_CONSUMER_BROADCASTS)) {
-					final ArticleFunction c = n.getComponent(ArticleFunction.CONSUMER_COMPONENT).get();
-					tx.enlist(c); // allow for implementations that do not self-enlist
-					final Fraction amt = c.apply(item, calc, simulate);
+			if (distribution.isPartial()) {
+				offer(tx, distribution, visitCount, item, volume, simulate, true);
+			}
 
-					if (!amt.isZero()) {
-						result.add(amt);
-						calc.subtract(amt);
+			if (result.isLessThan(volume)) {
+				offer(tx, distribution, visitCount, item, volume, simulate, false);
+			}
 
-						if (result.isGreaterThanOrEqual(volume)) {
-							break;
-						}
-					}
+			distribution.end();
+
+			if (!simulate && !result.isZero()) {
+				if (routeShortfall || costFunction.apply(fromNode, item, result, false).isLessThan(result)) {
+					// not committed, so partial transfer is rolled back
+					return Fraction.ZERO;
 				}
+
+				fromNode.onTransfer(item, result);
 			}
 
 			tx.commit();
@@ -121,6 +196,60 @@ public class BroadcastConsumer<T extends CarrierCostFunction> implements Article
 		}
 	}
 
+	/** Adds accepted volume to {@link #result} and removes it from {@link #calc}. */
+	protected void offer(Transaction tx, BroadcastDistribution distribution, int visitCount, Article item, Fraction volume, boolean simulate, boolean useShare) {
+		if (result.isGreaterThanOrEqual(volume)) {
+			return;
+		}
+
+		final LimitedCarrier<T> carrier = fromNode.carrier();
+
+		for (int k = 0; k < visitCount; ++k) {
+			final CarrierNode n = distribution.visit(k);
+
+			if (n != fromNode && n.isValid() && n.hasFlag(CarrierNode.FLAG_ACCEPT_CONSUMER_BROADCASTS)) {
+				Fraction offer = calc;
+
+				if (useShare) {
+					final double share = distribution.share(k);
+
+					if (share == 0) {
+						continue;
+					} else if (share < 1) {
+						offer = this.offer.set(calc).multiply(Math.max(1, Math.round(share * SHARE_DIVISOR)), SHARE_DIVISOR);
+					}
+				}
+
+				offer = carrier.applyRoute(fromNode, n, item, offer, true);
+
+				if (offer.isZero()) {
+					continue;
+				}
+
+				final ArticleFunction c = n.getComponent(ArticleFunction.CONSUMER_COMPONENT).get();
+				tx.enlist(c); // allow for implementations that do not self-enlist
+				final Fraction amt = c.apply(item, offer, simulate);
+
+				if (!amt.isZero()) {
+					result.add(amt);
+					calc.subtract(amt);
+
+					if (!simulate) {
+						distribution.onAccept(k);
+
+						if (carrier.applyRoute(fromNode, n, item, amt, false).isLessThan(amt)) {
+							routeShortfall = true;
+						}
+					}
+
+					if (result.isGreaterThanOrEqual(volume)) {
+						break;
+					}
+				}
+			}
+		}
+	}
+
 	@Override
 	public long apply(Article item, long numerator, long divisor, boolean simulate) {
 		final LimitedCarrier<T> carrier = fromNode.carrier();
@@ -132,22 +261,32 @@ public class BroadcastConsumer<T extends CarrierCostFunction> implements Article
 		}
 
 		try (Transaction tx = Transaction.open()) {
-			// note that cost function is self-enlisting
-			numerator = carrier.costFunction().apply(fromNode, item, numerator, divisor, simulate);
+			// cost is charged only for what is transferred, and is restored if the transaction is rolled back
+			final T costFunction = carrier.costFunction();
+			numerator = costFunction.apply(fromNode, item, numerator, divisor, true);
 
+			final BroadcastDistribution distribution = carrier.broadcastDistribution();
+			final int visitCount = distribution.begin(carrier, fromNode);
+			routeShortfall = false;
 			long result = 0;
 
-			for (int i = 0; i < nodeCount; ++i) {
-				final CarrierNode n = carrier.nodeByIndex(i);
+			if (distribution.isPartial()) {
+				result = offer(distribution, visitCount, item, numerator, divisor, result, simulate, true);
+			}
 
-				if (n != fromNode && n.hasFlag(CarrierNode.FLAG_ACCEPT_CONSUMER_BROADCASTS)) {
-					final ArticleFunction c = n.getComponent(ArticleFunction.CONSUMER_COMPONENT).get();
-					result += c.apply(item, numerator - result, divisor, simulate);
+			if (result < numerator) {
+				result = offer(distribution, visitCount, item, numerator, divisor, result, simulate, false);
+			}
 
-					if (result >= numerator) {
-						break;
-					}
+			distribution.end();
+
+			if (!simulate && result > 0) {
+				if (routeShortfall || costFunction.apply(fromNode, item, result, divisor, false) < result) {
+					// not committed, so partial transfer is rolled back
+					return 0;
 				}
+
+				fromNode.onTransfer(item, transfer.set(result, divisor));
 			}
 
 			tx.commit();
@@ -158,6 +297,59 @@ public class BroadcastConsumer<T extends CarrierCostFunction> implements Article
 		}
 	}
 
+	protected long offer(BroadcastDistribution distribution, int visitCount, Article item, long numerator, long divisor, long result, boolean simulate, boolean useShare) {
+		if (result >= numerator) {
+			return result;
+		}
+
+		final LimitedCarrier<T> carrier = fromNode.carrier();
+
+		for (int k = 0; k < visitCount; ++k) {
+			final CarrierNode n = distribution.visit(k);
+
+			if (n != fromNode && n.isValid() && n.hasFlag(CarrierNode.FLAG_ACCEPT_CONSUMER_BROADCASTS)) {
+				long offer = numerator - result;
+
+				if (useShare) {
+					final double share = distribution.share(k);
+
+					if (share == 0) {
+						continue;
+					} else if (share < 1) {
+						offer = Math.min(offer, (long) Math.ceil(offer * share));
+					}
+				}
+
+				offer = carrier.applyRoute(fromNode, n, item, offer, divisor, true);
+
+				if (offer == 0) {
+					continue;
+				}
+
+				final ArticleFunction c = n.getComponent(ArticleFunction.CONSUMER_COMPONENT).get();
+				final long accepted = c.apply(item, offer, divisor, simulate);
+
+				if (accepted != 0) {
+					result += accepted;
+
+					if (!simulate) {
+						distribution.onAccept(k);
+
+						if (carrier.applyRoute(fromNode, n, item, accepted, divisor, false) < accepted) {
+							routeShortfall = true;
+						}
+					}
+
+					if (result >= numerator) {
+						break;
+					}
+				}
+			}
+		}
+
+		return result;
+	}
+
 	/** All transaction handling is in nodes and cost function.  Should never be used */
 	@Override
 	public TransactionDelegate getTransactionDelegate() {
@@ -0,0 +1,409 @@
+/*
+ * This file is part of Fluidity and is licensed to the project under
+ * terms that are compatible with the GNU Lesser General Public License.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership and licensing.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package grondag.fluidity.wip.base.transport;
+
+import java.util.Arrays;
+import java.util.function.ToIntFunction;
+
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import org.jetbrains.annotations.ApiStatus.Experimental;
+
+import grondag.fluidity.api.storage.Store;
+import grondag.fluidity.wip.api.transport.CarrierNode;
+
+/**
+ * Controls the order in which carrier nodes are offered a broadcast, and optionally how much
+ * of the broadcast each node is offered. Held by the carrier so that state such as a round-robin
+ * cursor persists across broadcasts from every node on the carrier.
+ *
+ * <p>Instances are stateful and must not be shared between carriers. Not thread-safe and not
+ * re-entrant: a broadcast must finish before another broadcast on the same carrier begins.
+ * The node returned for each visit ordinal must not change between {@link #begin(LimitedCarrier, CarrierNode)}
+ * and {@link #end()}, so state such as cursors is advanced only by {@link #end()}. State is advanced
+ * only for broadcasts that are not simulated, and is not rolled back with transactions.
+ */
+@Experimental
+public abstract class BroadcastDistribution {
+	/**
+	 * Called at the start of each broadcast.
+	 *
+	 * @param carrier carrier being broadcast to
+	 * @param fromNode node originating the broadcast, which will never be offered the broadcast
+	 * @return the number of nodes that can be visited by {@link #visit(int)}
+	 */
+	public abstract int begin(LimitedCarrier<?> carrier, CarrierNode fromNode);
+
+	/**
+	 * @param k visit ordinal, must be >= 0 and < value returned by {@link #begin(LimitedCarrier, CarrierNode)}
+	 * @return node to be offered the broadcast on the given visit
+	 */
+	public abstract CarrierNode visit(int k);
+
+	/**
+	 * Portion of the amount still remaining that should be offered to the node on the given visit.
+	 * Ignored unless {@link #isPartial()} is true.
+	 *
+	 * @param k visit ordinal
+	 * @return value from 0 to 1, inclusive. Nodes with a share of zero are skipped
+	 */
+	public double share(int k) {
+		return 1;
+	}
+
+	/**
+	 * True if nodes may be offered less than the full remaining amount. When true, any amount
+	 * remaining after all nodes have been offered their share is offered again to each node in full.
+	 */
+	public boolean isPartial() {
+		return false;
+	}
+
+	/**
+	 * Called when the node on the given visit accepts a non-zero amount during a broadcast
+	 * that is not simulated. Changes to visit order resulting from this must wait for {@link #end()}.
+	 *
+	 * @param k visit ordinal
+	 */
+	public void onAccept(int k) { }
+
+	/** Called after all visits of a broadcast. Applies state changes recorded by {@link #onAccept(int)}. */
+	public void end() { }
+
+	/** Visits nodes in carrier order, starting from the first node, every time. */
+	public static BroadcastDistribution inOrder() {
+		return new InOrder();
+	}
+
+	/** Visits nodes in carrier order, starting after the last node that accepted. */
+	public static BroadcastDistribution roundRobin() {
+		return new RoundRobin();
+	}
+
+	/**
+	 * Offers each node a share of the remaining amount proportional to free storage capacity.
+	 * Requires a pass over all nodes for each broadcast to measure free capacity. Nodes without
+	 * storage are offered only what remains after nodes with storage have been offered their share.
+	 */
+	public static BroadcastDistribution proportional() {
+		return new Proportional();
+	}
+
+	/**
+	 * Visits nodes with higher priority first. Nodes with the same priority are visited round-robin.
+	 * Priorities are cached and only updated when nodes attach or detach, or when {@link Priority#invalidate()}
+	 * is called.
+	 *
+	 * @param priorityFunction gives the priority of a node. Higher values are visited first
+	 */
+	public static Priority priority(ToIntFunction<CarrierNode> priorityFunction) {
+		return new Priority(priorityFunction);
+	}
+
+	/**
+	 * Visits reachable nodes in order of route cost from the broadcasting node when the carrier is an
+	 * {@link AggregateCarrier} with links between sub-carriers. Nodes that cannot be reached are not visited.
+	 * Otherwise same as {@link #roundRobin()}.
+	 */
+	public static BroadcastDistribution cheapestFirst() {
+		return new CheapestFirst();
+	}
+
+	protected static class InOrder extends BroadcastDistribution {
+		protected LimitedCarrier<?> carrier;
+
+		@Override
+		public int begin(LimitedCarrier<?> carrier, CarrierNode fromNode) {
+			this.carrier = carrier;
+			return carrier.nodeCount();
+		}
+
+		@Override
+		public CarrierNode visit(int k) {
+			return carrier.nodeByIndex(k);
+		}
+	}
+
+	protected static class RoundRobin extends BroadcastDistribution {
+		protected LimitedCarrier<?> carrier;
+		protected int nodeCount;
+		protected int cursor;
+		/** Cursor after the last accepting node of the current broadcast, or -1 if none accepted. */
+		protected int nextCursor = -1;
+
+		@Override
+		public int begin(LimitedCarrier<?> carrier, CarrierNode fromNode) {
+			this.carrier = carrier;
+			nodeCount = carrier.nodeCount();
+			nextCursor = -1;
+
+			if (cursor >= nodeCount) {
+				cursor = 0;
+			}
+
+			return nodeCount;
+		}
+
+		protected int index(int k) {
+			final int i = cursor + k;
+			return i >= nodeCount ? i - nodeCount : i;
+		}
+
+		@Override
+		public CarrierNode visit(int k) {
+			return carrier.nodeByIndex(index(k));
+		}
+
+		@Override
+		public void onAccept(int k) {
+			nextCursor = index(k) + 1;
+		}
+
+		@Override
+		public void end() {
+			if (nextCursor >= 0) {
+				cursor = nextCursor;
+				nextCursor = -1;
+			}
+		}
+	}
+
+	protected static class CheapestFirst extends RoundRobin {
+		/** Non-null while the current broadcast is routed. */
+		protected ObjectArrayList<? extends CarrierNode> routeOrder;
+
+		@Override
+		public int begin(LimitedCarrier<?> carrier, CarrierNode fromNode) {
+			if (carrier instanceof AggregateCarrier && ((AggregateCarrier<?>) carrier).isRouted()) {
+				routeOrder = ((AggregateCarrier<?>) carrier).nodesByRouteCost(fromNode);
+				nextCursor = -1;
+				return routeOrder.size();
+			}
+
+			routeOrder = null;
+			return super.begin(carrier, fromNode);
+		}
+
+		@Override
+		public CarrierNode visit(int k) {
+			return routeOrder == null ? super.visit(k) : routeOrder.get(k);
+		}
+
+		@Override
+		public void onAccept(int k) {
+			if (routeOrder == null) {
+				super.onAccept(k);
+			}
+		}
+	}
+
+	protected static class Proportional extends RoundRobin {
+		/** Free capacity of node on each visit. */
+		protected final DoubleArrayList free = new DoubleArrayList();
+		/** Free capacity of nodes on each visit and all later visits. */
+		protected final DoubleArrayList remainingFree = new DoubleArrayList();
+
+		@Override
+		public int begin(LimitedCarrier<?> carrier, CarrierNode fromNode) {
+			final int result = super.begin(carrier, fromNode);
+			free.size(result);
+			remainingFree.size(result);
+
+			for (int k = 0; k < result; ++k) {
+				final CarrierNode n = visit(k);
+				double f = 0;
+
+				if (n != fromNode && n.hasFlag(CarrierNode.FLAG_ACCEPT_CONSUMER_BROADCASTS)) {
+					final Store s = n.getComponent(Store.STORAGE_COMPONENT).get();
+
+					if (s != null && s != Store.EMPTY) {
+						f = Math.max(0, s.volume().toDouble() - s.amount().toDouble());
+					}
+				}
+
+				free.set(k, f);
+			}
+
+			double total = 0;
+
+			for (int k = result - 1; k >= 0; --k) {
+				total += free.getDouble(k);
+				remainingFree.set(k, total);
+			}
+
+			return result;
+		}
+
+		@Override
+		public double share(int k) {
+			final double f = free.getDouble(k);
+			return f == 0 ? 0 : f / remainingFree.getDouble(k);
+		}
+
+		@Override
+		public boolean isPartial() {
+			return true;
+		}
+	}
+
+	public static class Priority extends BroadcastDistribution {
+		protected final ToIntFunction<CarrierNode> priorityFunction;
+		protected final ObjectArrayList<CarrierNode> order = new ObjectArrayList<>();
+		protected LimitedCarrier<?> carrier;
+		protected boolean isDirty = true;
+
+		/** Tier of node at each position in {@link #order}. */
+		protected int[] tierOf = new int[0];
+		protected int[] tierStart = new int[0];
+		protected int[] tierSize = new int[0];
+		protected int[] tierCursor = new int[0];
+		/** Cursor of each tier after the current broadcast, or -1 if unchanged. */
+		protected int[] nextTierCursor = new int[0];
+		protected final IntArrayList changedTiers = new IntArrayList();
+
+		protected Priority(ToIntFunction<CarrierNode> priorityFunction) {
+			this.priorityFunction = priorityFunction;
+		}
+
+		/** Call when node priorities may have changed. */
+		public void invalidate() {
+			isDirty = true;
+		}
+
+		@Override
+		public int begin(LimitedCarrier<?> carrier, CarrierNode fromNode) {
+			if (isDirty || carrier != this.carrier || carrier.nodeCount() != order.size()) {
+				rebuild(carrier);
+			} else {
+				discardChanges();
+			}
+
+			return order.size();
+		}
+
+		protected void rebuild(LimitedCarrier<?> carrier) {
+			this.carrier = carrier;
+			isDirty = false;
+			order.clear();
+			final int nodeCount = carrier.nodeCount();
+
+			for (int i = 0; i < nodeCount; ++i) {
+				order.add(carrier.nodeByIndex(i));
+			}
+
+			final int[] priorities = new int[nodeCount];
+
+			for (int i = 0; i < nodeCount; ++i) {
+				priorities[i] = priorityFunction.applyAsInt(order.get(i));
+			}
+
+			// stable sort, highest priority first
+			final int[] sort = new int[nodeCount];
+
+			for (int i = 0; i < nodeCount; ++i) {
+				sort[i] = i;
+			}
+
+			IntArrays.mergeSort(sort, (a, b) -> Integer.compare(priorities[b], priorities[a]));
+			final CarrierNode[] sorted = new CarrierNode[nodeCount];
+
+			for (int i = 0; i < nodeCount; ++i) {
+				sorted[i] = order.get(sort[i]);
+			}
+
+			order.clear();
+			order.addElements(0, sorted);
+
+			tierOf = new int[nodeCount];
+			tierStart = new int[nodeCount];
+			tierSize = new int[nodeCount];
+			int tier = -1;
+
+			for (int i = 0; i < nodeCount; ++i) {
+				if (i == 0 || priorities[sort[i]] != priorities[sort[i - 1]]) {
+					tierStart[++tier] = i;
+				}
+
+				tierOf[i] = tier;
+				++tierSize[tier];
+			}
+
+			// cursors are positions within a tier and tiers may have changed
+			tierCursor = new int[nodeCount];
+			nextTierCursor = new int[nodeCount];
+			Arrays.fill(nextTierCursor, -1);
+			changedTiers.clear();
+		}
+
+		protected void discardChanges() {
+			final int limit = changedTiers.size();
+
+			for (int i = 0; i < limit; ++i) {
+				nextTierCursor[changedTiers.getInt(i)] = -1;
+			}
+
+			changedTiers.clear();
+		}
+
+		protected int index(int k) {
+			final int tier = tierOf[k];
+			final int start = tierStart[tier];
+			return start + (k - start + tierCursor[tier]) % tierSize[tier];
+		}
+
+		@Override
+		public CarrierNode visit(int k) {
+			final CarrierNode result = order.get(index(k));
+
+			// node detached and another attached since last rebuild
+			if (!result.isValid()) {
+				isDirty = true;
+			}
+
+			return result;
+		}
+
+		@Override
+		public void onAccept(int k) {
+			final int tier = tierOf[k];
+
+			if (nextTierCursor[tier] < 0) {
+				changedTiers.add(tier);
+			}
+
+			nextTierCursor[tier] = (index(k) - tierStart[tier] + 1) % tierSize[tier];
+		}
+
+		@Override
+		public void end() {
+			final int limit = changedTiers.size();
+
+			for (int i = 0; i < limit; ++i) {
+				final int tier = changedTiers.getInt(i);
+				tierCursor[tier] = nextTierCursor[tier];
+			}
+
+			discardChanges();
+		}
+	}
+}
@@ -47,7 +47,9 @@ public class BroadcastSupplier<T extends CarrierCostFunction> implements Article
 		}
 
 		try (Transaction tx = Transaction.open()) {
-			count = carrier.costFunction().apply(fromNode, item, count, simulate);
+			// cost is charged only for what is transferred, and is restored if the transaction is rolled back
+			final T costFunction = carrier.costFunction();
+			count = costFunction.apply(fromNode, item, count, true);
 
 			long result = 0;
 
@@ -57,7 +59,19 @@ public class BroadcastSupplier<T extends CarrierCostFunction> implements Article
 				if (n != fromNode && n.hasFlag(CarrierNode.FLAG_ACCEPT_SUPPLIER_BROADCASTS)) {
 					final ArticleFunction s = n.getComponent(ArticleFunction.SUPPLIER_COMPONENT).get();
 					tx.enlist(s); // allow for implementations that do not self-enlist
-					result += s.apply(item, count - result, simulate);
+					final long request = carrier.applyRoute(fromNode, n, item, count - result, true);
+
+					if (request == 0) {
+						continue;
+					}
+
+					final long supplied = s.apply(item, request, simulate);
+					result += supplied;
+
+					if (!simulate && supplied != 0 && carrier.applyRoute(fromNode, n, item, supplied, false) < supplied) {
+						// not committed, so partial transfer is rolled back
+						return 0;
+					}
 
 					if (result >= count) {
 						break;
@@ -65,6 +79,16 @@ public class BroadcastSupplier<T extends CarrierCostFunction> implements Article
 				}
 			}
 
+			if (!simulate && result > 0) {
+				if (costFunction.apply(fromNode, item, result, false) < result) {
+					// not committed, so partial transfer is rolled back
+					return 0;
+				}
+
+				fromNode.onTransfer(item, transfer.set(result));
+			}
+
+			tx.commit();
 			return result;
 		} catch (final Exception e) {
 			Fluidity.LOG.warn("Unlable to complete carrier broadcast supply request due to exception.", e);
@@ -74,6 +98,7 @@ public class BroadcastSupplier<T extends CarrierCostFunction> implements Article
 
 	protected final MutableFraction calc = new MutableFraction();
 	protected final MutableFraction result = new MutableFraction();
+	protected final MutableFraction transfer = new MutableFraction();
 
 	@Override
 	public Fraction apply(Article item, Fraction volume, boolean simulate) {
@@ -86,8 +111,9 @@ public class BroadcastSupplier<T extends CarrierCostFunction> implements Article
 		}
 
 		try (Transaction tx = Transaction.open()) {
-			// note that cost function is self-enlisting
-			volume = carrier.costFunction().apply(fromNode, item, volume, simulate);
+			// cost is charged only for what is transferred, and is restored if the transaction is rolled back
+			final T costFunction = carrier.costFunction();
+			volume = costFunction.apply(fromNode, item, volume, true);
 
 			result.set(0);
 			calc.set(volume);
@@ -98,9 +124,20 @@ public class BroadcastSupplier<T extends CarrierCostFunction> implements Article
 				if (n != fromNode && n.hasFlag(CarrierNode.FLAG_ACCEPT_SUPPLIER_BROADCASTS)) {
 					final ArticleFunction s = n.getComponent(ArticleFunction.SUPPLIER_COMPONENT).get();
 					tx.enlist(s); // allow for implementations that do not self-enlist
-					final Fraction amt = s.apply(item, calc, simulate);
+					final Fraction request = carrier.applyRoute(fromNode, n, item, calc, true);
+
+					if (request.isZero()) {
+						continue;
+					}
+
+					final Fraction amt = s.apply(item, request, simulate);
 
 					if (!amt.isZero()) {
+						if (!simulate && carrier.applyRoute(fromNode, n, item, amt, false).isLessThan(amt)) {
+							// not committed, so partial transfer is rolled back
+							return Fraction.ZERO;
+						}
+
 						result.add(amt);
 						calc.subtract(amt);
 
@@ -111,6 +148,15 @@ public class BroadcastSupplier<T extends CarrierCostFunction> implements Article
 				}
 			}
 
+			if (!simulate && !result.isZero()) {
+				if (costFunction.apply(fromNode, item, result, false).isLessThan(result)) {
+					// not committed, so partial transfer is rolled back
+					return Fraction.ZERO;
+				}
+
+				fromNode.onTransfer(item, result);
+			}
+
 			tx.commit();
 			return result;
 		} catch (final Exception e) {
@@ -130,8 +176,9 @@ public class BroadcastSupplier<T extends CarrierCostFunction> implements Article
 		}
 
 		try (Transaction tx = Transaction.open()) {
-			// note that cost function is self-enlisting
-			numerator = carrier.costFunction().apply(fromNode, item, numerator, divisor, simulate);
+			// cost is charged only for what is transferred, and is restored if the transaction is rolled back
+			final T costFunction = carrier.costFunction();
+			numerator = costFunction.apply(fromNode, item, numerator, divisor, true);
 
 			long result = 0;
 
@@ -141,7 +188,19 @@ public class BroadcastSupplier<T extends CarrierCostFunction> implements Article
 				if (n != fromNode && n.hasFlag(CarrierNode.FLAG_ACCEPT_SUPPLIER_BROADCASTS)) {
 					final ArticleFunction s = n.getComponent(ArticleFunction.SUPPLIER_COMPONENT).get();
 					tx.enlist(s); // allow for implementations that do not self-enlist
-					result += s.apply(item, numerator - result, divisor, simulate);
+					final long request = carrier.applyRoute(fromNode, n, item, numerator - result, divisor, true);
+
+					if (request == 0) {
+						continue;
+					}
+
+					final long supplied = s.apply(item, request, divisor, simulate);
+					result += supplied;
+
+					if (!simulate && supplied != 0 && carrier.applyRoute(fromNode, n, item, supplied, divisor, false) < supplied) {
+						// not committed, so partial transfer is rolled back
+						return 0;
+					}
 
 					if (result >= numerator) {
 						break;
@@ -149,6 +208,15 @@ public class BroadcastSupplier<T extends CarrierCostFunction> implements Article
 				}
 			}
 
+			if (!simulate && result > 0) {
+				if (costFunction.apply(fromNode, item, result, divisor, false) < result) {
+					// not committed, so partial transfer is rolled back
+					return 0;
+				}
+
+				fromNode.onTransfer(item, transfer.set(result, divisor));
+			}
+
 			tx.commit();
 			return result;
 		} catch (final Exception e) {
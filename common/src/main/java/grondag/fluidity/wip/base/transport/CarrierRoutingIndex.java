@@ -0,0 +1,316 @@
+/*
+ * This file is part of Fluidity and is licensed to the project under
+ * terms that are compatible with the GNU Lesser General Public License.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership and licensing.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package grondag.fluidity.wip.base.transport;
+
+import java.util.function.Predicate;
+
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectLinkedOpenHashSet;
+import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
+import org.jetbrains.annotations.ApiStatus.Experimental;
+import org.jetbrains.annotations.Nullable;
+
+import grondag.fluidity.api.article.Article;
+import grondag.fluidity.api.article.ArticleType;
+import grondag.fluidity.api.device.DeviceComponentType;
+import grondag.fluidity.api.fraction.Fraction;
+import grondag.fluidity.api.storage.ArticleFunction;
+import grondag.fluidity.api.storage.StorageListener;
+import grondag.fluidity.api.storage.Store;
+import grondag.fluidity.wip.api.transport.CarrierNode;
+
+/**
+ * Maps articles and article types to carrier nodes likely to supply or consume them, so that
+ * carriers can find a peer without simulating a transaction against every node.
+ *
+ * <p>Nodes with a storage component that has an event stream are indexed from storage notifications.
+ * Indexed candidates are still confirmed with {@link ArticleFunction#canApply(Article)}, but usually
+ * only the first one is tried. Nodes that cannot publish their content are always scanned as a fallback,
+ * as are empty published nodes when no node holding the article or its type can consume it.  Published
+ * nodes with free capacity that hold only articles of other types are never tried as consumers, so that
+ * a miss does not simulate against every open node.
+ *
+ * <p>Not thread-safe. Owned by a carrier and updated as nodes attach and detach.
+ */
+@Experimental
+public class CarrierRoutingIndex {
+	protected final Object2ObjectOpenHashMap<CarrierNode, NodeTracker> trackers = new Object2ObjectOpenHashMap<>();
+	protected final Object2ObjectOpenHashMap<Article, ObjectLinkedOpenHashSet<CarrierNode>> byArticle = new Object2ObjectOpenHashMap<>();
+	protected final Object2ObjectOpenHashMap<ArticleType<?>, ObjectLinkedOpenHashSet<CarrierNode>> byType = new Object2ObjectOpenHashMap<>();
+
+	/** Published nodes with storage that is not full. */
+	protected final ObjectLinkedOpenHashSet<CarrierNode> openNodes = new ObjectLinkedOpenHashSet<>();
+
+	/** Published nodes with storage that is not full and holds no articles. */
+	protected final ObjectLinkedOpenHashSet<CarrierNode> emptyNodes = new ObjectLinkedOpenHashSet<>();
+
+	/** Nodes with storage that has no event stream, or no storage at all. */
+	protected final ObjectLinkedOpenHashSet<CarrierNode> unpublishedNodes = new ObjectLinkedOpenHashSet<>();
+
+	public void add(CarrierNode node) {
+		if (trackers.containsKey(node) || unpublishedNodes.contains(node)) {
+			return;
+		}
+
+		final Store store = node.getComponent(Store.STORAGE_COMPONENT).get();
+
+		if (store == null || !store.hasEventStream()) {
+			unpublishedNodes.add(node);
+			return;
+		}
+
+		final NodeTracker tracker = new NodeTracker(node, store);
+		trackers.put(node, tracker);
+		store.eventStream().startListening(tracker, true);
+		tracker.updateOpen();
+	}
+
+	public void remove(CarrierNode node) {
+		if (unpublishedNodes.remove(node)) {
+			return;
+		}
+
+		final NodeTracker tracker = trackers.get(node);
+
+		if (tracker != null) {
+			tracker.store.eventStream().stopListening(tracker, false);
+			tracker.unindex();
+		}
+	}
+
+	public void clear() {
+		for (final NodeTracker tracker : trackers.values().toArray(new NodeTracker[trackers.size()])) {
+			remove(tracker.node);
+		}
+
+		unpublishedNodes.clear();
+	}
+
+	public CarrierNode supplierOf(Article article, long requestorAddress) {
+		return supplierOf(article, requestorAddress, null);
+	}
+
+	/**
+	 * @param filter if non-null, only nodes that pass are returned
+	 */
+	public CarrierNode supplierOf(Article article, long requestorAddress, @Nullable Predicate<CarrierNode> filter) {
+		final ObjectLinkedOpenHashSet<CarrierNode> holders = byArticle.get(article);
+
+		if (holders != null) {
+			final CarrierNode result = scan(holders, null, filter, ArticleFunction.SUPPLIER_COMPONENT, article, requestorAddress);
+
+			if (result.isValid()) {
+				return result;
+			}
+		}
+
+		return scan(unpublishedNodes, null, filter, ArticleFunction.SUPPLIER_COMPONENT, article, requestorAddress);
+	}
+
+	public CarrierNode consumerOf(Article article, long requestorAddress) {
+		return consumerOf(article, requestorAddress, null);
+	}
+
+	/**
+	 * @param filter if non-null, only nodes that pass are returned
+	 */
+	public CarrierNode consumerOf(Article article, long requestorAddress, @Nullable Predicate<CarrierNode> filter) {
+		// prefer nodes already holding the article, then nodes holding the same type, then any with space
+		final ObjectLinkedOpenHashSet<CarrierNode> holders = byArticle.get(article);
+		CarrierNode result = CarrierNode.INVALID;
+
+		if (holders != null) {
+			result = scan(holders, openNodes, filter, ArticleFunction.CONSUMER_COMPONENT, article, requestorAddress);
+		}
+
+		final ObjectLinkedOpenHashSet<CarrierNode> sameType = byType.get(article.type());
+
+		if (!result.isValid() && sameType != null) {
+			result = scan(sameType, openNodes, filter, ArticleFunction.CONSUMER_COMPONENT, article, requestorAddress);
+		}
+
+		// nodes holding only other types are not expected to accept this one
+		if (!result.isValid()) {
+			result = scan(emptyNodes, null, filter, ArticleFunction.CONSUMER_COMPONENT, article, requestorAddress);
+		}
+
+		if (!result.isValid()) {
+			result = scan(unpublishedNodes, null, filter, ArticleFunction.CONSUMER_COMPONENT, article, requestorAddress);
+		}
+
+		return result;
+	}
+
+	/**
+	 * @param nodes candidates, in order of preference
+	 * @param require if non-null, candidates not in this set are skipped
+	 * @param filter if non-null, candidates that do not pass are skipped
+	 */
+	protected static CarrierNode scan(ObjectLinkedOpenHashSet<CarrierNode> nodes, ObjectLinkedOpenHashSet<CarrierNode> require, @Nullable Predicate<CarrierNode> filter,
+			DeviceComponentType<ArticleFunction> componentType, Article article, long requestorAddress) {
+		for (final CarrierNode node : nodes) {
+			if (node.nodeAddress() != requestorAddress && (require == null || require.contains(node)) && (filter == null || filter.test(node))
+					&& node.getComponent(componentType).get().canApply(article)) {
+				return node;
+			}
+		}
+
+		return CarrierNode.INVALID;
+	}
+
+	protected static <K> void addTo(Object2ObjectOpenHashMap<K, ObjectLinkedOpenHashSet<CarrierNode>> map, K key, CarrierNode node) {
+		ObjectLinkedOpenHashSet<CarrierNode> set = map.get(key);
+
+		if (set == null) {
+			set = new ObjectLinkedOpenHashSet<>();
+			map.put(key, set);
+		}
+
+		set.add(node);
+	}
+
+	protected static <K> void removeFrom(Object2ObjectOpenHashMap<K, ObjectLinkedOpenHashSet<CarrierNode>> map, K key, CarrierNode node) {
+		final ObjectLinkedOpenHashSet<CarrierNode> set = map.get(key);
+
+		if (set != null && set.remove(node) && set.isEmpty()) {
+			map.remove(key);
+		}
+	}
+
+	protected class NodeTracker implements StorageListener {
+		protected final CarrierNode node;
+		protected final Store store;
+		protected final ObjectOpenHashSet<Article> articles = new ObjectOpenHashSet<>();
+		protected final Object2IntOpenHashMap<ArticleType<?>> typeCounts = new Object2IntOpenHashMap<>();
+
+		protected NodeTracker(CarrierNode node, Store store) {
+			this.node = node;
+			this.store = store;
+		}
+
+		protected void updateOpen() {
+			if (store.isFull()) {
+				openNodes.remove(node);
+				emptyNodes.remove(node);
+			} else {
+				openNodes.add(node);
+
+				if (articles.isEmpty()) {
+					emptyNodes.add(node);
+				} else {
+					emptyNodes.remove(node);
+				}
+			}
+		}
+
+		protected void index(Article item) {
+			if (articles.add(item)) {
+				addTo(byArticle, item, node);
+
+				if (typeCounts.addTo(item.type(), 1) == 0) {
+					addTo(byType, item.type(), node);
+				}
+			}
+		}
+
+		protected void unindex(Article item) {
+			if (articles.remove(item)) {
+				removeFrom(byArticle, item, node);
+
+				if (typeCounts.addTo(item.type(), -1) == 1) {
+					typeCounts.removeInt(item.type());
+					removeFrom(byType, item.type(), node);
+				}
+			}
+		}
+
+		/** Removes all index entries for this node. */
+		protected void unindex() {
+			for (final Article item : articles) {
+				removeFrom(byArticle, item, node);
+			}
+
+			for (final ArticleType<?> type : typeCounts.keySet()) {
+				removeFrom(byType, type, node);
+			}
+
+			articles.clear();
+			typeCounts.clear();
+			openNodes.remove(node);
+			emptyNodes.remove(node);
+			trackers.remove(node);
+		}
+
+		@Override
+		public void disconnect(Store storage, boolean didNotify, boolean isValid) {
+			// can no longer rely on notifications
+			unindex();
+			unpublishedNodes.add(node);
+		}
+
+		@Override
+		public void onAccept(Store storage, int handle, Article item, long delta, long newCount) {
+			if (newCount > 0) {
+				index(item);
+			}
+
+			updateOpen();
+		}
+
+		@Override
+		public void onSupply(Store storage, int handle, Article item, long delta, long newCount) {
+			if (newCount == 0) {
+				unindex(item);
+			}
+
+			updateOpen();
+		}
+
+		@Override
+		public void onCapacityChange(Store storage, long capacityDelta) {
+			updateOpen();
+		}
+
+		@Override
+		public void onAccept(Store storage, int handle, Article item, Fraction delta, Fraction newVolume) {
+			if (!newVolume.isZero()) {
+				index(item);
+			}
+
+			updateOpen();
+		}
+
+		@Override
+		public void onSupply(Store storage, int handle, Article item, Fraction delta, Fraction newVolume) {
+			if (newVolume.isZero()) {
+				unindex(item);
+			}
+
+			updateOpen();
+		}
+
+		@Override
+		public void onCapacityChange(Store storage, Fraction capacityDelta) {
+			updateOpen();
+		}
+	}
+}
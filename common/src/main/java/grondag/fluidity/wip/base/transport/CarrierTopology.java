@@ -0,0 +1,258 @@
+/*
+ * This file is part of Fluidity and is licensed to the project under
+ * terms that are compatible with the GNU Lesser General Public License.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership and licensing.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package grondag.fluidity.wip.base.transport;
+
+import java.util.Comparator;
+
+import com.google.common.base.Preconditions;
+import it.unimi.dsi.fastutil.objects.Object2DoubleMap;
+import it.unimi.dsi.fastutil.objects.Object2DoubleOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectHeapPriorityQueue;
+import org.jetbrains.annotations.ApiStatus.Experimental;
+
+/**
+ * Undirected graph of links between carrier segments with a non-negative cost for each link.
+ * Shortest paths from each source are computed on demand and cached.
+ *
+ * <p>Changes only discard cached paths they can affect: a new or cheaper link discards paths from sources
+ * that reach one end of the link more cheaply through the other end, and removing a link discards paths
+ * from sources whose shortest path tree uses it.  Cached paths from all other sources remain valid.
+ *
+ * <p>Not thread-safe.
+ *
+ * @param <C> segment type
+ */
+@Experimental
+public class CarrierTopology<C> {
+	protected final Object2ObjectOpenHashMap<C, Object2DoubleOpenHashMap<C>> links = new Object2ObjectOpenHashMap<>();
+	protected final Object2ObjectOpenHashMap<C, PathTree<C>> trees = new Object2ObjectOpenHashMap<>();
+
+	public boolean isEmpty() {
+		return links.isEmpty();
+	}
+
+	public boolean contains(C segment) {
+		return links.containsKey(segment);
+	}
+
+	/**
+	 * Adds a link between two segments or changes the cost of an existing link.
+	 *
+	 * @param a segment at one end
+	 * @param b segment at other end, must be different from {@code a}
+	 * @param cost cost of moving articles across the link, must be >= 0
+	 */
+	public void link(C a, C b, double cost) {
+		Preconditions.checkArgument(a != b, "Carrier segment cannot be linked to itself");
+		Preconditions.checkArgument(cost >= 0, "Carrier link cost must be >= 0");
+
+		final Object2DoubleOpenHashMap<C> fromA = linksOf(a);
+		final double prior = fromA.getOrDefault(b, Double.NaN);
+
+		if (prior == cost) {
+			return;
+		}
+
+		if (prior < cost) {
+			// more expensive - same as removal for paths that use it
+			discardTreesUsing(a, b);
+		}
+
+		fromA.put(b, cost);
+		linksOf(b).put(a, cost);
+
+		trees.values().removeIf(t -> {
+			final double da = t.cost(a);
+			final double db = t.cost(b);
+			return da + cost < db || db + cost < da;
+		});
+	}
+
+	public void unlink(C a, C b) {
+		final Object2DoubleOpenHashMap<C> fromA = links.get(a);
+
+		if (fromA == null || !fromA.containsKey(b)) {
+			return;
+		}
+
+		discardTreesUsing(a, b);
+		removeDirected(a, b);
+		removeDirected(b, a);
+	}
+
+	/** Removes the segment and all links to it. */
+	public void remove(C segment) {
+		final Object2DoubleOpenHashMap<C> fromSegment = links.get(segment);
+
+		if (fromSegment != null) {
+			for (final C other : new ObjectArrayList<>(fromSegment.keySet())) {
+				unlink(segment, other);
+			}
+		}
+
+		links.remove(segment);
+		trees.remove(segment);
+	}
+
+	/**
+	 * Cost of the cheapest path between segments.
+	 *
+	 * @return zero if segments are the same, {@link Double#POSITIVE_INFINITY} if not connected
+	 */
+	public double cost(C from, C to) {
+		return from == to ? 0 : tree(from).cost(to);
+	}
+
+	/**
+	 * Cheapest path between segments.
+	 *
+	 * @param into receives segments on the path, starting with {@code from} and ending with {@code to}.
+	 * Cleared before use, and left empty if segments are not connected.
+	 * @return {@code into}
+	 */
+	public ObjectArrayList<C> path(C from, C to, ObjectArrayList<C> into) {
+		into.clear();
+
+		if (from == to) {
+			into.add(from);
+			return into;
+		}
+
+		final PathTree<C> tree = tree(from);
+
+		if (tree.cost(to) == Double.POSITIVE_INFINITY) {
+			return into;
+		}
+
+		for (C c = to; c != null; c = tree.previous.get(c)) {
+			into.add(c);
+		}
+
+		// built from the end
+		final int limit = into.size();
+
+		for (int i = 0, j = limit - 1; i < j; ++i, --j) {
+			final C swap = into.get(i);
+			into.set(i, into.get(j));
+			into.set(j, swap);
+		}
+
+		return into;
+	}
+
+	/**
+	 * Shortest path tree from the given source, computed if not cached. The same instance
+	 * is returned until a change discards it, so callers can cache results derived from it.
+	 */
+	public PathTree<C> tree(C from) {
+		PathTree<C> result = trees.get(from);
+
+		if (result == null) {
+			result = new PathTree<>(from, links);
+			trees.put(from, result);
+		}
+
+		return result;
+	}
+
+	protected Object2DoubleOpenHashMap<C> linksOf(C segment) {
+		Object2DoubleOpenHashMap<C> result = links.get(segment);
+
+		if (result == null) {
+			result = new Object2DoubleOpenHashMap<>();
+			links.put(segment, result);
+		}
+
+		return result;
+	}
+
+	protected void removeDirected(C a, C b) {
+		final Object2DoubleOpenHashMap<C> fromA = links.get(a);
+		fromA.removeDouble(b);
+
+		if (fromA.isEmpty()) {
+			links.remove(a);
+			trees.remove(a);
+		}
+	}
+
+	protected void discardTreesUsing(C a, C b) {
+		trees.values().removeIf(t -> t.previous.get(b) == a || t.previous.get(a) == b);
+	}
+
+	public static class PathTree<C> {
+		protected final Object2DoubleOpenHashMap<C> costs = new Object2DoubleOpenHashMap<>();
+		protected final Object2ObjectOpenHashMap<C, C> previous = new Object2ObjectOpenHashMap<>();
+
+		protected PathTree(C source, Object2ObjectOpenHashMap<C, Object2DoubleOpenHashMap<C>> links) {
+			costs.defaultReturnValue(Double.POSITIVE_INFINITY);
+			costs.put(source, 0);
+
+			// Dijkstra with lazy deletion of stale queue entries
+			final ObjectHeapPriorityQueue<Entry<C>> queue = new ObjectHeapPriorityQueue<>(Comparator.comparingDouble((Entry<C> e) -> e.cost));
+			queue.enqueue(new Entry<>(source, 0));
+
+			while (!queue.isEmpty()) {
+				final Entry<C> e = queue.dequeue();
+
+				if (e.cost > costs.getDouble(e.segment)) {
+					continue;
+				}
+
+				final Object2DoubleOpenHashMap<C> next = links.get(e.segment);
+
+				if (next == null) {
+					continue;
+				}
+
+				for (final Object2DoubleMap.Entry<C> link : next.object2DoubleEntrySet()) {
+					final double cost = e.cost + link.getDoubleValue();
+					final C c = link.getKey();
+
+					if (cost < costs.getDouble(c)) {
+						costs.put(c, cost);
+						previous.put(c, e.segment);
+						queue.enqueue(new Entry<>(c, cost));
+					}
+				}
+			}
+		}
+
+		/**
+		 * @return cost of cheapest path from the source, or {@link Double#POSITIVE_INFINITY} if not connected
+		 */
+		public double cost(C segment) {
+			return costs.getDouble(segment);
+		}
+	}
+
+	protected static class Entry<C> {
+		protected final C segment;
+		protected final double cost;
+
+		protected Entry(C segment, double cost) {
+			this.segment = segment;
+			this.cost = cost;
+		}
+	}
+}
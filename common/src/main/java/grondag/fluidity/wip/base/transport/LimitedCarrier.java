@@ -20,8 +20,46 @@
 
 package grondag.fluidity.wip.base.transport;
 
+import grondag.fluidity.api.article.Article;
+import grondag.fluidity.api.fraction.Fraction;
 import grondag.fluidity.wip.api.transport.Carrier;
+import grondag.fluidity.wip.api.transport.CarrierNode;
+import grondag.fluidity.wip.api.transport.CarrierSession;
 
 public interface LimitedCarrier<T extends CarrierCostFunction> extends Carrier {
 	T costFunction();
+
+	/**
+	 * Distribution used by broadcasts to this carrier. Implementations should retain
+	 * the same instance so that distribution state persists across broadcasts.
+	 * The default implementation is stateless and visits nodes in carrier order.
+	 */
+	default BroadcastDistribution broadcastDistribution() {
+		return BroadcastDistribution.inOrder();
+	}
+
+	/**
+	 * Limits an amount moved between a session and a peer by constraints on the route between them,
+	 * in addition to {@link #costFunction()}. The default implementation has no routes and no limits.
+	 *
+	 * @param sender session requesting the transfer, in either direction
+	 * @param peer node at the other end of the transfer
+	 * @param item article to be moved
+	 * @param count amount to be moved
+	 * @param simulate if true, will forecast result without consuming route capacity
+	 * @return amount that can be moved, zero if the peer cannot be reached
+	 */
+	default long applyRoute(CarrierSession sender, CarrierNode peer, Article item, long count, boolean simulate) {
+		return count;
+	}
+
+	/** Same as {@link #applyRoute(CarrierSession, CarrierNode, Article, long, boolean)} for bulk articles. */
+	default Fraction applyRoute(CarrierSession sender, CarrierNode peer, Article item, Fraction volume, boolean simulate) {
+		return volume;
+	}
+
+	/** Same as {@link #applyRoute(CarrierSession, CarrierNode, Article, long, boolean)} for bulk articles. */
+	default long applyRoute(CarrierSession sender, CarrierNode peer, Article item, long numerator, long divisor, boolean simulate) {
+		return numerator;
+	}
 }
@@ -20,6 +20,8 @@
 
 package grondag.fluidity.wip.base.transport;
 
+import grondag.fluidity.api.article.Article;
+import grondag.fluidity.api.fraction.Fraction;
 import grondag.fluidity.wip.api.transport.CarrierSession;
 
 /**
@@ -29,4 +31,14 @@ import grondag.fluidity.wip.api.transport.CarrierSession;
 public interface LimitedCarrierSession<T extends CarrierCostFunction> extends CarrierSession {
 	@Override
 	LimitedCarrier<T> carrier();
+
+	/**
+	 * Called by broadcast functions of this session after articles are transferred, except when simulating.
+	 * Called within the transaction of the transfer, so implementations that track transfers
+	 * should enlist and restore prior state if the transaction is rolled back.
+	 *
+	 * @param item article transferred
+	 * @param amount amount transferred, with discrete articles counted as whole units
+	 */
+	default void onTransfer(Article item, Fraction amount) { }
 }
@@ -0,0 +1,153 @@
+/*
+ * This file is part of Fluidity and is licensed to the project under
+ * terms that are compatible with the GNU Lesser General Public License.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership and licensing.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package grondag.fluidity.wip.base.transport;
+
+import java.util.function.Consumer;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import org.jetbrains.annotations.ApiStatus.Experimental;
+
+import grondag.fluidity.api.article.Article;
+import grondag.fluidity.api.fraction.Fraction;
+import grondag.fluidity.api.fraction.MutableFraction;
+import grondag.fluidity.api.transact.TransactionContext;
+import grondag.fluidity.api.transact.TransactionParticipant.TransactionDelegate;
+import grondag.fluidity.base.transact.LazyRollbackHandler;
+import grondag.fluidity.wip.api.transport.CarrierSession;
+
+/**
+ * Cost function that limits throughput to an available amount, replenished by sub-types.
+ * Discrete articles count as whole units of the same amount.
+ *
+ * <p>Consumption of available throughput is journaled and restored if the transaction that
+ * consumed it is rolled back, so carrier transfers can be attempted directly without first
+ * simulating them.  Replenishment is never rolled back.
+ *
+ * <p>Not thread-safe. Expected to be used only on the server thread.
+ */
+@Experimental
+public abstract class ThroughputLimitedCostFunction implements CarrierCostFunction, TransactionDelegate {
+	protected final LazyRollbackHandler rollbackHandler = new LazyRollbackHandler(this::createRollbackState, this::applyRollbackState, this);
+	protected final MutableFraction available = new MutableFraction();
+
+	/** Saved values of {@link #available} for open transactions, innermost last. */
+	protected final ObjectArrayList<MutableFraction> journal = new ObjectArrayList<>();
+
+	/**
+	 * Called before each request. Implementations should call {@link #replenish(Fraction)}
+	 * with any throughput that has become available since the last call.
+	 */
+	protected abstract void refill();
+
+	/**
+	 * Adds to available throughput. Also added to saved state of open transactions
+	 * so that replenishment is retained if they are rolled back.
+	 *
+	 * @param amount throughput to add, may be negative to reduce available throughput
+	 */
+	protected void replenish(Fraction amount) {
+		available.add(amount);
+
+		for (final MutableFraction saved : journal) {
+			saved.add(amount);
+		}
+	}
+
+	/** Throughput that can be consumed by the next request. */
+	public Fraction available() {
+		refill();
+		return available;
+	}
+
+	@Override
+	public long apply(CarrierSession sender, Article item, long count, boolean simulate) {
+		refill();
+		final long result = Math.min(count, Math.max(0, available.whole()));
+
+		if (!simulate && result > 0) {
+			rollbackHandler.prepareIfNeeded();
+			available.subtract(result);
+		}
+
+		return result;
+	}
+
+	@Override
+	public Fraction apply(CarrierSession sender, Article item, Fraction volume, boolean simulate) {
+		refill();
+
+		if (available.isNegative() || available.isZero()) {
+			return Fraction.ZERO;
+		}
+
+		final Fraction result = volume.isGreaterThan(available) ? available.toImmutable() : volume.toImmutable();
+
+		if (!simulate && !result.isZero()) {
+			rollbackHandler.prepareIfNeeded();
+			available.subtract(result);
+		}
+
+		return result;
+	}
+
+	@Override
+	public long apply(CarrierSession sender, Article item, long numerator, long divisor, boolean simulate) {
+		refill();
+		final long result = Math.min(numerator, Math.max(0, available.toLong(divisor)));
+
+		if (!simulate && result > 0) {
+			rollbackHandler.prepareIfNeeded();
+			available.subtract(result, divisor);
+		}
+
+		return result;
+	}
+
+	protected Object createRollbackState() {
+		final MutableFraction result = new MutableFraction(available);
+		journal.add(result);
+		return result;
+	}
+
+	protected void applyRollbackState(Object state, boolean isCommitted) {
+		// transactions close innermost first, and saved values may be equal, so search by identity from the end
+		for (int i = journal.size() - 1; i >= 0; --i) {
+			if (journal.get(i) == state) {
+				journal.remove(i);
+				break;
+			}
+		}
+
+		if (!isCommitted) {
+			available.set((Fraction) state);
+		}
+	}
+
+	@Override
+	public TransactionDelegate getTransactionDelegate() {
+		return this;
+	}
+
+	@Override
+	public Consumer<TransactionContext> prepareRollback(TransactionContext context) {
+		return rollbackHandler.prepareExternal(context);
+	}
+}
@@ -0,0 +1,309 @@
+/*
+ * This file is part of Fluidity and is licensed to the project under
+ * terms that are compatible with the GNU Lesser General Public License.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership and licensing.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package grondag.fluidity.wip.base.transport;
+
+import com.google.common.base.Preconditions;
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import org.jetbrains.annotations.ApiStatus.Experimental;
+import org.jetbrains.annotations.Nullable;
+
+import grondag.fluidity.api.article.Article;
+import grondag.fluidity.api.article.ArticleType;
+import grondag.fluidity.api.fraction.Fraction;
+import grondag.fluidity.api.fraction.MutableFraction;
+import grondag.fluidity.wip.api.transport.CarrierSession;
+
+/**
+ * Limits throughput of a carrier per server tick with a token bucket for each article type.
+ * Each bucket gains a fixed amount every tick, up to a maximum that allows for bursts.
+ * Discrete articles count as whole units, so a limit of 8 for items allows 8 items per tick.
+ * Article types without a limit use the default limit, or are unlimited if there is no default.
+ *
+ * <p>With fair sharing enabled, each sending session is limited per tick to an equal share
+ * of the bucket rate, divided by the number of sessions that sent in the prior tick.
+ *
+ * <p>Transaction-aware: consumption of tokens and fair-share usage are restored when
+ * transfers are rolled back.  Each instance should be used by only one carrier.
+ */
+@Experimental
+public class TokenBucketCostFunction implements CarrierCostFunction {
+	protected final Reference2ObjectOpenHashMap<ArticleType<?>, Bucket> buckets = new Reference2ObjectOpenHashMap<>();
+	protected final boolean fairSharing;
+	@Nullable protected Bucket defaultBucket = null;
+
+	/**
+	 * @param fairSharing true to divide throughput evenly among sending sessions
+	 */
+	public TokenBucketCostFunction(boolean fairSharing) {
+		this.fairSharing = fairSharing;
+	}
+
+	/**
+	 * Sets the limit for an article type, replacing any existing limit. Tokens accumulated
+	 * under a prior limit are discarded and the new bucket starts full.
+	 *
+	 * @param type article type to be limited
+	 * @param ratePerTick amount added to the bucket each tick. Must be > 0
+	 * @param capacity maximum bucket content, allowing bursts. Must be >= ratePerTick
+	 * @return this instance
+	 */
+	public TokenBucketCostFunction setLimit(ArticleType<?> type, Fraction ratePerTick, Fraction capacity) {
+		buckets.put(type, new Bucket(ratePerTick, capacity, fairSharing));
+		return this;
+	}
+
+	/** Sets the limit for an article type in whole units without bursts. */
+	public TokenBucketCostFunction setLimit(ArticleType<?> type, long unitsPerTick) {
+		final Fraction rate = Fraction.of(unitsPerTick);
+		return setLimit(type, rate, rate);
+	}
+
+	/**
+	 * Sets the limit for article types without a specific limit.
+	 *
+	 * @param ratePerTick amount added to the bucket each tick. Must be > 0
+	 * @param capacity maximum bucket content, allowing bursts. Must be >= ratePerTick
+	 * @return this instance
+	 */
+	public TokenBucketCostFunction setDefaultLimit(Fraction ratePerTick, Fraction capacity) {
+		defaultBucket = new Bucket(ratePerTick, capacity, fairSharing);
+		return this;
+	}
+
+	/** Removes the limit for an article type. It will use the default limit, if any. */
+	public TokenBucketCostFunction clearLimit(ArticleType<?> type) {
+		buckets.remove(type);
+		return this;
+	}
+
+	protected @Nullable Bucket bucket(Article item) {
+		final Bucket result = buckets.get(item.type());
+		return result == null ? defaultBucket : result;
+	}
+
+	/**
+	 * Amount that can be sent now by the given session. Useful for devices that
+	 * want to size requests to the limit.
+	 *
+	 * @param sender session that would send
+	 * @param type article type that would be sent
+	 * @return available amount, or {@link Fraction#MAX_VALUE} if not limited
+	 */
+	public Fraction available(CarrierSession sender, ArticleType<?> type) {
+		final Bucket bucket = buckets.getOrDefault(type, defaultBucket);
+		return bucket == null ? Fraction.MAX_VALUE : bucket.allowance(sender).toImmutable();
+	}
+
+	@Override
+	public long apply(CarrierSession sender, Article item, long count, boolean simulate) {
+		final Bucket bucket = bucket(item);
+		return bucket == null ? count : bucket.apply(sender, item, count, simulate);
+	}
+
+	@Override
+	public Fraction apply(CarrierSession sender, Article item, Fraction volume, boolean simulate) {
+		final Bucket bucket = bucket(item);
+		return bucket == null ? volume.toImmutable() : bucket.apply(sender, item, volume, simulate);
+	}
+
+	@Override
+	public long apply(CarrierSession sender, Article item, long numerator, long divisor, boolean simulate) {
+		final Bucket bucket = bucket(item);
+		return bucket == null ? numerator : bucket.apply(sender, item, numerator, divisor, simulate);
+	}
+
+	/** Buckets are self-enlisting and this instance has no other state. */
+	@Override
+	public TransactionDelegate getTransactionDelegate() {
+		return TransactionDelegate.IGNORE;
+	}
+
+	private static long serverTick = 0;
+
+	/** Advances the tick used for all buckets. Called at the end of each server tick. */
+	public static void onServerTick() {
+		++serverTick;
+	}
+
+	protected static class Bucket extends ThroughputLimitedCostFunction {
+		protected final Fraction rate;
+		protected final Fraction capacity;
+		protected final boolean fairSharing;
+		/** Ticks needed to fill an empty bucket, limits elapsed ticks used in refill calculation. */
+		protected final long ticksToFill;
+		protected final MutableFraction calc = new MutableFraction();
+		protected final MutableFraction share = new MutableFraction();
+		protected long lastTick;
+
+		/** Amount sent by each session in the current tick. Copied when saved for rollback. */
+		protected Object2ObjectOpenHashMap<CarrierSession, Fraction> used = new Object2ObjectOpenHashMap<>();
+		protected int priorSenderCount = 0;
+
+		protected Bucket(Fraction rate, Fraction capacity, boolean fairSharing) {
+			Preconditions.checkArgument(!rate.isZero() && !rate.isNegative(), "Token bucket rate must be > 0");
+			Preconditions.checkArgument(capacity.isGreaterThanOrEqual(rate), "Token bucket capacity must be >= rate");
+			this.rate = rate.toImmutable();
+			this.capacity = capacity.toImmutable();
+			this.fairSharing = fairSharing;
+			ticksToFill = (long) Math.ceil(capacity.toDouble() / rate.toDouble());
+			lastTick = serverTick;
+			available.set(capacity);
+		}
+
+		@Override
+		protected void refill() {
+			final long now = serverTick;
+
+			if (now == lastTick) {
+				return;
+			}
+
+			final long elapsed = Math.min(now - lastTick, ticksToFill);
+			lastTick = now;
+
+			// never more than capacity
+			calc.set(rate).multiply(elapsed);
+			share.set(capacity).subtract(available);
+
+			if (calc.isGreaterThan(share)) {
+				calc.set(share);
+			}
+
+			if (!calc.isZero() && !calc.isNegative()) {
+				replenish(calc);
+			}
+
+			if (fairSharing) {
+				priorSenderCount = used.size();
+				used = new Object2ObjectOpenHashMap<>();
+			}
+		}
+
+		/** Amount the session can send now, considering fair share. Result is reused. */
+		protected Fraction allowance(CarrierSession sender) {
+			refill();
+
+			if (!fairSharing || priorSenderCount <= 1) {
+				return available;
+			}
+
+			share.set(rate).multiply(1, priorSenderCount);
+			final Fraction prior = used.get(sender);
+
+			if (prior != null) {
+				share.subtract(prior);
+			}
+
+			if (share.isNegative()) {
+				share.set(0);
+			}
+
+			return share.isGreaterThan(available) ? available : share;
+		}
+
+		protected void recordUse(CarrierSession sender, Fraction amount) {
+			if (fairSharing) {
+				final Fraction prior = used.get(sender);
+				used.put(sender, prior == null ? amount.toImmutable() : prior.withAddition(amount));
+			}
+		}
+
+		@Override
+		public long apply(CarrierSession sender, Article item, long count, boolean simulate) {
+			final long limit = Math.max(0, allowance(sender).whole());
+			final long result = super.apply(sender, item, Math.min(count, limit), simulate);
+
+			if (!simulate && result > 0) {
+				recordUse(sender, Fraction.of(result));
+			}
+
+			return result;
+		}
+
+		@Override
+		public Fraction apply(CarrierSession sender, Article item, Fraction volume, boolean simulate) {
+			final Fraction limit = allowance(sender);
+			final Fraction result = super.apply(sender, item, volume.isGreaterThan(limit) ? limit.toImmutable() : volume, simulate);
+
+			if (!simulate && !result.isZero()) {
+				recordUse(sender, result);
+			}
+
+			return result;
+		}
+
+		@Override
+		public long apply(CarrierSession sender, Article item, long numerator, long divisor, boolean simulate) {
+			final long limit = Math.max(0, allowance(sender).toLong(divisor));
+			final long result = super.apply(sender, item, Math.min(numerator, limit), divisor, simulate);
+
+			if (!simulate && result > 0) {
+				recordUse(sender, Fraction.of(result, divisor));
+			}
+
+			return result;
+		}
+
+		@Override
+		protected Object createRollbackState() {
+			if (!fairSharing) {
+				return new BucketState(super.createRollbackState(), null, lastTick);
+			}
+
+			// saved map is never changed - later changes go to a copy
+			final BucketState result = new BucketState(super.createRollbackState(), used, lastTick);
+			used = new Object2ObjectOpenHashMap<>(used);
+			return result;
+		}
+
+		@Override
+		protected void applyRollbackState(Object state, boolean isCommitted) {
+			final BucketState s = (BucketState) state;
+			super.applyRollbackState(s.available, isCommitted);
+
+			if (!isCommitted) {
+				// refills during the transaction were added to the saved amount but capped against the consumed amount
+				if (available.isGreaterThan(capacity)) {
+					available.set(capacity);
+				}
+
+				if (s.used != null) {
+					// usage saved in an earlier tick was discarded by refill, and all usage since then is rolled back
+					used = s.tick == lastTick ? s.used : new Object2ObjectOpenHashMap<>();
+				}
+			}
+		}
+	}
+
+	protected static class BucketState {
+		protected final Object available;
+		@Nullable protected final Object2ObjectOpenHashMap<CarrierSession, Fraction> used;
+		/** Tick of last refill when saved. */
+		protected final long tick;
+
+		protected BucketState(Object available, @Nullable Object2ObjectOpenHashMap<CarrierSession, Fraction> used, long tick) {
+			this.available = available;
+			this.used = used;
+			this.tick = tick;
+		}
+	}
+}
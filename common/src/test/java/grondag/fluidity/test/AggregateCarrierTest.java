@@ -0,0 +1,180 @@
+package grondag.fluidity.test;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import net.minecraft.SharedConstants;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.world.item.Items;
+
+import grondag.fluidity.api.article.Article;
+import grondag.fluidity.base.storage.discrete.FlexibleDiscreteStore;
+import grondag.fluidity.impl.TransactionImpl;
+import grondag.fluidity.impl.article.ArticleTypeImpl;
+import grondag.fluidity.wip.api.transport.CarrierSession;
+import grondag.fluidity.wip.api.transport.CarrierType;
+import grondag.fluidity.wip.base.transport.AggregateCarrier;
+import grondag.fluidity.wip.base.transport.CarrierTopology;
+import grondag.fluidity.wip.base.transport.SubCarrier;
+
+class AggregateCarrierTest {
+	static Article stone;
+
+	@BeforeAll
+	static void bootstrap() {
+		SharedConstants.tryDetectVersion();
+		Bootstrap.bootStrap();
+		ArticleTypeImpl.init();
+		TransactionImpl.setServerThread(Thread.currentThread());
+		stone = Article.of(Items.STONE);
+	}
+
+	@Test
+	void topologyCacheInvalidation() {
+		final CarrierTopology<String> topology = new CarrierTopology<>();
+		final ObjectArrayList<String> path = new ObjectArrayList<>();
+		topology.link("a", "b", 1);
+		topology.link("b", "c", 1);
+		topology.link("a", "c", 5);
+		topology.link("d", "e", 1);
+
+		final CarrierTopology.PathTree<String> unrelated = topology.tree("d");
+		CarrierTopology.PathTree<String> tree = topology.tree("a");
+		assert tree.cost("c") == 2;
+		assert topology.tree("a") == tree;
+
+		// cheaper link
+		topology.link("a", "c", 1);
+		assert topology.tree("a") != tree;
+		assert topology.cost("a", "c") == 1;
+		assert topology.path("a", "c", path).size() == 2;
+
+		// dearer link
+		tree = topology.tree("a");
+		topology.link("a", "c", 5);
+		assert topology.tree("a") != tree;
+		assert topology.cost("a", "c") == 2;
+		assert topology.path("a", "c", path).equals(ObjectArrayList.wrap(new String[] {"a", "b", "c"}));
+
+		// a dearer link not on any cached path keeps cached trees
+		tree = topology.tree("a");
+		topology.link("a", "c", 6);
+		assert topology.tree("a") == tree;
+
+		// unlink
+		topology.unlink("b", "c");
+		assert topology.tree("a") != tree;
+		assert topology.cost("a", "c") == 6;
+		topology.unlink("a", "c");
+		assert topology.cost("a", "c") == Double.POSITIVE_INFINITY;
+		assert topology.path("a", "c", path).isEmpty();
+
+		// remove
+		assert topology.cost("a", "b") == 1;
+		topology.remove("b");
+		assert topology.cost("a", "b") == Double.POSITIVE_INFINITY;
+		assert !topology.contains("b");
+
+		assert topology.tree("d") == unrelated;
+		assert unrelated.cost("e") == 1;
+	}
+
+	static class Segment extends SubCarrier<CarrierCostTest.TestCostFunction> {
+		final CarrierCostTest.TestCostFunction cost = new CarrierCostTest.TestCostFunction();
+
+		Segment(long capacity) {
+			super(CarrierType.EMPTY);
+			cost.pending = capacity;
+		}
+
+		@Override
+		public CarrierCostTest.TestCostFunction costFunction() {
+			return cost;
+		}
+
+		long available() {
+			return cost.available().whole();
+		}
+	}
+
+	static class Aggregate extends AggregateCarrier<CarrierCostTest.TestCostFunction> {
+		final CarrierCostTest.TestCostFunction cost = new CarrierCostTest.TestCostFunction();
+
+		Aggregate() {
+			super(CarrierType.EMPTY);
+		}
+
+		@Override
+		public CarrierCostTest.TestCostFunction costFunction() {
+			return cost;
+		}
+	}
+
+	/** Chain s0 - s1 - s2 with a detour from s0 to s3 and an isolated s4. */
+	static Segment[] segments(Aggregate aggregate) {
+		final Segment[] result = {new Segment(10), new Segment(4), new Segment(10), new Segment(10), new Segment(10)};
+
+		for (final Segment s : result) {
+			aggregate.addCarrier(s);
+		}
+
+		aggregate.link(result[0], result[1], 1);
+		aggregate.link(result[1], result[2], 1);
+		aggregate.link(result[0], result[3], 5);
+		return result;
+	}
+
+	@Test
+	void applyRouteChargesEverySegment() {
+		final Aggregate aggregate = new Aggregate();
+		final Segment[] s = segments(aggregate);
+		final CarrierSession sender = s[0].attach(t -> t.getAbsentAccess());
+		final CarrierSession peer = s[2].attach(t -> t.getAbsentAccess());
+		final CarrierSession isolated = s[4].attach(t -> t.getAbsentAccess());
+
+		assert aggregate.routeCost(sender, peer) == 2;
+
+		// limited by the narrowest segment, and simulation consumes nothing
+		assert aggregate.applyRoute(sender, peer, stone, 8, true) == 4;
+		assert s[0].available() == 10 && s[1].available() == 4 && s[2].available() == 10;
+
+		assert aggregate.applyRoute(sender, peer, stone, 8, false) == 4;
+		assert s[0].available() == 6 && s[1].available() == 0 && s[2].available() == 6;
+		assert s[3].available() == 10 && s[4].available() == 10;
+
+		// nothing left on the middle segment
+		assert aggregate.applyRoute(sender, peer, stone, 1, false) == 0;
+		assert s[0].available() == 6 && s[2].available() == 6;
+
+		assert aggregate.routeCost(sender, isolated) == Double.POSITIVE_INFINITY;
+		assert aggregate.applyRoute(sender, isolated, stone, 1, false) == 0;
+	}
+
+	@Test
+	void lookupSkipsUnreachableNodes() {
+		final Aggregate aggregate = new Aggregate();
+		final Segment[] s = segments(aggregate);
+		final CarrierSession sender = s[0].attach(t -> t.getAbsentAccess());
+
+		// unreachable candidates attached first so they would be found first without routing
+		final FlexibleDiscreteStore farFull = new FlexibleDiscreteStore(10);
+		farFull.getConsumer().apply(stone, 5, false);
+		final CarrierSession farNode = CarrierRoutingTest.attach(s[4], farFull);
+		CarrierRoutingTest.attach(s[4], new FlexibleDiscreteStore(10));
+
+		assert !aggregate.supplierOf(stone, sender.nodeAddress()).isValid();
+		assert !aggregate.consumerOf(stone, sender.nodeAddress()).isValid();
+
+		final FlexibleDiscreteStore near = new FlexibleDiscreteStore(10);
+		near.getConsumer().apply(stone, 5, false);
+		final CarrierSession nearNode = CarrierRoutingTest.attach(s[2], near);
+		assert aggregate.supplierOf(stone, sender.nodeAddress()) == nearNode;
+		assert aggregate.consumerOf(stone, sender.nodeAddress()) == nearNode;
+
+		// linking makes the other segment reachable
+		aggregate.unlink(s[1], s[2]);
+		aggregate.link(s[0], s[4], 1);
+		assert aggregate.supplierOf(stone, sender.nodeAddress()) == farNode;
+	}
+}
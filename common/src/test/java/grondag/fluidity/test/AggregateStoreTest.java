@@ -0,0 +1,392 @@
+package grondag.fluidity.test;
+
+import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import net.minecraft.SharedConstants;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.world.item.Items;
+import net.minecraft.world.level.Level;
+
+import grondag.fluidity.api.article.Article;
+import grondag.fluidity.api.multiblock.MultiBlockMember;
+import grondag.fluidity.api.storage.Store;
+import grondag.fluidity.api.transact.Transaction;
+import grondag.fluidity.base.multiblock.AbstractStorageMultiBlock;
+import grondag.fluidity.base.storage.discrete.AggregateDiscreteStore;
+import grondag.fluidity.base.storage.discrete.DiscreteStorageListener;
+import grondag.fluidity.base.storage.discrete.FlexibleDiscreteStore;
+import grondag.fluidity.impl.TransactionImpl;
+import grondag.fluidity.impl.article.ArticleTypeImpl;
+
+class AggregateStoreTest {
+	static Article stone;
+	static Article dirt;
+
+	@BeforeAll
+	static void bootstrap() {
+		SharedConstants.tryDetectVersion();
+		Bootstrap.bootStrap();
+		ArticleTypeImpl.init();
+		TransactionImpl.setServerThread(Thread.currentThread());
+		stone = Article.of(Items.STONE);
+		dirt = Article.of(Items.DIRT);
+	}
+
+	/** Counts article notifications and tracks the net amount reported for each article. */
+	static class Recorder implements DiscreteStorageListener {
+		final Object2LongOpenHashMap<Article> net = new Object2LongOpenHashMap<>();
+		int notifications = 0;
+		long capacity = 0;
+
+		@Override
+		public void disconnect(Store storage, boolean didNotify, boolean isValid) {
+			// NOOP
+		}
+
+		@Override
+		public void onAccept(Store storage, int handle, Article item, long delta, long newCount) {
+			++notifications;
+			net.addTo(item, delta);
+		}
+
+		@Override
+		public void onSupply(Store storage, int handle, Article item, long delta, long newCount) {
+			++notifications;
+			net.addTo(item, -delta);
+		}
+
+		@Override
+		public void onCapacityChange(Store storage, long capacityDelta) {
+			capacity += capacityDelta;
+		}
+
+		void reset() {
+			net.clear();
+			notifications = 0;
+		}
+	}
+
+	static AggregateDiscreteStore coalescing(Recorder recorder, Store... members) {
+		final AggregateDiscreteStore aggregate = new AggregateDiscreteStore();
+
+		for (final Store store : members) {
+			aggregate.addStore(store);
+		}
+
+		aggregate.coalesceNotifications(true);
+		aggregate.eventStream().startListening(recorder, false);
+		return aggregate;
+	}
+
+	@Test
+	void coalescedRootCommit() {
+		final FlexibleDiscreteStore member = new FlexibleDiscreteStore(1000);
+		final Recorder recorder = new Recorder();
+		final AggregateDiscreteStore aggregate = coalescing(recorder, member);
+
+		try (var tx = Transaction.open()) {
+			member.getConsumer().apply(stone, 10, false);
+			member.getSupplier().apply(stone, 4, false);
+			member.getConsumer().apply(dirt, 3, false);
+			member.getSupplier().apply(dirt, 3, false);
+			assert recorder.notifications == 0;
+			tx.commit();
+		}
+
+		assert recorder.notifications == 1;
+		assert recorder.net.getLong(stone) == 6;
+		assert !recorder.net.containsKey(dirt);
+		assert aggregate.count() == 6;
+	}
+
+	@Test
+	void coalescedRootRollback() {
+		final FlexibleDiscreteStore member = new FlexibleDiscreteStore(1000);
+		member.getConsumer().apply(dirt, 5, false);
+		final Recorder recorder = new Recorder();
+		final AggregateDiscreteStore aggregate = coalescing(recorder, member);
+
+		try (var tx = Transaction.open()) {
+			member.getConsumer().apply(stone, 10, false);
+			member.getSupplier().apply(dirt, 2, false);
+			tx.rollback();
+		}
+
+		// reversals applied by the member during close must not be sent either
+		assert recorder.notifications == 0;
+		assert aggregate.count() == 5;
+		assert member.count() == 5;
+
+		// nothing is left over to be sent with the next change
+		member.getConsumer().apply(dirt, 1, false);
+		assert recorder.notifications == 1;
+		assert recorder.net.getLong(dirt) == 1;
+		assert !recorder.net.containsKey(stone);
+	}
+
+	@Test
+	void coalescedNestedCommitOuterRollback() {
+		final FlexibleDiscreteStore member = new FlexibleDiscreteStore(1000);
+		final Recorder recorder = new Recorder();
+		final AggregateDiscreteStore aggregate = coalescing(recorder, member);
+
+		try (var outer = Transaction.open()) {
+			member.getConsumer().apply(stone, 3, false);
+
+			try (var inner = Transaction.open()) {
+				member.getConsumer().apply(stone, 7, false);
+				inner.commit();
+			}
+
+			// nested close does not send
+			assert recorder.notifications == 0;
+
+			try (var inner = Transaction.open()) {
+				member.getSupplier().apply(stone, 1, false);
+				inner.rollback();
+			}
+
+			assert recorder.notifications == 0;
+			assert aggregate.count() == 10;
+			outer.rollback();
+		}
+
+		assert recorder.notifications == 0;
+		assert aggregate.count() == 0;
+		assert member.count() == 0;
+
+		try (var outer = Transaction.open()) {
+			try (var inner = Transaction.open()) {
+				member.getConsumer().apply(stone, 7, false);
+				inner.commit();
+			}
+
+			outer.commit();
+		}
+
+		assert recorder.notifications == 1;
+		assert recorder.net.getLong(stone) == 7;
+	}
+
+	@Test
+	void coalescedVoidMember() {
+		final FlexibleDiscreteStore member = new FlexibleDiscreteStore(1000);
+		final Recorder recorder = new Recorder();
+		final AggregateDiscreteStore aggregate = coalescing(recorder, member, Store.VOID);
+
+		try (var tx = Transaction.open()) {
+			member.getConsumer().apply(stone, 5, false);
+			// void member accepts everything and reports nothing
+			assert Store.VOID.getConsumer().apply(dirt, 7, false) == 7;
+			tx.commit();
+		}
+
+		assert recorder.notifications == 1;
+		assert recorder.net.getLong(stone) == 5;
+		assert !recorder.net.containsKey(dirt);
+		assert aggregate.count() == 5;
+
+		recorder.reset();
+
+		try (var tx = Transaction.open()) {
+			member.getSupplier().apply(stone, 5, false);
+			assert Store.VOID.getConsumer().apply(dirt, 7, false) == 7;
+			tx.rollback();
+		}
+
+		assert recorder.notifications == 0;
+		assert aggregate.count() == 5;
+	}
+
+	/** Counts member changes and exposes the open store index. */
+	static class CountingAggregate extends AggregateDiscreteStore {
+		int adds = 0;
+		int removes = 0;
+
+		@Override
+		public void addStore(Store store) {
+			++adds;
+			super.addStore(store);
+		}
+
+		@Override
+		public void removeStore(Store store) {
+			++removes;
+			super.removeStore(store);
+		}
+
+		boolean hasMember(Store store) {
+			return stores.contains(store);
+		}
+
+		int memberCount() {
+			return stores.size();
+		}
+
+		boolean isOpen(Store store) {
+			return openStores.contains(store);
+		}
+
+		int openCount() {
+			return openStores.size();
+		}
+	}
+
+	static FlexibleDiscreteStore store(long capacity, Article article, long count) {
+		final FlexibleDiscreteStore result = new FlexibleDiscreteStore(capacity);
+		result.getConsumer().apply(article, count, false);
+		return result;
+	}
+
+	@Test
+	void mergeSharedArticlesAndMember() {
+		final FlexibleDiscreteStore a0 = store(100, stone, 10);
+		final FlexibleDiscreteStore shared = store(100, stone, 5);
+		shared.getConsumer().apply(dirt, 3, false);
+		final FlexibleDiscreteStore b0 = store(50, stone, 7);
+		b0.getConsumer().apply(dirt, 1, false);
+		final FlexibleDiscreteStore full = store(8, stone, 8);
+
+		final CountingAggregate a = new CountingAggregate();
+		a.addStore(a0);
+		a.addStore(shared);
+
+		final CountingAggregate b = new CountingAggregate();
+		b.addStore(b0);
+		b.addStore(shared);
+		b.addStore(full);
+
+		assert a.count() == 18 && a.capacity() == 200;
+		assert b.count() == 24 && b.capacity() == 158;
+
+		final Recorder ra = new Recorder();
+		final Recorder rb = new Recorder();
+		a.eventStream().startListening(ra, false);
+		b.eventStream().startListening(rb, false);
+
+		a.mergeFrom(b);
+
+		// one net change per article on each side, including removal of the shared member
+		assert ra.notifications == 2;
+		assert ra.net.getLong(stone) == 15;
+		assert ra.net.getLong(dirt) == 1;
+		assert ra.capacity == 58;
+		assert rb.notifications == 2;
+		assert rb.net.getLong(stone) == -20;
+		assert rb.net.getLong(dirt) == -4;
+		assert rb.capacity == -158;
+
+		assert a.count() == 34 && a.capacity() == 258;
+		assert b.count() == 0 && b.capacity() == 0;
+
+		// members moved as a whole
+		assert a.adds == 2 && a.removes == 0;
+		assert b.adds == 3 && b.removes == 1;
+		assert a.memberCount() == 4 && b.memberCount() == 0;
+		assert a.hasMember(b0) && a.hasMember(full);
+
+		assert a.openCount() == 3;
+		assert a.isOpen(a0) && a.isOpen(shared) && a.isOpen(b0) && !a.isOpen(full);
+		assert b.openCount() == 0;
+
+		// moved members now report only to the survivor
+		ra.reset();
+		rb.reset();
+		b0.getConsumer().apply(stone, 1, false);
+		assert ra.notifications == 1 && ra.net.getLong(stone) == 1;
+		assert rb.notifications == 0;
+		assert a.count() == 35;
+	}
+
+	static class Member implements MultiBlockMember<Member, Multi, Store> {
+		final Store store;
+		final long pos;
+		Multi owner;
+
+		Member(Store store, long pos) {
+			this.store = store;
+			this.pos = pos;
+		}
+
+		@Override
+		public @Nullable Multi getMultiblock() {
+			return owner;
+		}
+
+		@Override
+		public void setMultiblock(@Nullable Multi owner) {
+			this.owner = owner;
+		}
+
+		@Override
+		public Store getMemberComponent() {
+			return store;
+		}
+
+		@Override
+		public long getPackedPos() {
+			return pos;
+		}
+
+		@Override
+		public Level getWorld() {
+			return null;
+		}
+	}
+
+	static class Multi extends AbstractStorageMultiBlock<Member, Multi> {
+		Multi() {
+			super(new CountingAggregate());
+		}
+
+		CountingAggregate aggregate() {
+			return (CountingAggregate) storage;
+		}
+
+		void join(Member member) {
+			member.setMultiblock(this);
+			add(member);
+		}
+	}
+
+	@Test
+	void multiblockMergeInto() {
+		final Multi a = new Multi();
+		final Multi b = new Multi();
+		final Member a0 = new Member(store(100, stone, 4), 0);
+		final Member a1 = new Member(store(100, dirt, 6), 1);
+		final Member b0 = new Member(store(100, stone, 3), 2);
+		final Member b1 = new Member(store(100, dirt, 2), 3);
+		final Member pending = new Member(store(100, stone, 1), 4);
+
+		a.join(a0);
+		a.join(a1);
+		b.join(b0);
+		b.join(b1);
+		b.setAssembling(true);
+		b.join(pending);
+
+		final Recorder recorder = new Recorder();
+		a.aggregate().eventStream().startListening(recorder, false);
+		final int priorAdds = a.aggregate().adds;
+
+		b.mergeInto(a);
+
+		assert a.memberCount() == 5 && b.memberCount() == 0;
+		assert a0.owner == a && b0.owner == a && pending.owner == a;
+
+		// members with stores already moved are not added again, only the pending store is
+		assert a.aggregate().adds == priorAdds + 1;
+		assert a.aggregate().removes == 0 && b.aggregate().removes == 0;
+		assert a.aggregate().memberCount() == 5 && b.aggregate().memberCount() == 0;
+
+		// moved content is reported once per article, then the pending store is added normally
+		assert recorder.net.getLong(stone) == 4 && recorder.net.getLong(dirt) == 2;
+		assert recorder.notifications == 3;
+		assert a.aggregate().count() == 16;
+		assert a.aggregate().capacity() == 500;
+	}
+}
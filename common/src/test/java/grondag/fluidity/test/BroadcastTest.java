@@ -0,0 +1,148 @@
+package grondag.fluidity.test;
+
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import net.minecraft.SharedConstants;
+import net.minecraft.core.Direction;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.world.item.Items;
+
+import grondag.fluidity.api.article.Article;
+import grondag.fluidity.api.device.Authorization;
+import grondag.fluidity.api.device.DeviceComponentAccess;
+import grondag.fluidity.api.device.DeviceComponentType;
+import grondag.fluidity.api.storage.ArticleFunction;
+import grondag.fluidity.api.storage.Store;
+import grondag.fluidity.base.storage.discrete.SingleArticleStore;
+import grondag.fluidity.impl.TransactionImpl;
+import grondag.fluidity.impl.article.ArticleTypeImpl;
+import grondag.fluidity.wip.api.transport.CarrierSession;
+import grondag.fluidity.wip.api.transport.CarrierType;
+import grondag.fluidity.wip.base.transport.BasicCarrier;
+import grondag.fluidity.wip.base.transport.BroadcastDistribution;
+import grondag.fluidity.wip.base.transport.CarrierCostFunction;
+
+class BroadcastTest {
+	static Article stone;
+
+	@BeforeAll
+	static void bootstrap() {
+		SharedConstants.tryDetectVersion();
+		Bootstrap.bootStrap();
+		ArticleTypeImpl.init();
+		TransactionImpl.setServerThread(Thread.currentThread());
+		stone = Article.of(Items.STONE);
+	}
+
+	static class Access<T> implements DeviceComponentAccess<T> {
+		final DeviceComponentType<T> componentType;
+		final T component;
+
+		Access(DeviceComponentType<T> componentType, T component) {
+			this.componentType = componentType;
+			this.component = component;
+		}
+
+		@Override
+		public DeviceComponentType<T> componentType() {
+			return componentType;
+		}
+
+		@Override
+		public T get(Authorization auth, @Nullable Direction side, @Nullable ResourceLocation id) {
+			return component;
+		}
+	}
+
+	static class Carrier extends BasicCarrier<CarrierCostFunction> {
+		Carrier() {
+			super(CarrierType.EMPTY);
+		}
+
+		@Override
+		public CarrierCostFunction costFunction() {
+			return CarrierCostFunction.FREE;
+		}
+	}
+
+	/** Source is attached first, then one consumer for each store. */
+	static CarrierSession attach(Carrier carrier, Store[] stores) {
+		final CarrierSession source = carrier.attach(t -> t.getAbsentAccess());
+
+		for (final Store store : stores) {
+			carrier.attach(t -> {
+				if (t == ArticleFunction.CONSUMER_COMPONENT) {
+					return new Access<>(ArticleFunction.CONSUMER_COMPONENT, store.getConsumer());
+				} else if (t == Store.STORAGE_COMPONENT) {
+					return new Access<>(Store.STORAGE_COMPONENT, store);
+				} else {
+					return t.getAbsentAccess();
+				}
+			});
+		}
+
+		return source;
+	}
+
+	static Store[] stores(long capacity, long... counts) {
+		final Store[] result = new Store[counts.length];
+
+		for (int i = 0; i < counts.length; ++i) {
+			result[i] = new SingleArticleStore(capacity);
+
+			if (counts[i] > 0) {
+				result[i].getConsumer().apply(stone, counts[i], false);
+			}
+		}
+
+		return result;
+	}
+
+	static void assertCounts(Store[] stores, long... counts) {
+		for (int i = 0; i < counts.length; ++i) {
+			assert stores[i].countOf(stone) == counts[i];
+		}
+	}
+
+	/** Broadcasts that need several consumers fill them in order, resuming after the last to accept. */
+	void splitInTurn(BroadcastDistribution distribution) {
+		final Carrier carrier = new Carrier();
+		carrier.setBroadcastDistribution(distribution);
+		final Store[] stores = stores(4, 0, 0, 0, 0, 0);
+		final CarrierSession source = attach(carrier, stores);
+
+		assert source.broadcastConsumer().apply(stone, 10, false) == 10;
+		assertCounts(stores, 4, 4, 2, 0, 0);
+
+		assert source.broadcastConsumer().apply(stone, 4, false) == 4;
+		assertCounts(stores, 4, 4, 2, 4, 0);
+
+		assert source.broadcastConsumer().apply(stone, 6, false) == 6;
+		assertCounts(stores, 4, 4, 4, 4, 4);
+	}
+
+	@Test
+	void roundRobinSplit() {
+		splitInTurn(BroadcastDistribution.roundRobin());
+	}
+
+	@Test
+	void priorityTierSplit() {
+		splitInTurn(BroadcastDistribution.priority(n -> 0));
+	}
+
+	@Test
+	void proportionalSplit() {
+		final Carrier carrier = new Carrier();
+		carrier.setBroadcastDistribution(BroadcastDistribution.proportional());
+		final Store[] stores = stores(8, 0, 4, 4, 8, 8);
+		final CarrierSession source = attach(carrier, stores);
+
+		// free capacity 8, 4, 4 gives shares of 4, 2, 2
+		assert source.broadcastConsumer().apply(stone, 8, false) == 8;
+		assertCounts(stores, 4, 6, 6, 8, 8);
+	}
+}
@@ -0,0 +1,179 @@
+package grondag.fluidity.test;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import net.minecraft.SharedConstants;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.world.item.Items;
+import net.minecraft.world.level.material.Fluids;
+
+import grondag.fluidity.api.article.Article;
+import grondag.fluidity.api.article.ArticleType;
+import grondag.fluidity.api.fraction.Fraction;
+import grondag.fluidity.api.transact.Transaction;
+import grondag.fluidity.impl.TransactionImpl;
+import grondag.fluidity.impl.article.ArticleTypeImpl;
+import grondag.fluidity.wip.api.transport.CarrierSession;
+import grondag.fluidity.wip.base.transport.ThroughputLimitedCostFunction;
+import grondag.fluidity.wip.base.transport.TokenBucketCostFunction;
+
+class CarrierCostTest {
+	static Article stone;
+	static Article water;
+
+	@BeforeAll
+	static void init() {
+		SharedConstants.tryDetectVersion();
+		Bootstrap.bootStrap();
+		ArticleTypeImpl.init();
+		TransactionImpl.setServerThread(Thread.currentThread());
+		stone = Article.of(Items.STONE);
+		water = Article.of(Fluids.WATER);
+	}
+
+	static final Article NO_ARTICLE = null;
+
+	static class TestCostFunction extends ThroughputLimitedCostFunction {
+		long pending = 0;
+
+		@Override
+		protected void refill() {
+			if (pending != 0) {
+				replenish(Fraction.of(pending, 0, 1));
+				pending = 0;
+			}
+		}
+	}
+
+	@Test
+	void throughputRollback() {
+		final TestCostFunction cost = new TestCostFunction();
+		cost.pending = 10;
+
+		try (var tx0 = Transaction.open()) {
+			assert cost.apply(null, NO_ARTICLE, 4, false) == 4;
+
+			try (var tx1 = Transaction.open()) {
+				assert cost.apply(null, NO_ARTICLE, 8, false) == 6;
+				// replenished during a transaction that is rolled back
+				cost.pending = 5;
+				assert cost.apply(null, NO_ARTICLE, 2, false) == 2;
+				tx1.rollback();
+			}
+
+			assert cost.available().whole() == 11;
+			tx0.rollback();
+		}
+
+		assert cost.available().whole() == 15;
+		assert cost.apply(null, NO_ARTICLE, 20, true) == 15;
+		assert cost.available().whole() == 15;
+	}
+
+	@Test
+	void tokenBucketLimits() {
+		final TokenBucketCostFunction cost = new TokenBucketCostFunction(false)
+				.setLimit(ArticleType.ITEM, 4)
+				.setDefaultLimit(Fraction.of(1, 2), Fraction.of(2));
+
+		// buckets start full
+		assert cost.apply(null, stone, 10, false) == 4;
+		assert cost.apply(null, stone, 10, false) == 0;
+		assert cost.apply(null, water, Fraction.of(5), false).equals(Fraction.of(2));
+
+		TokenBucketCostFunction.onServerTick();
+		assert cost.apply(null, stone, 10, true) == 4;
+		assert cost.apply(null, water, Fraction.of(5), true).equals(Fraction.of(1, 2));
+		assert cost.apply(null, water, 3, 2, true) == 1;
+
+		// refill never exceeds capacity
+		for (int i = 0; i < 10; ++i) {
+			TokenBucketCostFunction.onServerTick();
+		}
+
+		assert cost.apply(null, stone, 10, false) == 4;
+		assert cost.apply(null, water, Fraction.of(5), false).equals(Fraction.of(2));
+
+		// types without limits are not limited once the default is removed
+		final TokenBucketCostFunction itemsOnly = new TokenBucketCostFunction(false).setLimit(ArticleType.ITEM, 4);
+		assert itemsOnly.apply(null, water, Fraction.of(5), false).equals(Fraction.of(5));
+	}
+
+	@Test
+	void tokenBucketRefillDuringTransaction() {
+		final TokenBucketCostFunction cost = new TokenBucketCostFunction(false)
+				.setLimit(ArticleType.ITEM, Fraction.of(4), Fraction.of(8));
+
+		try (var tx = Transaction.open()) {
+			assert cost.apply(null, stone, 8, false) == 8;
+			TokenBucketCostFunction.onServerTick();
+			assert cost.apply(null, stone, 8, true) == 4;
+			tx.rollback();
+		}
+
+		// refill is retained but bucket is never above capacity
+		assert cost.available(null, ArticleType.ITEM).equals(Fraction.of(8));
+
+		try (var tx = Transaction.open()) {
+			assert cost.apply(null, stone, 8, false) == 8;
+			TokenBucketCostFunction.onServerTick();
+			assert cost.apply(null, stone, 1, false) == 1;
+			tx.commit();
+		}
+
+		assert cost.available(null, ArticleType.ITEM).equals(Fraction.of(3));
+	}
+
+	@Test
+	void tokenBucketFairShareRollback() {
+		final BroadcastTest.Carrier carrier = new BroadcastTest.Carrier();
+		final CarrierSession a = carrier.attach(t -> t.getAbsentAccess());
+		final CarrierSession b = carrier.attach(t -> t.getAbsentAccess());
+		final TokenBucketCostFunction cost = new TokenBucketCostFunction(true).setLimit(ArticleType.ITEM, 8);
+
+		// no senders in prior tick, so no sharing
+		assert cost.apply(a, stone, 3, false) == 3;
+		assert cost.apply(b, stone, 3, false) == 3;
+
+		// two senders in prior tick, so each gets half
+		TokenBucketCostFunction.onServerTick();
+		assert cost.available(a, ArticleType.ITEM).equals(Fraction.of(4));
+
+		try (var tx = Transaction.open()) {
+			assert cost.apply(a, stone, 8, false) == 4;
+			assert cost.apply(a, stone, 1, false) == 0;
+			tx.rollback();
+		}
+
+		assert cost.available(a, ArticleType.ITEM).equals(Fraction.of(4));
+
+		try (var tx0 = Transaction.open()) {
+			assert cost.apply(a, stone, 2, false) == 2;
+
+			try (var tx1 = Transaction.open()) {
+				assert cost.apply(a, stone, 2, false) == 2;
+				tx1.rollback();
+			}
+
+			assert cost.available(a, ArticleType.ITEM).equals(Fraction.of(2));
+			tx0.commit();
+		}
+
+		assert cost.available(a, ArticleType.ITEM).equals(Fraction.of(2));
+
+		// usage from a prior tick is not restored by rollback
+		TokenBucketCostFunction.onServerTick();
+		assert cost.apply(b, stone, 4, false) == 4;
+
+		try (var tx = Transaction.open()) {
+			assert cost.apply(a, stone, 4, false) == 4;
+			TokenBucketCostFunction.onServerTick();
+			assert cost.apply(a, stone, 4, true) == 4;
+			tx.rollback();
+		}
+
+		assert cost.available(a, ArticleType.ITEM).equals(Fraction.of(4));
+		assert cost.available(b, ArticleType.ITEM).equals(Fraction.of(4));
+	}
+}
@@ -0,0 +1,165 @@
+package grondag.fluidity.test;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import net.minecraft.SharedConstants;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.world.item.Items;
+import net.minecraft.world.level.material.Fluids;
+
+import grondag.fluidity.api.article.Article;
+import grondag.fluidity.api.storage.ArticleFunction;
+import grondag.fluidity.api.storage.Store;
+import grondag.fluidity.base.storage.discrete.FlexibleDiscreteStore;
+import grondag.fluidity.impl.TransactionImpl;
+import grondag.fluidity.impl.article.ArticleTypeImpl;
+import grondag.fluidity.wip.api.transport.CarrierNode;
+import grondag.fluidity.wip.api.transport.CarrierSession;
+import grondag.fluidity.wip.base.transport.BasicCarrier;
+import grondag.fluidity.wip.base.transport.CarrierRoutingIndex;
+
+class CarrierRoutingTest {
+	static Article stone;
+	static Article dirt;
+	static Article water;
+
+	@BeforeAll
+	static void bootstrap() {
+		SharedConstants.tryDetectVersion();
+		Bootstrap.bootStrap();
+		ArticleTypeImpl.init();
+		TransactionImpl.setServerThread(Thread.currentThread());
+		stone = Article.of(Items.STONE);
+		dirt = Article.of(Items.DIRT);
+		water = Article.of(Fluids.WATER);
+	}
+
+	/** Attaches a node with supplier, consumer and storage components of the store. */
+	static CarrierSession attach(BasicCarrier<?> carrier, Store store) {
+		return carrier.attach(t -> {
+			if (t == ArticleFunction.CONSUMER_COMPONENT) {
+				return new BroadcastTest.Access<>(ArticleFunction.CONSUMER_COMPONENT, store.getConsumer());
+			} else if (t == ArticleFunction.SUPPLIER_COMPONENT) {
+				return new BroadcastTest.Access<>(ArticleFunction.SUPPLIER_COMPONENT, store.getSupplier());
+			} else if (t == Store.STORAGE_COMPONENT) {
+				return new BroadcastTest.Access<>(Store.STORAGE_COMPONENT, store);
+			} else {
+				return t.getAbsentAccess();
+			}
+		});
+	}
+
+	@Test
+	void indexFollowsStoreNotifications() {
+		final BroadcastTest.Carrier carrier = new BroadcastTest.Carrier();
+		final CarrierSession source = carrier.attach(t -> t.getAbsentAccess());
+		final long from = source.nodeAddress();
+		final FlexibleDiscreteStore storeA = new FlexibleDiscreteStore(10);
+		final FlexibleDiscreteStore storeB = new FlexibleDiscreteStore(10);
+		final CarrierSession a = attach(carrier, storeA);
+		final CarrierSession b = attach(carrier, storeB);
+
+		// index is built on first lookup
+		assert carrier.consumerOf(stone, from) == a;
+		assert !carrier.supplierOf(stone, from).isValid();
+
+		// holders are preferred once the store reports the article
+		storeB.getConsumer().apply(stone, 2, false);
+		assert carrier.supplierOf(stone, from) == b;
+		assert carrier.consumerOf(stone, from) == b;
+
+		// a full holder is skipped, then nodes holding the same type
+		storeB.getConsumer().apply(stone, 8, false);
+		assert carrier.consumerOf(stone, from) == a;
+		storeA.getConsumer().apply(dirt, 1, false);
+		assert carrier.consumerOf(stone, from) == a;
+
+		// removal is tracked too
+		storeB.getSupplier().apply(stone, 10, false);
+		assert !carrier.supplierOf(stone, from).isValid();
+		assert carrier.supplierOf(dirt, from) == a;
+		storeA.getSupplier().apply(dirt, 1, false);
+		assert !carrier.supplierOf(dirt, from).isValid();
+	}
+
+	@Test
+	void otherTypeHoldersNotTried() {
+		final BroadcastTest.Carrier carrier = new BroadcastTest.Carrier();
+		final long from = carrier.attach(t -> t.getAbsentAccess()).nodeAddress();
+		final FlexibleDiscreteStore tank = new FlexibleDiscreteStore(100);
+		tank.getConsumer().apply(water, 1, false);
+		final FlexibleDiscreteStore empty = new FlexibleDiscreteStore(10);
+		attach(carrier, tank);
+		final CarrierSession e = attach(carrier, empty);
+
+		assert carrier.consumerOf(stone, from) == e;
+
+		// no empty node remains and the open node only holds another type
+		empty.getConsumer().apply(stone, 10, false);
+		assert !carrier.consumerOf(dirt, from).isValid();
+	}
+
+	@Test
+	void attachAndDetachUpdateIndex() {
+		final BroadcastTest.Carrier carrier = new BroadcastTest.Carrier();
+		final long from = carrier.attach(t -> t.getAbsentAccess()).nodeAddress();
+		assert !carrier.supplierOf(stone, from).isValid();
+
+		// nodes attached after the index is built are indexed with their current content
+		final FlexibleDiscreteStore store = new FlexibleDiscreteStore(10);
+		store.getConsumer().apply(stone, 3, false);
+		final CarrierSession node = attach(carrier, store);
+		assert carrier.supplierOf(stone, from) == node;
+
+		carrier.detach(node);
+		assert !carrier.supplierOf(stone, from).isValid();
+		assert !carrier.consumerOf(stone, from).isValid();
+
+		// detached store no longer updates the index
+		store.getConsumer().apply(dirt, 3, false);
+		assert !carrier.supplierOf(dirt, from).isValid();
+	}
+
+	/** Exposes trackers so that a store disconnect can be simulated. */
+	static class Index extends CarrierRoutingIndex {
+		void disconnect(CarrierNode node, Store store) {
+			trackers.get(node).disconnect(store, false, true);
+		}
+
+		boolean isPublished(CarrierNode node) {
+			return trackers.containsKey(node);
+		}
+
+		boolean isUnpublished(CarrierNode node) {
+			return unpublishedNodes.contains(node);
+		}
+	}
+
+	@Test
+	void disconnectFallsBackToScan() {
+		final BroadcastTest.Carrier carrier = new BroadcastTest.Carrier();
+		final long from = carrier.attach(t -> t.getAbsentAccess()).nodeAddress();
+		final FlexibleDiscreteStore store = new FlexibleDiscreteStore(10);
+		store.getConsumer().apply(stone, 3, false);
+		final CarrierSession node = attach(carrier, store);
+
+		final Index index = new Index();
+		index.add(node);
+		assert index.isPublished(node);
+		assert index.supplierOf(stone, from) == node;
+
+		index.disconnect(node, store);
+		assert !index.isPublished(node);
+		assert index.isUnpublished(node);
+
+		// still found by simulation
+		assert index.supplierOf(stone, from) == node;
+		assert index.consumerOf(dirt, from) == node;
+		assert !index.supplierOf(dirt, from).isValid();
+
+		index.remove(node);
+		assert !index.isUnpublished(node);
+		assert !index.supplierOf(stone, from).isValid();
+	}
+}
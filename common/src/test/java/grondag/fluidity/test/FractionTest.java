@@ -2,6 +2,7 @@ package grondag.fluidity.test;
 
 import org.junit.jupiter.api.Test;
 
+import grondag.fluidity.api.fraction.Fraction;
 import grondag.fluidity.api.fraction.MutableFraction;
 
 class FractionTest {
@@ -47,4 +48,88 @@ class FractionTest {
 		assert f.numerator() == -67;
 		assert f.divisor() == 80;
 	}
+
+	@Test
+	void fixedUnits() {
+		final MutableFraction f = MutableFraction.of(0);
+
+		f.add(1, 1000);
+		f.add(1, 1620);
+		f.add(1, 81);
+		assert f.numerator() == 377;
+		assert f.divisor() == 27000;
+		assert f.isFixed();
+		assert f.toFixedUnits() == 1131;
+
+		f.subtract(1, 1620);
+		f.subtract(1, 81);
+		assert f.whole() == 0;
+		assert f.numerator() == 1;
+		assert f.divisor() == 1000;
+
+		f.add(2, 3).add(1, 3);
+		assert f.whole() == 1;
+		assert f.numerator() == 1;
+		assert f.divisor() == 1000;
+		assert f.toFixedUnits() == 81081;
+
+		assert !Fraction.of(1, 7).isFixed();
+		assert !Fraction.MAX_VALUE.isFixed();
+	}
+
+	@Test
+	void compareLargeDivisors() {
+		final long big = 3_000_000_019L;
+		final Fraction a = Fraction.of(0, big - 1, big);
+		final Fraction b = Fraction.of(0, big - 2, big - 1);
+
+		assert a.isGreaterThan(b);
+		assert b.isLessThan(a);
+		assert a.compareTo(Fraction.of(0, big - 1, big)) == 0;
+	}
+
+	@Test
+	void overflow() {
+		final MutableFraction f = MutableFraction.of(0);
+
+		// exact result fits after reduction
+		f.set(0, 1, 1L << 40);
+		f.add(1, 3L << 40);
+		assert f.whole() == 0;
+		assert f.numerator() == 1;
+		assert f.divisor() == 3L << 38;
+
+		// exact divisor does not fit - rounded toward zero
+		f.set(0, 1, 4_000_000_007L);
+		f.add(1, 4_000_000_009L);
+		assert f.numerator() == 2;
+		assert f.divisor() == 4_000_000_009L;
+
+		f.set((1L << 33), 1, 1L << 30);
+		f.multiply(1L << 29, 1, 3);
+		assert f.whole() == 4611686021290699435L;
+		assert f.numerator() == 178956971;
+		assert f.divisor() == 1L << 30;
+
+		// whole part saturates
+		f.set(Fraction.MAX_VALUE).add(1);
+		assert f.whole() == Long.MAX_VALUE;
+		f.set(Fraction.MAX_VALUE).add(0, 3, 2);
+		assert f.whole() == Long.MAX_VALUE;
+		f.set(Long.MIN_VALUE).subtract(1);
+		assert f.whole() == Long.MIN_VALUE;
+		f.set(Long.MAX_VALUE - 1, 1, 2).add(0, 1, 2);
+		assert f.whole() == Long.MAX_VALUE && f.numerator() == 0;
+		f.set(Long.MAX_VALUE / 2, 1, 2).multiply(2);
+		assert f.whole() == Long.MAX_VALUE;
+		f.set((Long.MAX_VALUE - 1) / 3, 2, 3).multiply(3);
+		assert f.whole() == Long.MAX_VALUE;
+
+		// intermediate whole overflows but result fits
+		f.set(Long.MAX_VALUE, 1, 2).add(1, -3, 4);
+		assert f.whole() == Long.MAX_VALUE && f.numerator() == 3 && f.divisor() == 4;
+
+		assert Fraction.MAX_VALUE.toLong(1000) == Long.MAX_VALUE;
+		assert Fraction.of(0, 1L << 40, (1L << 40) + 1).toLong(1L << 30) == (1L << 30) - 1;
+	}
 }
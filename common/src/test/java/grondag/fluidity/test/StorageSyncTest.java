@@ -0,0 +1,306 @@
+package grondag.fluidity.test;
+
+import java.util.Random;
+
+import it.unimi.dsi.fastutil.ints.Int2LongMap;
+import it.unimi.dsi.fastutil.ints.Int2LongOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import net.minecraft.SharedConstants;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.Items;
+
+import grondag.fluidity.api.article.Article;
+import grondag.fluidity.api.storage.ArticleFunction;
+import grondag.fluidity.api.storage.Store;
+import grondag.fluidity.base.article.StoredDiscreteArticle;
+import grondag.fluidity.base.storage.discrete.FlexibleDiscreteStore;
+import grondag.fluidity.base.synch.DiscreteDisplayDelegate;
+import grondag.fluidity.base.synch.DiscreteStorageClientDelegate;
+import grondag.fluidity.base.synch.DiscreteStorageServerDelegate;
+import grondag.fluidity.base.synch.DiscreteStorageSyncHub;
+import grondag.fluidity.base.synch.DiscreteStorageUpdateS2C;
+import grondag.fluidity.base.synch.DisplayDelegate;
+import grondag.fluidity.base.synch.StorageUpdateEncoder;
+import grondag.fluidity.impl.article.ArticleTypeImpl;
+
+class StorageSyncTest {
+	private static final Item[] PLAIN = {
+		Items.STONE, Items.DIRT, Items.COBBLESTONE, Items.SAND, Items.GRAVEL, Items.OAK_LOG, Items.OAK_PLANKS, Items.GLASS,
+		Items.IRON_INGOT, Items.GOLD_INGOT, Items.DIAMOND, Items.EMERALD, Items.COAL, Items.REDSTONE, Items.STICK, Items.TORCH
+	};
+
+	private static final String[] FILTERS = {"", "o", "or", "ore", "iron", "iron ingot", "xyzzy", "@", "@mine", "@other"};
+
+	@BeforeAll
+	static void bootstrap() {
+		SharedConstants.tryDetectVersion();
+		Bootstrap.bootStrap();
+		ArticleTypeImpl.init();
+	}
+
+	/** Encodes each tick in both protocols and applies delta updates to a mirror of client state. */
+	static class Recorder extends DiscreteStorageServerDelegate {
+		final Int2ObjectOpenHashMap<Article> clientArticles = new Int2ObjectOpenHashMap<>();
+		final Int2LongOpenHashMap clientCounts = new Int2LongOpenHashMap();
+		long legacyBytes = 0;
+		long deltaBytes = 0;
+
+		Recorder(Store storage) {
+			super(null, storage);
+			encodeFullRefresh(StorageUpdateEncoder.get());
+			updates.clear();
+			isFirstUpdate = false;
+		}
+
+		void tick() {
+			final FriendlyByteBuf legacy = DiscreteStorageUpdateS2C.begin(updates.size());
+
+			for (final StoredDiscreteArticle a : updates.values()) {
+				DiscreteStorageUpdateS2C.append(legacy, a.article(), a.count(), a.handle());
+			}
+
+			legacyBytes += legacy.writerIndex();
+
+			final FriendlyByteBuf delta = DiscreteStorageUpdateS2C.finishDelta(encodeDelta(StorageUpdateEncoder.get()), -1);
+			deltaBytes += delta.writerIndex();
+			updates.clear();
+
+			readDelta(delta, clientArticles, clientCounts);
+		}
+
+		long clientCountOf(Article article) {
+			return StorageSyncTest.clientCountOf(article, clientArticles, clientCounts);
+		}
+	}
+
+	/** Applies a finished delta update to a mirror of client state. */
+	static void readDelta(FriendlyByteBuf delta, Int2ObjectOpenHashMap<Article> clientArticles, Int2LongOpenHashMap clientCounts) {
+		DiscreteStorageUpdateS2C.readDelta(delta, (handle, article, value) -> {
+			if (article == null) {
+				assert clientArticles.containsKey(handle);
+				value += clientCounts.get(handle);
+			} else {
+				clientArticles.put(handle, article);
+			}
+
+			if (value == 0) {
+				clientArticles.remove(handle);
+				clientCounts.remove(handle);
+			} else {
+				clientCounts.put(handle, value);
+			}
+		});
+
+		assert delta.readableBytes() == 0;
+	}
+
+	static long clientCountOf(Article article, Int2ObjectOpenHashMap<Article> clientArticles, Int2LongOpenHashMap clientCounts) {
+		long result = 0;
+
+		for (final Int2LongMap.Entry e : clientCounts.int2LongEntrySet()) {
+			if (clientArticles.get(e.getIntKey()).equals(article)) {
+				result += e.getLongValue();
+			}
+		}
+
+		return result;
+	}
+
+	static Article[] palette() {
+		final Article[] palette = new Article[PLAIN.length + 32];
+
+		for (int i = 0; i < PLAIN.length; ++i) {
+			palette[i] = Article.of(PLAIN[i]);
+		}
+
+		for (int i = 0; i < 32; ++i) {
+			final CompoundTag tag = new CompoundTag();
+			tag.putInt("Damage", i);
+			tag.putString("Owner", "Test Player " + i);
+			palette[PLAIN.length + i] = Article.of(Items.DIAMOND_SWORD, tag);
+		}
+
+		return palette;
+	}
+
+	@Test
+	void deltaSync() {
+		final Article[] palette = palette();
+
+		final FlexibleDiscreteStore store = new FlexibleDiscreteStore(1_000_000);
+		final ArticleFunction consumer = store.getConsumer();
+		final ArticleFunction supplier = store.getSupplier();
+		final Recorder recorder = new Recorder(store);
+
+		// replay a fixed sequence of storage activity, one batch of changes per tick
+		final Random random = new Random(42);
+		final int ticks = 200;
+
+		for (int tick = 0; tick < ticks; ++tick) {
+			for (int op = 0; op < 8; ++op) {
+				final Article article = palette[random.nextInt(palette.length)];
+
+				if (random.nextInt(3) == 0) {
+					supplier.apply(article, 1 + random.nextInt(64), false);
+				} else {
+					consumer.apply(article, 1 + random.nextInt(64), false);
+				}
+			}
+
+			recorder.tick();
+		}
+
+		assert recorder.deltaBytes * 2 < recorder.legacyBytes;
+
+		for (final Article article : palette) {
+			assert recorder.clientCountOf(article) == store.countOf(article);
+		}
+	}
+
+	/** Encodes hub updates without players and applies them to a mirror of client state. */
+	static class Hub extends DiscreteStorageSyncHub {
+		final Int2ObjectOpenHashMap<Article> clientArticles = new Int2ObjectOpenHashMap<>();
+		final Int2LongOpenHashMap clientCounts = new Int2LongOpenHashMap();
+
+		Hub(Store storage) {
+			super(storage);
+			assert pendingCounts.isEmpty();
+		}
+
+		/** @return bytes of encoded entries */
+		int tick(int budget, boolean mayExceed) {
+			final FriendlyByteBuf delta = DiscreteStorageUpdateS2C.finishDelta(encodeDelta(StorageUpdateEncoder.get(), budget, mayExceed), -1);
+			final int result = body.writerIndex();
+			readDelta(new FriendlyByteBuf(delta.copy()), clientArticles, clientCounts);
+			return result;
+		}
+
+		boolean hasPending() {
+			return !pendingCounts.isEmpty();
+		}
+
+		long clientCountOf(Article article) {
+			return StorageSyncTest.clientCountOf(article, clientArticles, clientCounts);
+		}
+	}
+
+	@Test
+	void hubBudget() {
+		final Article[] palette = palette();
+		final FlexibleDiscreteStore store = new FlexibleDiscreteStore(1_000_000);
+		final Hub hub = new Hub(store);
+
+		for (final Article article : palette) {
+			store.getConsumer().apply(article, 10, false);
+		}
+
+		// nothing fits, so nothing is sent unless an oversized entry is allowed
+		assert hub.tick(0, false) == 0;
+		assert hub.tick(0, true) > 0;
+
+		int ticks = 0;
+
+		while (hub.hasPending()) {
+			assert hub.tick(64, false) <= 64;
+			++ticks;
+		}
+
+		assert ticks > 1;
+
+		for (final Article article : palette) {
+			assert hub.clientCountOf(article) == 10;
+		}
+
+		// count changes are deferred behind removals and new definitions
+		for (final Article article : palette) {
+			store.getConsumer().apply(article, 1, false);
+		}
+
+		store.getSupplier().apply(palette[palette.length - 1], 11, false);
+		final Article added = Article.of(Items.NETHERITE_INGOT);
+		store.getConsumer().apply(added, 5, false);
+
+		assert hub.tick(48, false) <= 48;
+		assert hub.clientCountOf(palette[palette.length - 1]) == 0;
+		assert hub.clientCountOf(added) == 5;
+		assert hub.hasPending();
+
+		while (hub.hasPending()) {
+			assert hub.tick(48, false) <= 48;
+		}
+
+		for (final Article article : palette) {
+			assert hub.clientCountOf(article) == store.countOf(article);
+		}
+	}
+
+	/** Exposes update handling without a packet context. */
+	static class Display extends DiscreteStorageClientDelegate {
+		void update(DiscreteDisplayDelegate... items) {
+			handleUpdateInner(items, -1);
+		}
+
+		boolean isIncluded(int handle, String filter) {
+			if (filter.startsWith("@")) {
+				return "minecraft".contains(filter.substring(1));
+			}
+
+			return MAP.get(handle).lowerCaseLocalizedName().contains(filter);
+		}
+	}
+
+	@Test
+	void clientListStaysSorted() {
+		final Random random = new Random(7);
+
+		for (int sortIndex = 0; sortIndex < DisplayDelegate.SORT_COUNT; ++sortIndex) {
+			final Display display = new Display();
+			display.setSortIndex(sortIndex);
+			final Int2LongOpenHashMap expected = new Int2LongOpenHashMap();
+
+			for (int tick = 0; tick < 200; ++tick) {
+				for (int op = 0; op < 8; ++op) {
+					// handles map to articles with a repeat so that equal names occur
+					final int handle = random.nextInt(PLAIN.length + 4);
+					final long count = random.nextInt(4) == 0 ? 0 : 1 + random.nextInt(8);
+					display.update(DiscreteDisplayDelegate.create(Article.of(PLAIN[handle % PLAIN.length]), count, handle));
+
+					if (count == 0) {
+						expected.remove(handle);
+					} else {
+						expected.put(handle, count);
+					}
+				}
+
+				final String filter = FILTERS[random.nextInt(FILTERS.length)];
+				display.setFilter(filter);
+				display.refreshListIfNeeded();
+
+				final ObjectArrayList<DiscreteDisplayDelegate> sorted = new ObjectArrayList<>(display.LIST);
+				sorted.sort(DisplayDelegate.getSort(sortIndex));
+
+				int expectedSize = 0;
+
+				for (final int handle : expected.keySet()) {
+					if (display.isIncluded(handle, filter)) {
+						++expectedSize;
+					}
+				}
+
+				assert display.LIST.size() == expectedSize;
+
+				for (int i = 0; i < sorted.size(); ++i) {
+					assert DisplayDelegate.getSort(sortIndex).compare(sorted.get(i), display.LIST.get(i)) == 0;
+					assert expected.get(display.LIST.get(i).handle()) == display.LIST.get(i).getCount();
+				}
+			}
+		}
+	}
+}
@@ -2,11 +2,16 @@ package grondag.fluidity.test;
 
 import static org.junit.Assert.assertTrue;
 
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import grondag.fluidity.api.transact.Transaction;
+import grondag.fluidity.api.transact.TransactionConflictException;
+import grondag.fluidity.api.transact.TransactionContext;
 import grondag.fluidity.impl.TransactionImpl;
 
 class TransactionTest {
@@ -171,4 +176,102 @@ class TransactionTest {
 		assertTrue(p1.value().contentEquals("d"));
 		assertTrue(p2.value().contentEquals("d"));
 	}
+
+	@Test
+	void reentrantEnlistGrowsArrays() {
+		final TestParticipant[] others = new TestParticipant[16];
+
+		for (int i = 0; i < others.length; ++i) {
+			others[i] = new TestParticipant("a");
+		}
+
+		// enlists enough other participants while preparing to grow participant arrays
+		final TestParticipant outer = new TestParticipant("a") {
+			@Override
+			public Consumer<TransactionContext> prepareRollback(TransactionContext context) {
+				for (final TestParticipant p : others) {
+					p.value("b");
+				}
+
+				return super.prepareRollback(context);
+			}
+		};
+
+		try (var tx = Transaction.open()) {
+			outer.value("b");
+			tx.rollback();
+		}
+
+		assert outer.value().equals("a");
+
+		for (final TestParticipant p : others) {
+			assert p.value().equals("a");
+		}
+	}
+
+	@Test
+	void perThreadDisjoint() throws InterruptedException {
+		final AtomicReference<Throwable> result = new AtomicReference<>();
+
+		// participants sharing a stripe would conflict
+		while (TransactionImpl.stripeOf(p1) == TransactionImpl.stripeOf(p0)) {
+			p1 = new TestParticipant("a");
+		}
+
+		TransactionImpl.setPerThread(true);
+
+		try (var tx0 = Transaction.open()) {
+			p0.value("b");
+
+			final Thread worker = new Thread(() -> {
+				try (var tx1 = Transaction.open()) {
+					p1.value("b");
+					tx1.commit();
+				} catch (final Throwable e) {
+					result.set(e);
+				}
+			});
+
+			worker.start();
+			worker.join();
+			tx0.commit();
+		} finally {
+			TransactionImpl.setPerThread(false);
+		}
+
+		assertTrue(result.get() == null);
+		assertTrue(p0.value().contentEquals("b"));
+		assertTrue(p1.value().contentEquals("b"));
+	}
+
+	@Test
+	void perThreadConflict() throws InterruptedException {
+		final AtomicReference<Throwable> result = new AtomicReference<>();
+		TransactionImpl.setPerThread(true);
+
+		try (var tx0 = Transaction.open()) {
+			p0.value("b");
+
+			// server thread is always oldest so worker must abort
+			final Thread worker = new Thread(() -> {
+				try (var tx1 = Transaction.open()) {
+					p2.value("c");
+					p0.value("c");
+					tx1.commit();
+				} catch (final Throwable e) {
+					result.set(e);
+				}
+			});
+
+			worker.start();
+			worker.join();
+			tx0.commit();
+		} finally {
+			TransactionImpl.setPerThread(false);
+		}
+
+		assertTrue(result.get() instanceof TransactionConflictException);
+		assertTrue(p0.value().contentEquals("b"));
+		assertTrue(p2.value().contentEquals("a"));
+	}
 }